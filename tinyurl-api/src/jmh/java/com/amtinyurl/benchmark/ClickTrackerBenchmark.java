@@ -0,0 +1,45 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.service.ClickTracker;
+import com.amtinyurl.service.ShortCodeCodec;
+import com.amtinyurl.shard.ShardRouter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-redirect cost of {@code ClickTracker.record} with four threads clicking: {@code hot}
+ * sends every click to one viral code, {@code spread} picks from 64k codes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ClickTrackerBenchmark {
+
+    private static final int CODES = 65536;
+
+    @Param({"hot", "spread"})
+    public String pattern;
+
+    private ClickTracker clickTracker;
+    private String[] codes;
+
+    @Setup
+    public void setUp() {
+        clickTracker = new ClickTracker(null, null, ShardRouter.unsharded(), true, 500, 60_000);
+        codes = new String[CODES];
+        for (int i = 0; i < CODES; i++) {
+            codes[i] = ShortCodeCodec.format(ThreadLocalRandom.current().nextLong(ShortCodeCodec.CODE_SPACE));
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        clickTracker.record("hot".equals(pattern) ? codes[0] : codes[ThreadLocalRandom.current().nextInt(CODES)]);
+    }
+}
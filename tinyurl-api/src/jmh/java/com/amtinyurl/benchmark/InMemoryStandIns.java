@@ -0,0 +1,91 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.repository.CodeSequenceRepository;
+import com.amtinyurl.repository.UrlRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Map-backed replacements for the MySQL repository and Redis template so the service
+ * layer can be benchmarked without external processes.
+ */
+final class InMemoryStandIns {
+
+    private InMemoryStandIns() {
+    }
+
+    static UrlRepository urlRepository(ConcurrentSkipListMap<String, Url> rows) {
+        return (UrlRepository) Proxy.newProxyInstance(UrlRepository.class.getClassLoader(),
+            new Class<?>[]{UrlRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "findById" -> Optional.ofNullable(rows.get((String) args[0]));
+                case "existsByCode", "existsById" -> rows.containsKey((String) args[0]);
+                case "findByUrlHash" -> rows.values().stream()
+                    .filter(url -> args[0].equals(url.getUrlHash())).findFirst();
+                case "findCodesAfter" -> rows.tailMap((String) args[0], false).keySet().stream()
+                    .limit(((Pageable) args[1]).getPageSize()).toList();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "InMemoryUrlRepository";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    static CodeSequenceRepository codeSequenceRepository(long nextValue) {
+        return (CodeSequenceRepository) Proxy.newProxyInstance(CodeSequenceRepository.class.getClassLoader(),
+            new Class<?>[]{CodeSequenceRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "findNextValue" -> Optional.of(nextValue);
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "InMemoryCodeSequenceRepository";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisTemplate<String, String> redisTemplate(Map<String, String> store, boolean acceptWrites) {
+        ValueOperations<String, String> values = (ValueOperations<String, String>) Proxy.newProxyInstance(
+            ValueOperations.class.getClassLoader(), new Class<?>[]{ValueOperations.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "get" -> store.get((String) args[0]);
+                case "set" -> {
+                    if (acceptWrites) {
+                        store.put((String) args[0], (String) args[1]);
+                    }
+                    yield null;
+                }
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "InMemoryValueOperations";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+        return new RedisTemplate<>() {
+            @Override
+            public ValueOperations<String, String> opsForValue() {
+                return values;
+            }
+
+            @Override
+            public List<Object> executePipelined(SessionCallback<?> session) {
+                session.execute(this);
+                return Collections.emptyList();
+            }
+
+            @Override
+            public Long convertAndSend(String channel, Object message) {
+                // No subscribers in-process
+                return 0L;
+            }
+        };
+    }
+}
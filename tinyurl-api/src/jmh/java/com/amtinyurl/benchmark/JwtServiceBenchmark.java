@@ -0,0 +1,34 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.service.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService("1fe2275ec12ed522e57b743c64facf12");
+        token = jwtService.generateToken("AbC123");
+    }
+
+    @Benchmark
+    public String validateTokenAndGetUserId() {
+        return jwtService.validateTokenAndGetUserId(token);
+    }
+
+    @Benchmark
+    public String authenticateVerifiedToken() {
+        return jwtService.authenticate(token);
+    }
+}
@@ -0,0 +1,80 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.service.UrlService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of concurrent requests, each doing the CPU part of a create (normalize + hash) around
+ * a blocking wait that stands in for the MySQL/Redis round trip. {@code platform} runs them on a
+ * pool sized like Tomcat's default (200 threads); {@code virtual} gives each request its own
+ * virtual thread, as {@code spring.threads.virtual.enabled=true} does. The virtual variant needs JDK 21+.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadingBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000", "10000"})
+    public int concurrency;
+
+    @Param({"2"})
+    public long blockingMillis;
+
+    private Executor executor;
+    private ExecutorService platformPool;
+    private UrlService urlService;
+
+    @Setup
+    public void setUp() {
+        urlService = new UrlService();
+        if ("virtual".equals(threads)) {
+            executor = new VirtualThreadTaskExecutor("bench-");
+        } else {
+            platformPool = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+            executor = platformPool;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void burst(Blackhole blackhole) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            int request = i;
+            executor.execute(() -> {
+                try {
+                    String normalized = urlService.normalizeUrl("Example.com/articles/" + request + "?ref=bench");
+                    Thread.sleep(blockingMillis);
+                    blackhole.consume(urlService.hashUrl(normalized));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,97 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.cache.NearCache;
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.metrics.TinyUrlMetrics;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.service.CacheService;
+import com.amtinyurl.service.CodeAllocator;
+import com.amtinyurl.service.CodeExistenceFilter;
+import com.amtinyurl.service.RedirectLoadCoalescer;
+import com.amtinyurl.service.ShortCodeCodec;
+import com.amtinyurl.service.TinyUrlService;
+import com.amtinyurl.service.UrlCreateCoalescer;
+import com.amtinyurl.service.UrlService;
+import com.amtinyurl.shard.ShardRouter;
+import com.amtinyurl.storage.JpaUrlStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@link TinyUrlService#getUrlByCode} call, with the answer coming from each tier in turn:
+ * the near cache, the Redis stand-in, the repository stand-in, or the existence filter for unknown codes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TinyUrlServiceBenchmark {
+
+    private static final int CODES = 8192;
+
+    @Param({"l1", "redis", "database", "unknown"})
+    public String tier;
+
+    private TinyUrlService tinyUrlService;
+    private String[] codes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        UrlService urlService = new UrlService();
+        ConcurrentSkipListMap<String, Url> rows = new ConcurrentSkipListMap<>();
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        codes = new String[CODES];
+
+        for (int i = 0; i < CODES; i++) {
+            String code = ShortCodeCodec.format(ThreadLocalRandom.current().nextLong(ShortCodeCodec.CODE_SPACE));
+            String url = "https://example.com/articles/" + i + "?utm_source=benchmark";
+            rows.put(code, Url.builder().code(code).normalizedUrl(url).urlHash(urlService.hashUrl(url)).build());
+            if (!"database".equals(tier)) {
+                redis.put("code:" + code, url);
+            }
+            codes[i] = code;
+        }
+        if ("unknown".equals(tier)) {
+            for (int i = 0; i < CODES; i++) {
+                codes[i] = codes[i].substring(0, 6) + (codes[i].charAt(6) == 'z' ? 'y' : 'z');
+            }
+        }
+
+        UrlRepository urlRepository = InMemoryStandIns.urlRepository(rows);
+        RedisTemplate<String, String> redisTemplate =
+            InMemoryStandIns.redisTemplate(redis, !"database".equals(tier));
+        TinyUrlMetrics metrics = new TinyUrlMetrics(new SimpleMeterRegistry());
+        NearCache nearCache = new NearCache("l1".equals(tier), 64L * 1024 * 1024, 3600);
+        CacheService cacheService = new CacheService(redisTemplate, nearCache, metrics,
+            new RedisCircuitBreaker(redisTemplate, false, 5), new BackgroundThreads(false), false, 0, 0, 0);
+        CodeExistenceFilter codeExistenceFilter =
+            new CodeExistenceFilter(urlRepository, InMemoryStandIns.codeSequenceRepository(CODES),
+                ShardRouter.unsharded(), redisTemplate, new BackgroundThreads(false), true, 1_000_000, 0.01, 30, 100_000,
+                100_000, 1L);
+        codeExistenceFilter.rebuild();
+        CodeAllocator codeAllocator = new CodeAllocator(null, null, new BackgroundThreads(false), 1L, 1000, 5000);
+
+        tinyUrlService = new TinyUrlService(urlRepository,
+            new JpaUrlStore(urlRepository, ShardRouter.unsharded()), null, null, urlService, cacheService,
+            codeExistenceFilter, codeAllocator, metrics, new RedirectLoadCoalescer(true, 1000),
+            new UrlCreateCoalescer(true, 5000), null, ShardRouter.unsharded(), null);
+    }
+
+    @Benchmark
+    public Optional<String> getUrlByCode() {
+        return tinyUrlService.getUrlByCode(codes[next++ & (CODES - 1)]);
+    }
+}
@@ -0,0 +1,35 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.service.UrlService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlServiceBenchmark {
+
+    @Param({"https://example.com/path?query=1", "Example.COM/Some/Longer/Path?utm_source=chat&utm_medium=share#section"})
+    public String url;
+
+    private UrlService urlService;
+
+    @Setup
+    public void setUp() {
+        urlService = new UrlService();
+    }
+
+    @Benchmark
+    public String normalizeUrl() {
+        return urlService.normalizeUrl(url);
+    }
+
+    @Benchmark
+    public boolean isValidShortCode() {
+        return urlService.isValidShortCode("abc1234");
+    }
+}
@@ -0,0 +1,116 @@
+package com.amtinyurl.benchmark;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.service.ShortCodeCodec;
+import com.amtinyurl.service.UrlService;
+import com.amtinyurl.storage.LogStructuredStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The {@code urls} lookups behind {@code UrlStore}: {@code log} reads the embedded segment log,
+ * {@code h2} runs the JPA path's SQL against an in-process H2 table with the same indexes. H2
+ * skips the network and Hibernate, so it is a floor for what the MySQL backend costs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlStoreBenchmark {
+
+    private static final int CODES = 65536;
+    private static final String FIND_BY_ID_SQL =
+        "SELECT code, normalized_url, url_hash, created_at FROM urls WHERE code = ?";
+    private static final String FIND_BY_HASH_SQL =
+        "SELECT code, normalized_url, url_hash, created_at FROM urls WHERE url_hash = ?";
+
+    @Param({"log", "h2"})
+    public String backend;
+
+    private LogStructuredStore store;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private Path directory;
+    private String[] codes;
+    private String[] hashes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        UrlService urlService = new UrlService();
+        List<Url> rows = new ArrayList<>(CODES);
+        codes = new String[CODES];
+        hashes = new String[CODES];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < CODES; i++) {
+            String url = "https://example.com/articles/" + i + "?utm_source=benchmark";
+            codes[i] = ShortCodeCodec.format(ThreadLocalRandom.current().nextLong(ShortCodeCodec.CODE_SPACE));
+            hashes[i] = urlService.hashUrl(url);
+            rows.add(new Url(codes[i], url, hashes[i], now));
+        }
+
+        if ("log".equals(backend)) {
+            directory = Files.createTempDirectory("url-log-bench");
+            store = new LogStructuredStore(directory, 64 * 1024 * 1024, 5, 0.5, CODES, Thread::new);
+            store.putAll(rows);
+        } else {
+            dataSource = new SingleConnectionDataSource("jdbc:h2:mem:urls;MODE=MySQL", "sa", "", true);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("CREATE TABLE urls (code CHAR(7) PRIMARY KEY, normalized_url VARCHAR(2048) NOT NULL, " +
+                "url_hash CHAR(64) NOT NULL UNIQUE, created_at TIMESTAMP NOT NULL)");
+            List<Object[]> batch = new ArrayList<>(CODES);
+            for (Url row : rows) {
+                batch.add(new Object[]{row.getCode(), row.getNormalizedUrl(), row.getUrlHash(), Timestamp.valueOf(now)});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO urls VALUES (?, ?, ?, ?)", batch);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (store != null) {
+            store.close();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+    }
+
+    @Benchmark
+    public Optional<Url> findById() {
+        String code = codes[next++ & (CODES - 1)];
+        return store != null ? store.get(code) : query(FIND_BY_ID_SQL, code);
+    }
+
+    @Benchmark
+    public Optional<Url> findByUrlHash() {
+        String hash = hashes[next++ & (CODES - 1)];
+        return store != null ? store.findByUrlHash(hash) : query(FIND_BY_HASH_SQL, hash);
+    }
+
+    private Optional<Url> query(String sql, String key) {
+        return jdbcTemplate.query(sql, (rs, row) -> new Url(rs.getString(1), rs.getString(2), rs.getString(3),
+            rs.getTimestamp(4).toLocalDateTime()), key).stream().findFirst();
+    }
+}
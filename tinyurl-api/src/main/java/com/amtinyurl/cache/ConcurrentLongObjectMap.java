@@ -0,0 +1,204 @@
+package com.amtinyurl.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Concurrent {@code long -> V} map for per-key counters on a hot path. Lookups probe an
+ * open-addressing table without locking, boxing or allocating; only inserting a new key and
+ * removal take the lock of the key's segment. A table is never rearranged in place: it fills free
+ * slots (value published before key), and growth or removal copies the survivors into a new table
+ * that replaces it. A reader still walking the old table finds the same value objects, so values
+ * should be mutable holders that stay valid after removal. Keys are non-negative, like
+ * {@link LongLongHashMap}.
+ */
+public final class ConcurrentLongObjectMap<V> {
+
+    private static final long FREE = -1L;
+    // Low enough that a lock-free probe ends at a free slot quickly
+    private static final double MAX_LOAD = 0.5;
+
+    private final Segment<V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongObjectMap() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /** The key's value, or null. Never blocks. */
+    public V get(long key) {
+        long hash = hash(key);
+        return segment(hash).table.find(key, hash);
+    }
+
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        long hash = hash(key);
+        Segment<V> segment = segment(hash);
+        V value = segment.table.find(key, hash);
+        if (value != null) {
+            return value;
+        }
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+        segment.lock.lock();
+        try {
+            Table<V> table = segment.table;
+            value = table.find(key, hash);
+            if (value == null) {
+                if (table.size >= table.resizeAt) {
+                    table = table.copy(table.size + 1, null);
+                    segment.table = table;
+                }
+                value = factory.apply(key);
+                table.insert(key, hash, value);
+            }
+            return value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /** Visits every entry without locking; entries added or removed meanwhile may be missed. */
+    public void forEach(Visitor<? super V> visitor) {
+        for (Segment<V> segment : segments) {
+            Table<V> table = segment.table;
+            for (int slot = 0; slot < table.keys.length(); slot++) {
+                long key = table.keys.get(slot);
+                if (key != FREE) {
+                    visitor.visit(key, table.values.get(slot));
+                }
+            }
+        }
+    }
+
+    /** Removes the entries the filter matches and returns how many went. */
+    public int removeIf(Filter<? super V> filter) {
+        int removed = 0;
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                Table<V> table = segment.table;
+                // Decided once per entry: the filter may look at values other threads are updating
+                boolean[] dropped = new boolean[table.keys.length()];
+                int kept = 0;
+                for (int slot = 0; slot < dropped.length; slot++) {
+                    long key = table.keys.get(slot);
+                    if (key != FREE) {
+                        if (filter.matches(key, table.values.get(slot))) {
+                            dropped[slot] = true;
+                        } else {
+                            kept++;
+                        }
+                    }
+                }
+                if (kept < table.size) {
+                    removed += table.size - kept;
+                    segment.table = table.copy(kept, dropped);
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.table.size;
+        }
+        return size;
+    }
+
+    private Segment<V> segment(long hash) {
+        // Slots come from the low bits of the hash, segments from the high ones
+        return segments[(int) (hash >>> 40) & (segments.length - 1)];
+    }
+
+    private static long hash(long key) {
+        // MurmurHash3 fmix64
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    @FunctionalInterface
+    public interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    @FunctionalInterface
+    public interface Filter<V> {
+        boolean matches(long key, V value);
+    }
+
+    private static final class Segment<V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Table<V> table = new Table<>(8);
+    }
+
+    private static final class Table<V> {
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+        private final int resizeAt;
+        // Written under the segment lock; read racily for stats
+        private volatile int size;
+
+        Table(int expectedEntries) {
+            int needed = (int) Math.ceil(Math.max(expectedEntries, 8) / MAX_LOAD);
+            int capacity = Integer.highestOneBit(needed - 1) << 1;
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            for (int slot = 0; slot < capacity; slot++) {
+                keys.lazySet(slot, FREE);
+            }
+            this.mask = capacity - 1;
+            this.resizeAt = (int) (capacity * MAX_LOAD);
+        }
+
+        V find(long key, long hash) {
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long found = keys.get(slot);
+                if (found == key) {
+                    return values.get(slot);
+                }
+                if (found == FREE) {
+                    return null;
+                }
+            }
+        }
+
+        void insert(long key, long hash, V value) {
+            int slot = (int) hash & mask;
+            while (keys.get(slot) != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            values.set(slot, value);
+            keys.set(slot, key);
+            size++;
+        }
+
+        // A new table sized for expectedEntries, holding every entry whose slot is not dropped
+        Table<V> copy(int expectedEntries, boolean[] dropped) {
+            Table<V> copy = new Table<>(expectedEntries);
+            for (int slot = 0; slot < keys.length(); slot++) {
+                long key = keys.get(slot);
+                if (key != FREE && (dropped == null || !dropped[slot])) {
+                    copy.insert(key, hash(key), values.get(slot));
+                }
+            }
+            return copy;
+        }
+    }
+}
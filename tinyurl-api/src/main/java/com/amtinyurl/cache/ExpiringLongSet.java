@@ -0,0 +1,117 @@
+package com.amtinyurl.cache;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded set of {@code long} keys that each drop out a fixed time after they were added, for
+ * short-lived negative caching. Keys are spread over lock-striped {@link LongLongHashMap}s holding
+ * the expiry time, so a lookup costs a short uncontended critical section and no allocation. A
+ * stripe that fills up first sheds its expired keys and, if it is still full, refuses the new key:
+ * losing a negative entry only costs one more lookup further down.
+ */
+public class ExpiringLongSet {
+
+    private final Stripe[] stripes;
+    private final int maxPerStripe;
+    private final long ttlMillis;
+
+    public ExpiringLongSet(long maxEntries, long ttlMillis) {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        this.stripes = new Stripe[count];
+        this.maxPerStripe = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2, maxEntries / count));
+        this.ttlMillis = ttlMillis;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(Math.min(maxPerStripe, 64));
+        }
+    }
+
+    public boolean contains(long key) {
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            long expiresAt = stripe.expiries.get(key, 0L);
+            if (expiresAt == 0L) {
+                return false;
+            }
+            if (expiresAt - System.currentTimeMillis() <= 0) {
+                stripe.expiries.remove(key, 0L);
+                return false;
+            }
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /** Returns false if the stripe was full of live keys and the key was not added. */
+    public boolean add(long key) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            LongLongHashMap expiries = stripe.expiries;
+            if (expiries.size() >= maxPerStripe && !expiries.containsKey(key)) {
+                removeExpired(expiries, now);
+                if (expiries.size() >= maxPerStripe) {
+                    return false;
+                }
+            }
+            expiries.put(key, now + ttlMillis, 0L);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void remove(long key) {
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            stripe.expiries.remove(key, 0L);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /** Keys held, including expired ones not swept yet. */
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.expiries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private static void removeExpired(LongLongHashMap expiries, long now) {
+        long[] expired = new long[expiries.size()];
+        int count = 0;
+        for (int slot = 0; slot < expiries.capacity(); slot++) {
+            if (expiries.keyAt(slot) != LongLongHashMap.FREE && expiries.valueAt(slot) - now <= 0) {
+                expired[count++] = expiries.keyAt(slot);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            expiries.remove(expired[i], 0L);
+        }
+    }
+
+    private Stripe stripe(long key) {
+        // Keys are spread within a stripe by their own hash; use bits that one ignores
+        long h = key * 0x9e3779b97f4a7c15L;
+        return stripes[(int) (h >>> 40) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongLongHashMap expiries;
+
+        Stripe(int expectedEntries) {
+            this.expiries = new LongLongHashMap(expectedEntries);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.amtinyurl.cache;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing {@code long -> long} hash table over two parallel arrays: linear probing,
+ * backward-shift deletion, doubling at 70% load. No entry objects and no boxing, so a lookup is
+ * a few array reads and an insert into spare capacity allocates nothing. Keys are non-negative
+ * (short codes decoded by {@code ShortCodeCodec}); -1 marks a free slot. Not thread-safe.
+ *
+ * <p>Slots can be walked with {@link #capacity()}, {@link #keyAt} and {@link #valueAt}; values may be
+ * rewritten in place with {@link #setValueAt} during the walk, but keys must not be added or removed.
+ */
+public final class LongLongHashMap {
+
+    public static final long FREE = -1L;
+
+    private static final double MAX_LOAD = 0.7;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongLongHashMap(int expectedEntries) {
+        int needed = (int) Math.ceil(Math.max(expectedEntries, 8) / MAX_LOAD);
+        allocate(Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    public long get(long key, long absent) {
+        int slot = indexOf(key);
+        return slot < 0 ? absent : values[slot];
+    }
+
+    /** Returns the value replaced, or {@code absent} if the key was new. */
+    public long put(long key, long value, long absent) {
+        int slot = insert(key, absent);
+        long previous = values[slot];
+        values[slot] = value;
+        return previous;
+    }
+
+    /** Adds {@code delta} to the key's value, starting from 0, and returns the new value. */
+    public long addTo(long key, long delta) {
+        int slot = insert(key, 0L);
+        return values[slot] += delta;
+    }
+
+    /** Raises the key's value to {@code value} if it is lower or the key is new. */
+    public void putMax(long key, long value) {
+        int slot = insert(key, Long.MIN_VALUE);
+        if (values[slot] < value) {
+            values[slot] = value;
+        }
+    }
+
+    /** Returns the value removed, or {@code absent}. */
+    public long remove(long key, long absent) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return absent;
+        }
+        long previous = values[slot];
+
+        // Pull later entries of the same probe run back so lookups never stop at a false gap
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            if (((next - hole) & mask) <= ((next - home(keys[next])) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = FREE;
+        values[hole] = 0L;
+        size--;
+        return previous;
+    }
+
+    /** Gives back memory after a burst: halves the table while it is under an eighth full. */
+    public void shrink() {
+        int capacity = keys.length;
+        while (capacity > 16 && size * 8L < capacity) {
+            capacity >>= 1;
+        }
+        if (capacity == keys.length) {
+            return;
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        copy(oldKeys, oldValues);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /** The key in {@code slot}, or {@link #FREE}. */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public long valueAt(int slot) {
+        return values[slot];
+    }
+
+    public void setValueAt(int slot, long value) {
+        values[slot] = value;
+    }
+
+    private int indexOf(long key) {
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                return slot;
+            }
+            if (found == FREE) {
+                return -1;
+            }
+        }
+    }
+
+    // Slot holding the key, claimed with value {@code initial} if the key was not there
+    private int insert(long key, long initial) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+        if (size >= resizeAt) {
+            grow();
+        }
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                return slot;
+            }
+            if (found == FREE) {
+                keys[slot] = key;
+                values[slot] = initial;
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        copy(oldKeys, oldValues);
+    }
+
+    private void copy(long[] oldKeys, long[] oldValues) {
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                values[insert(oldKeys[slot], 0L)] = oldValues[slot];
+            }
+        }
+    }
+
+    private int home(long key) {
+        // MurmurHash3 fmix64; consecutive codes would otherwise fill consecutive slots
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
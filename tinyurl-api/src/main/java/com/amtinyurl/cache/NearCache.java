@@ -0,0 +1,78 @@
+package com.amtinyurl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * In-JVM tier in front of the Redis {@code code:}/{@code url:} keys.
+ * Caffeine's W-TinyLFU policy only admits entries that are requested more often
+ * than the ones they would displace, so one-off lookups cannot flush hot codes.
+ * A code's URL never changes once issued, so entries only leave by size or TTL.
+ */
+@Component
+@Slf4j
+public class NearCache {
+
+    // Rough per-entry bookkeeping cost on top of the two strings' UTF-16 payload
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final boolean enabled;
+    private final Cache<String, String> codeToUrl;
+    private final Cache<String, String> urlHashToCode;
+
+    public NearCache(@Value("${app.cache.near.enabled:true}") boolean enabled,
+                     @Value("${app.cache.near.max-bytes:33554432}") long maxBytes,
+                     @Value("${app.cache.near.ttl-seconds:60}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.codeToUrl = build(maxBytes / 2, ttlSeconds);
+        this.urlHashToCode = build(maxBytes / 2, ttlSeconds);
+        log.info("Near cache enabled={}, maxBytes={}, ttlSeconds={}", enabled, maxBytes, ttlSeconds);
+    }
+
+    private static Cache<String, String> build(long maxWeight, long ttlSeconds) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String key, String value) -> ENTRY_OVERHEAD_BYTES + 2 * (key.length() + value.length()))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public String getUrlByCode(String code) {
+        return enabled ? codeToUrl.getIfPresent(code) : null;
+    }
+
+    public String getCodeByUrlHash(String urlHash) {
+        return enabled ? urlHashToCode.getIfPresent(urlHash) : null;
+    }
+
+    public void putCodeToUrl(String code, String url) {
+        if (enabled) {
+            codeToUrl.put(code, url);
+        }
+    }
+
+    public void putUrlHashToCode(String urlHash, String code) {
+        if (enabled) {
+            urlHashToCode.put(urlHash, code);
+        }
+    }
+
+    public CacheStats codeToUrlStats() {
+        return codeToUrl.stats();
+    }
+
+    public CacheStats urlHashToCodeStats() {
+        return urlHashToCode.stats();
+    }
+
+    public long estimatedSize() {
+        return codeToUrl.estimatedSize() + urlHashToCode.estimatedSize();
+    }
+}
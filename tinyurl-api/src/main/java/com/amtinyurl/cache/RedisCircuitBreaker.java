@@ -0,0 +1,110 @@
+package com.amtinyurl.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for the Redis cache tier. After {@code app.cache.breaker.failure-threshold}
+ * consecutive failures (each bounded by {@code spring.data.redis.timeout}) the circuit opens and
+ * {@link #allowRequest} turns every cache call into an immediate miss, so requests go straight
+ * to MySQL instead of waiting on a dead connection. While open, a scheduled probe moves the
+ * circuit to half-open, sends one PING and closes it again on success. Request threads never
+ * probe, and only state changes are logged.
+ */
+@Component
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile String lastError;
+    private volatile long openedAtMillis;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public RedisCircuitBreaker(RedisTemplate<String, String> redisTemplate,
+                               @Value("${app.cache.breaker.enabled:true}") boolean enabled,
+                               @Value("${app.cache.breaker.failure-threshold:5}") int failureThreshold) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.failureThreshold = failureThreshold;
+    }
+
+    public boolean allowRequest() {
+        if (!enabled || state.get() == State.CLOSED) {
+            return true;
+        }
+        shortCircuited.increment();
+        return false;
+    }
+
+    public void recordSuccess() {
+        // Plain read first so the healthy path never writes shared state
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public void recordFailure(Exception e) {
+        failures.increment();
+        lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (enabled && consecutiveFailures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openedAtMillis = System.currentTimeMillis();
+            opened.increment();
+            log.warn("Redis circuit opened after {} consecutive failures, serving from MySQL: {}",
+                failureThreshold, lastError);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.breaker.probe-interval-ms:1000}")
+    public void probe() {
+        if (!state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+            consecutiveFailures.set(0);
+            state.set(State.CLOSED);
+            log.warn("Redis circuit closed after {} ms open", System.currentTimeMillis() - openedAtMillis);
+        } catch (Exception e) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            state.set(State.OPEN);
+            log.debug("Redis probe failed, circuit stays open: {}", lastError);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("state", state.get().name());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("failures", failures.sum());
+        stats.put("opened", opened.sum());
+        stats.put("shortCircuited", shortCircuited.sum());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
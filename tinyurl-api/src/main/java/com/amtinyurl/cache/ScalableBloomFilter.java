@@ -0,0 +1,164 @@
+package com.amtinyurl.cache;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter that grows by appending slices. Each new slice doubles the capacity
+ * of the previous one and halves its false-positive rate, so the compound rate stays below
+ * roughly twice the initial target no matter how many codes are added.
+ */
+public class ScalableBloomFilter {
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private final CopyOnWriteArrayList<Slice> slices = new CopyOnWriteArrayList<>();
+    private final double baseFalsePositiveRate;
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        if (initialCapacity <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid bloom filter sizing");
+        }
+        this.baseFalsePositiveRate = falsePositiveRate;
+        slices.add(new Slice(initialCapacity, falsePositiveRate));
+    }
+
+    public void add(CharSequence key) {
+        addHash(hash(key));
+    }
+
+    /**
+     * Numeric keys, such as decoded short codes, skip the per-character hash. A key hashes
+     * differently as a number than as text, so a filter must be fed and queried the same way.
+     */
+    public void add(long key) {
+        addHash(hash(key));
+    }
+
+    private void addHash(long hash) {
+        Slice current = slices.get(slices.size() - 1);
+        if (current.isFull()) {
+            current = grow(current);
+        }
+        current.add(hash);
+    }
+
+    public boolean mightContain(CharSequence key) {
+        return mightContainHash(hash(key));
+    }
+
+    public boolean mightContain(long key) {
+        return mightContainHash(hash(key));
+    }
+
+    private boolean mightContainHash(long hash) {
+        for (Slice slice : slices) {
+            if (slice.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long approximateCount() {
+        long count = 0;
+        for (Slice slice : slices) {
+            count += slice.count.get();
+        }
+        return count;
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Slice slice : slices) {
+            bytes += slice.bits.length() * 8L;
+        }
+        return bytes;
+    }
+
+    public int sliceCount() {
+        return slices.size();
+    }
+
+    private synchronized Slice grow(Slice full) {
+        Slice last = slices.get(slices.size() - 1);
+        if (last != full) {
+            return last;
+        }
+        Slice next = new Slice(full.capacity * 2, baseFalsePositiveRate / (1L << slices.size()));
+        slices.add(next);
+        return next;
+    }
+
+    // 64-bit FNV-1a followed by a murmur3 finalizer; keys are short ASCII codes
+    static long hash(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Slice {
+        private final long capacity;
+        private final long bitCount;
+        private final int hashFunctions;
+        private final AtomicLongArray bits;
+        private final AtomicLong count = new AtomicLong();
+
+        Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / LN2_SQUARED);
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6);
+            this.bitCount = words * 64L;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray(words);
+        }
+
+        boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        void add(long hash) {
+            long h2 = Long.rotateLeft(hash, 32) | 1;
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = ((hash + i * h2) & Long.MAX_VALUE) % bitCount;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = bits.get(word);
+                while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    current = bits.get(word);
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        boolean mightContain(long hash) {
+            long h2 = Long.rotateLeft(hash, 32) | 1;
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = ((hash + i * h2) & Long.MAX_VALUE) % bitCount;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
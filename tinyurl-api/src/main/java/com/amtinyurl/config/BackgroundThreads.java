@@ -0,0 +1,49 @@
+package com.amtinyurl.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for the executors the services own (block leasing, filter loading, bulk import).
+ * Follows {@code spring.threads.virtual.enabled} the same way Boot does for Tomcat, {@code @Async}
+ * and {@code @Scheduled}: virtual threads on JDK 21+ when enabled, named daemon platform threads otherwise.
+ */
+@Component
+@Slf4j
+public class BackgroundThreads {
+
+    private final boolean virtual;
+
+    @Autowired
+    public BackgroundThreads(Environment environment) {
+        this(Threading.VIRTUAL.isActive(environment));
+    }
+
+    public BackgroundThreads(boolean virtual) {
+        this.virtual = virtual;
+        log.info("Background threads: {}", virtual ? "virtual" : "platform");
+    }
+
+    public ThreadFactory factory(String name) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
@@ -0,0 +1,66 @@
+package com.amtinyurl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Only active when {@code app.datasource.replicas} lists replica JDBC URLs; otherwise Boot's
+ * single auto-configured pool is used unchanged. Replicas share the primary's credentials and driver.
+ * Ignored when sharding is configured, which replaces the data source itself.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replicas:}'.trim().isEmpty() && '${app.sharding.shards:}'.trim().isEmpty()")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties properties,
+                                                             @Value("${app.datasource.replicas}") List<String> replicaUrls,
+                                                             @Value("${app.datasource.replica.maximum-pool-size:10}") int maxPoolSize,
+                                                             @Value("${app.datasource.replica.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+                                                             @Value("${app.datasource.replica.lag-column:Seconds_Behind_Source}") String lagColumn,
+                                                             @Value("${app.datasource.replica.max-lag-seconds:5}") long maxLagSeconds) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            replica.setPoolName(name);
+            replica.setMaximumPoolSize(maxPoolSize);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, lagQuery, lagColumn, maxLagSeconds);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
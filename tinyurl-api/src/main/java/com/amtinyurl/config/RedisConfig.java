@@ -1,9 +1,12 @@
 package com.amtinyurl.config;
 
+import com.amtinyurl.service.CodeExistenceFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -23,4 +26,13 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    @Bean
+    public RedisMessageListenerContainer codesIssuedContainer(RedisConnectionFactory connectionFactory,
+                                                              CodeExistenceFilter codeExistenceFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(codeExistenceFilter, new ChannelTopic(CodeExistenceFilter.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,172 @@
+package com.amtinyurl.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only transactions to a healthy replica, round-robin, and everything else to the
+ * primary. A scheduled check ejects replicas that fail a connection test or report lag above
+ * {@code app.datasource.replica.max-lag-seconds}, and re-admits them once they recover; with no
+ * healthy replica, reads fall back to the primary. Must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} so the connection is
+ * chosen after the transaction's read-only flag is known. Work that must read its own writes
+ * runs inside {@link #onPrimary}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final String lagColumn;
+    private final long maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Replica[] healthy;
+
+    private final LongAdder primaryFallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+                                    String lagQuery, String lagColumn, long maxLagSeconds) {
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+        this.maxLagSeconds = maxLagSeconds;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicaDataSources.forEach((name, dataSource) -> {
+            targets.put(name, dataSource);
+            replicas.add(new Replica(name, dataSource));
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        // Replicas start in rotation; the first check ejects any that are down or behind
+        this.healthy = replicas.toArray(new Replica[0]);
+    }
+
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PINNED_TO_PRIMARY.get();
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PINNED_TO_PRIMARY.remove();
+            } else {
+                PINNED_TO_PRIMARY.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PINNED_TO_PRIMARY.get() != null) {
+            return PRIMARY;
+        }
+        Replica[] candidates = healthy;
+        if (candidates.length == 0) {
+            primaryFallbacks.increment();
+            return PRIMARY;
+        }
+        Replica replica = candidates[Math.floorMod(next.getAndIncrement(), candidates.length)];
+        replica.reads.increment();
+        return replica.name;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.check-interval-ms:2000}")
+    public void checkReplicas() {
+        List<Replica> inRotation = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            replica.healthy = check(replica);
+            if (replica.healthy != wasHealthy) {
+                log.warn("Replica {} {}: {}", replica.name, replica.healthy ? "back in rotation" : "ejected",
+                    replica.healthy ? "lag " + replica.lagSeconds + "s" : replica.lastError);
+            }
+            if (replica.healthy) {
+                inRotation.add(replica);
+            }
+        }
+        healthy = inRotation.toArray(new Replica[0]);
+    }
+
+    private boolean check(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection()) {
+            if (!connection.isValid(2)) {
+                replica.lastError = "connection not valid";
+                return false;
+            }
+            if (lagQuery == null || lagQuery.isEmpty()) {
+                replica.lagSeconds = 0;
+                return true;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                if (!rs.next()) {
+                    replica.lastError = "not replicating";
+                    return false;
+                }
+                long lag = rs.getLong(lagColumn);
+                if (rs.wasNull()) {
+                    replica.lastError = "replication stopped";
+                    return false;
+                }
+                replica.lagSeconds = lag;
+                if (lag > maxLagSeconds) {
+                    replica.lastError = "lag " + lag + "s exceeds " + maxLagSeconds + "s";
+                    return false;
+                }
+                return true;
+            }
+        } catch (Exception e) {
+            replica.lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("healthyReplicas", healthy.length);
+        stats.put("primaryFallbacks", primaryFallbacks.sum());
+        for (Replica replica : replicas) {
+            Map<String, Object> replicaStats = new LinkedHashMap<>();
+            replicaStats.put("healthy", replica.healthy);
+            replicaStats.put("lagSeconds", replica.lagSeconds);
+            replicaStats.put("reads", replica.reads.sum());
+            replicaStats.put("lastError", replica.lastError);
+            stats.put(replica.name, replicaStats);
+        }
+        return stats;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder reads = new LongAdder();
+        private volatile boolean healthy = true;
+        private volatile long lagSeconds;
+        private volatile String lastError;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -1,7 +1,21 @@
 package com.amtinyurl.controller;
 
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import com.amtinyurl.config.ReplicaRoutingDataSource;
+import com.amtinyurl.logging.StructuredLogger;
+import com.amtinyurl.service.CacheService;
+import com.amtinyurl.service.CacheWarmer;
+import com.amtinyurl.service.ClickTracker;
+import com.amtinyurl.service.CodeAllocator;
+import com.amtinyurl.service.CodeExistenceFilter;
+import com.amtinyurl.service.RedirectLoadCoalescer;
+import com.amtinyurl.service.UrlCreateCoalescer;
+import com.amtinyurl.service.UserUrlVersions;
+import com.amtinyurl.shard.ShardRouter;
+import com.amtinyurl.storage.UrlStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +34,19 @@ public class HealthController {
 
     private final DataSource dataSource;
     private final RedisTemplate<String, String> redisTemplate;
+    private final CacheService cacheService;
+    private final CacheWarmer cacheWarmer;
+    private final UrlStore urlStore;
+    private final CodeExistenceFilter codeExistenceFilter;
+    private final CodeAllocator codeAllocator;
+    private final ClickTracker clickTracker;
+    private final StructuredLogger structuredLogger;
+    private final RedirectLoadCoalescer redirectLoadCoalescer;
+    private final UrlCreateCoalescer urlCreateCoalescer;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource;
+    private final ShardRouter shardRouter;
+    private final UserUrlVersions userUrlVersions;
 
     @GetMapping("/healthz")
     public ResponseEntity<Map<String, Object>> health() {
@@ -60,6 +87,22 @@ public class HealthController {
             allHealthy = false;
         }
 
+        replicaRoutingDataSource.ifAvailable(routing -> health.put("replicas", routing.getStats()));
+        if (shardRouter.isSharded()) {
+            health.put("shards", shardRouter.getStats());
+        }
+        health.put("cache", cacheService.getTierStats());
+        health.put("cacheWarmup", cacheWarmer.getStats());
+        health.put("storage", urlStore.getStats());
+        health.put("urlListVersions", userUrlVersions.getStats());
+        health.put("redisBreaker", redisCircuitBreaker.getStats());
+        health.put("codeFilter", codeExistenceFilter.getStats());
+        health.put("codeAllocator", codeAllocator.getStats());
+        health.put("clicks", clickTracker.getStats());
+        health.put("redirectLoads", redirectLoadCoalescer.getStats());
+        health.put("createLoads", urlCreateCoalescer.getStats());
+        health.put("logging", structuredLogger.getStats());
+
         if (!allHealthy) {
             health.put("status", "degraded");
         }
@@ -1,5 +1,8 @@
 package com.amtinyurl.controller;
 
+import com.amtinyurl.logging.StructuredLogger;
+import com.amtinyurl.metrics.TinyUrlMetrics;
+import com.amtinyurl.service.ClickTracker;
 import com.amtinyurl.service.TinyUrlService;
 import com.amtinyurl.service.UrlService;
 import lombok.RequiredArgsConstructor;
@@ -21,9 +24,13 @@ public class RedirectController {
 
     private final TinyUrlService tinyUrlService;
     private final UrlService urlService;
+    private final ClickTracker clickTracker;
+    private final TinyUrlMetrics metrics;
+    private final StructuredLogger structuredLogger;
 
     @GetMapping("/{code:[a-z0-9]{7}}")
     public ResponseEntity<?> redirect(@PathVariable String code) {
+        long start = System.nanoTime();
         String normalizedCode = urlService.normalizeShortCode(code);
 
         if (!urlService.isValidShortCode(normalizedCode)) {
@@ -38,7 +45,9 @@ public class RedirectController {
         Optional<String> url = tinyUrlService.getUrlByCode(normalizedCode);
 
         if (url.isPresent()) {
-            log.info("Redirecting {} -> {}", normalizedCode, url.get());
+            TinyUrlMetrics.record(metrics.redirectFound, start);
+            clickTracker.record(normalizedCode);
+            structuredLogger.logRedirect(normalizedCode, url.get(), HttpStatus.MOVED_PERMANENTLY.value());
 
             HttpHeaders headers = new HttpHeaders();
             headers.add("Location", url.get());
@@ -48,7 +57,8 @@ public class RedirectController {
                 .headers(headers)
                 .build();
         } else {
-            log.warn("Short code not found: {}", normalizedCode);
+            TinyUrlMetrics.record(metrics.redirectNotFound, start);
+            structuredLogger.logRedirect(normalizedCode, null, HttpStatus.NOT_FOUND.value());
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(Map.of(
                     "error", "Short code not found",
@@ -1,22 +1,47 @@
 package com.amtinyurl.controller;
 
+import com.amtinyurl.dto.BatchCreateUrlRequest;
+import com.amtinyurl.dto.BatchCreateUrlResponse;
+import com.amtinyurl.dto.ClickStatsResponse;
 import com.amtinyurl.dto.CreateUrlRequest;
 import com.amtinyurl.dto.CreateUrlResponse;
 import com.amtinyurl.dto.UrlListResponse;
-import com.amtinyurl.entity.UserUrl;
+import com.amtinyurl.dto.UrlPageResponse;
+import com.amtinyurl.dto.UserUrlSummary;
+import com.amtinyurl.service.BatchUrlService;
+import com.amtinyurl.service.BulkImportService;
+import com.amtinyurl.service.ClickTracker;
+import com.amtinyurl.service.ImportRecordReader;
 import com.amtinyurl.service.TinyUrlService;
+import com.amtinyurl.service.UserUrlVersions;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -24,6 +49,15 @@ import java.util.stream.Collectors;
 public class UrlController {
 
     private final TinyUrlService tinyUrlService;
+    private final BatchUrlService batchUrlService;
+    private final BulkImportService bulkImportService;
+    private final ClickTracker clickTracker;
+    private final ObjectMapper objectMapper;
+    private final UserUrlVersions userUrlVersions;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Browsers keep the list but revalidate it on every load; shared caches must not keep it at all
+    private static final CacheControl LIST_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
 
     @Value("${app.base-url}")
     private String baseUrl;
@@ -58,27 +92,178 @@ public class UrlController {
                 return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                     .body(null);
             }
+            if ("CODE_ALLOCATION_FAILED".equals(e.getMessage())) {
+                log.error("Short code allocation failed for URL: {}", request.getUrl());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(null);
+            }
             log.error("Unexpected error creating URL", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @PostMapping("/urls/batch")
+    public ResponseEntity<BatchCreateUrlResponse> createUrls(@Valid @RequestBody BatchCreateUrlRequest request,
+                                                             Authentication authentication) {
+        try {
+            String userId = authentication.getName();
+            List<BatchUrlService.BatchItemResult> results =
+                batchUrlService.createOrGetShortUrls(request.getUrls(), userId);
+
+            int created = 0;
+            int existing = 0;
+            int failed = 0;
+            List<BatchCreateUrlResponse.Item> items = new ArrayList<>(results.size());
+            for (BatchUrlService.BatchItemResult item : results) {
+                if (item.error != null) {
+                    failed++;
+                    items.add(new BatchCreateUrlResponse.Item(null, null, null, null, null, item.error));
+                    continue;
+                }
+                TinyUrlService.CreateUrlResult result = item.result;
+                if (result.existed) {
+                    existing++;
+                } else {
+                    created++;
+                }
+                items.add(new BatchCreateUrlResponse.Item(result.code, result.shortUrl, result.url,
+                    result.createdAt, result.existed, null));
+            }
+
+            log.info("Batch URL creation for user {}: {} created, {} existing, {} failed",
+                userId, created, existing, failed);
+            return ResponseEntity.ok(new BatchCreateUrlResponse(created, existing, failed, items));
+
+        } catch (RuntimeException e) {
+            if ("CODE_ALLOCATION_FAILED".equals(e.getMessage())) {
+                log.error("Short code allocation failed for batch of {} URLs", request.getUrls().size());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(null);
+            }
+            log.error("Unexpected error creating URL batch", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // Streams per-line results and progress as NDJSON while the upload is still being read
+    @PostMapping(value = "/urls/import", consumes = {"application/x-ndjson", "text/csv"})
+    public void importUrls(HttpServletRequest request, HttpServletResponse response,
+                           Authentication authentication) throws IOException {
+        String userId = authentication.getName();
+        ImportRecordReader.Format format = request.getContentType().toLowerCase().startsWith("text/csv")
+            ? ImportRecordReader.Format.CSV : ImportRecordReader.Format.NDJSON;
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        try (BufferedReader input = new BufferedReader(
+                 new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+             Writer output = new BufferedWriter(
+                 new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+            bulkImportService.importUrls(input, format, userId, output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Bulk import for user {} interrupted", userId);
+        }
+    }
+
+    @GetMapping(value = "/urls", params = "limit")
+    public ResponseEntity<UrlPageResponse> getUserUrlPage(@RequestParam int limit,
+                                                          @RequestParam(required = false) String cursor,
+                                                          Authentication authentication,
+                                                          WebRequest webRequest) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String userId = authentication.getName();
+        String eTag = listETag(userId);
+        if (eTag != null && webRequest.checkNotModified(eTag)) {
+            userUrlVersions.recordNotModified();
+            return null;
+        }
+        TinyUrlService.UserUrlPage page;
+        try {
+            page = tinyUrlService.getUserUrlPage(userId, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid cursor provided: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<UrlListResponse> items = new ArrayList<>(page.items.size());
+        for (UserUrlSummary row : page.items) {
+            items.add(toListResponse(row));
+        }
+
+        log.info("Retrieved page of {} URLs for user {}", items.size(), userId);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().cacheControl(LIST_CACHE_CONTROL);
+        if (eTag != null) {
+            ok.eTag(eTag);
+        }
+        return ok.body(new UrlPageResponse(items, page.nextCursor));
+    }
+
+    // Full export: the same JSON array as always, written row by row straight from the result set
     @GetMapping("/urls")
-    public ResponseEntity<List<UrlListResponse>> getUserUrls(Authentication authentication) {
+    public void getUserUrls(HttpServletRequest request, HttpServletResponse response,
+                            Authentication authentication) throws IOException {
+        String userId = authentication.getName();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, LIST_CACHE_CONTROL.getHeaderValue());
+        String eTag = listETag(userId);
+        if (eTag != null) {
+            if (new ServletWebRequest(request, response).checkNotModified(eTag)) {
+                userUrlVersions.recordNotModified();
+                return;
+            }
+            response.setHeader(HttpHeaders.ETAG, eTag);
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            json.writeStartArray();
+            long count = tinyUrlService.streamUserUrls(userId, row -> {
+                try {
+                    json.writeObject(toListResponse(row));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+            log.info("Retrieved {} URLs for user {}", count, userId);
+        } catch (UncheckedIOException e) {
+            log.warn("URL export for user {} aborted: {}", userId, e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Strong ETag for the user's list: their version plus the base URL every short URL in the body
+     * is built from. Read before the query, so a change committing in between only costs a full
+     * response next time, never a stale 304.
+     */
+    private String listETag(String userId) {
+        String version = userUrlVersions.current(userId.toLowerCase());
+        return version == null ? null : "\"" + version + "-" + Integer.toHexString(baseUrl.hashCode()) + "\"";
+    }
+
+    private UrlListResponse toListResponse(UserUrlSummary row) {
+        return new UrlListResponse(row.getCode(), baseUrl + "/" + row.getCode(), row.getUrl(), row.getCreatedAt());
+    }
+
+    @GetMapping("/urls/{code}/clicks")
+    public ResponseEntity<ClickStatsResponse> getClickStats(@PathVariable String code, Authentication authentication) {
         String userId = authentication.getName();
-        List<UserUrl> userUrls = tinyUrlService.getUserUrls(userId);
-
-        List<UrlListResponse> response = userUrls.stream()
-            .map(userUrl -> new UrlListResponse(
-                userUrl.getCode(),
-                baseUrl + "/" + userUrl.getCode(),
-                userUrl.getUrl().getNormalizedUrl(),
-                userUrl.getCreatedAt()
-            ))
-            .collect(Collectors.toList());
-
-        log.info("Retrieved {} URLs for user {}", response.size(), userId);
-        return ResponseEntity.ok(response);
+        String normalizedCode = code.toLowerCase();
+
+        // Only owners of a link can read its analytics
+        if (!tinyUrlService.isAssociated(userId, normalizedCode)) {
+            log.warn("Click stats requested for unassociated code {} by user {}", normalizedCode, userId);
+            return ResponseEntity.notFound().build();
+        }
+
+        ClickTracker.ClickCount count = clickTracker.getClickCount(normalizedCode);
+        log.info("Retrieved click stats for user {} and code {}: {}", userId, normalizedCode, count.clicks);
+        return ResponseEntity.ok(new ClickStatsResponse(normalizedCode, count.clicks, count.lastAccessedAt));
     }
 
     @DeleteMapping("/urls/{code}")
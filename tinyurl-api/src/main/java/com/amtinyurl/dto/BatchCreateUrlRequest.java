@@ -0,0 +1,15 @@
+package com.amtinyurl.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchCreateUrlRequest {
+
+    @NotEmpty(message = "urls cannot be empty")
+    @Size(max = 5000, message = "urls cannot contain more than 5000 entries")
+    private List<String> urls;
+}
@@ -0,0 +1,33 @@
+package com.amtinyurl.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchCreateUrlResponse {
+    private int created;
+    private int existing;
+    private int failed;
+    private List<Item> results;
+
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+        private String code;
+        private String shortUrl;
+        private String url;
+
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+        private LocalDateTime createdAt;
+
+        private Boolean existed;
+        private String error;
+    }
+}
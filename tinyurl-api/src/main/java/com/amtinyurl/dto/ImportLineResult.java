@@ -0,0 +1,17 @@
+package com.amtinyurl.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportLineResult {
+    private int line;
+    private String code;
+    private String shortUrl;
+    private String url;
+    private Boolean existed;
+    private String error;
+}
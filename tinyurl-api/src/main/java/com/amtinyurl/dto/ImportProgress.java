@@ -0,0 +1,15 @@
+package com.amtinyurl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImportProgress {
+    // "progress" after every chunk, "complete" once the whole upload has been processed
+    private String type;
+    private long lines;
+    private long created;
+    private long existing;
+    private long failed;
+}
@@ -0,0 +1,14 @@
+package com.amtinyurl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UrlPageResponse {
+    private List<UrlListResponse> items;
+    // Opaque; pass back as ?cursor= to fetch the next page. Null on the last page.
+    private String nextCursor;
+}
@@ -0,0 +1,15 @@
+package com.amtinyurl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Read-only projection of a user's link; built directly by JPQL, never a managed entity
+@Getter
+@AllArgsConstructor
+public class UserUrlSummary {
+    private final String code;
+    private final String url;
+    private final LocalDateTime createdAt;
+}
@@ -0,0 +1,21 @@
+package com.amtinyurl.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Entity
+@Table(name = "code_sequence")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeSequence {
+
+    @Id
+    @Column(name = "name", length = 32, nullable = false)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
@@ -29,6 +29,10 @@ public class Url {
     @NotBlank
     private String normalizedUrl;
 
+    // Generated by MySQL as SHA2(normalized_url, 256); set in Java only for the in-memory copy
+    @Column(name = "url_hash", length = 64, columnDefinition = "CHAR(64)", insertable = false, updatable = false)
+    private String urlHash;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
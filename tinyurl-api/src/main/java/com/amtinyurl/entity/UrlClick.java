@@ -0,0 +1,27 @@
+package com.amtinyurl.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Written only by ClickTracker's batched upserts; mapped for reads
+@Entity
+@Table(name = "url_clicks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UrlClick {
+
+    @Id
+    @Column(name = "code", length = 7, nullable = false, columnDefinition = "CHAR(7)")
+    private String code;
+
+    @Column(name = "click_count", nullable = false)
+    private long clickCount;
+
+    @Column(name = "last_accessed_at", nullable = false)
+    private LocalDateTime lastAccessedAt;
+}
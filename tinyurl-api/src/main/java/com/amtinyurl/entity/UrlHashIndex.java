@@ -0,0 +1,45 @@
+package com.amtinyurl.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+// Sharded deployments only: maps a URL hash to its code on the shard that owns the hash
+@Entity
+@Table(name = "url_hash_index")
+@Data
+@NoArgsConstructor
+public class UrlHashIndex implements Persistable<String> {
+
+    @Id
+    @Column(name = "url_hash", length = 64, nullable = false, columnDefinition = "CHAR(64)")
+    private String urlHash;
+
+    @Column(name = "code", length = 7, nullable = false, columnDefinition = "CHAR(7)")
+    private String code;
+
+    // Always an INSERT, so a concurrent claim of the same hash fails instead of being overwritten
+    @Transient
+    private boolean loaded;
+
+    public UrlHashIndex(String urlHash, String code) {
+        this.urlHash = urlHash;
+        this.code = code;
+    }
+
+    @Override
+    public String getId() {
+        return urlHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !loaded;
+    }
+
+    @PostLoad
+    protected void onLoad() {
+        loaded = true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.amtinyurl.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated line buffers. A producer claims
+ * the next sequence with a CAS, encodes straight into that slot's {@link StringBuilder} and
+ * publishes it; the consumer reads slots strictly in sequence order. When every slot is still
+ * waiting to be written out, {@link #claim} returns {@code null} instead of blocking the request.
+ */
+final class LogRingBuffer {
+
+    // A slot that grew past this for one oversized line is replaced rather than kept at that size
+    private static final int MAX_RETAINED_CHARS = 16 * 1024;
+    private static final int INITIAL_LINE_CHARS = 512;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    LogRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    Slot claim() {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                return null;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.sequence = sequence;
+        slot.line.setLength(0);
+        return slot;
+    }
+
+    void publish(Slot slot) {
+        slot.published = slot.sequence;
+    }
+
+    // Hands published lines to the consumer in order and frees their slots; returns how many
+    int drain(Consumer<StringBuilder> consumer, int max) {
+        long next = consumed;
+        int drained = 0;
+        while (drained < max) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                break;
+            }
+            consumer.accept(slot.line);
+            if (slot.line.capacity() > MAX_RETAINED_CHARS) {
+                slot.line = new StringBuilder(INITIAL_LINE_CHARS);
+            }
+            next++;
+            drained++;
+            consumed = next;
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return claimed.get() == consumed;
+    }
+
+    int size() {
+        return (int) (claimed.get() - consumed);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    static final class Slot {
+        StringBuilder line = new StringBuilder(INITIAL_LINE_CHARS);
+        long sequence;
+        volatile long published = -1;
+    }
+}
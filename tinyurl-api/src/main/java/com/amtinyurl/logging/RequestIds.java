@@ -0,0 +1,54 @@
+package com.amtinyurl.logging;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request ids in the UUIDv7 layout: the top 48 bits are the Unix time in milliseconds, so ids
+ * sort by creation time, followed by a per-node random tag and a per-node counter. Only the
+ * node tag and the counter's starting point come from {@link SecureRandom}, once at class load;
+ * each id after that costs one atomic increment and one 36-char string.
+ */
+public final class RequestIds {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final long NODE_TAG;
+    private static final AtomicLong SEQUENCE;
+
+    static {
+        SecureRandom random = new SecureRandom();
+        NODE_TAG = random.nextInt(1 << 12);
+        SEQUENCE = new AtomicLong(random.nextLong());
+    }
+
+    private RequestIds() {
+    }
+
+    public static String next() {
+        return format(System.currentTimeMillis(), SEQUENCE.getAndIncrement());
+    }
+
+    static String format(long millis, long sequence) {
+        long msb = (millis << 16) | 0x7000L | NODE_TAG;
+        long lsb = 0x8000000000000000L | (sequence & 0x3fffffffffffffffL);
+
+        char[] id = new char[36];
+        hex(msb >>> 32, id, 0, 8);
+        id[8] = '-';
+        hex(msb >>> 16, id, 9, 4);
+        id[13] = '-';
+        hex(msb, id, 14, 4);
+        id[18] = '-';
+        hex(lsb >>> 48, id, 19, 4);
+        id[23] = '-';
+        hex(lsb, id, 24, 12);
+        return new String(id);
+    }
+
+    private static void hex(long value, char[] out, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.amtinyurl.logging;
+
+/**
+ * Per-thread request fields for {@link StructuredLogger}, filled by
+ * {@link RequestLoggingInterceptor}. The holder is reused across requests on pooled threads,
+ * so a request costs a few field writes instead of a round of MDC map updates.
+ */
+public final class RequestLogContext {
+
+    private static final ThreadLocal<RequestLogContext> CURRENT = ThreadLocal.withInitial(RequestLogContext::new);
+
+    String requestId;
+    String userId;
+    String userAgent;
+    String method;
+    String path;
+
+    private RequestLogContext() {
+    }
+
+    public static RequestLogContext current() {
+        return CURRENT.get();
+    }
+
+    void set(String requestId, String userId, String userAgent, String method, String path) {
+        this.requestId = requestId;
+        this.userId = userId;
+        this.userAgent = userAgent;
+        this.method = method;
+        this.path = path;
+    }
+
+    void clear() {
+        set(null, null, null, null, null);
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+}
@@ -9,34 +9,30 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.util.UUID;
-
 @Component
 @Slf4j
 public class RequestLoggingInterceptor implements HandlerInterceptor {
 
     private static final String REQUEST_ID_HEADER = "X-Request-Id";
+    // Only the id goes to the MDC, to correlate plain log lines; the rest lives in RequestLogContext
     private static final String REQUEST_ID_MDC_KEY = "requestId";
-    private static final String USER_ID_MDC_KEY = "userId";
-    private static final String USER_AGENT_MDC_KEY = "userAgent";
-    private static final String ROUTE_MDC_KEY = "route";
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         String requestId = request.getHeader(REQUEST_ID_HEADER);
         if (requestId == null || requestId.isEmpty()) {
-            requestId = UUID.randomUUID().toString();
+            requestId = RequestIds.next();
         }
 
-        MDC.put(REQUEST_ID_MDC_KEY, requestId);
-        MDC.put(USER_AGENT_MDC_KEY, request.getHeader("User-Agent"));
-        MDC.put(ROUTE_MDC_KEY, request.getMethod() + " " + request.getRequestURI());
-
+        String userId = null;
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.isAuthenticated() && !"anonymousUser".equals(auth.getName())) {
-            MDC.put(USER_ID_MDC_KEY, auth.getName());
+            userId = auth.getName();
         }
 
+        RequestLogContext.current().set(requestId, userId, request.getHeader("User-Agent"),
+            request.getMethod(), request.getRequestURI());
+        MDC.put(REQUEST_ID_MDC_KEY, requestId);
         response.setHeader(REQUEST_ID_HEADER, requestId);
 
         return true;
@@ -44,6 +40,7 @@ public class RequestLoggingInterceptor implements HandlerInterceptor {
 
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
-        MDC.clear();
+        RequestLogContext.current().clear();
+        MDC.remove(REQUEST_ID_MDC_KEY);
     }
-}
\ No newline at end of file
+}
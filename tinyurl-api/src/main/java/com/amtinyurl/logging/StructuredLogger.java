@@ -1,50 +1,80 @@
 package com.amtinyurl.logging;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.amtinyurl.config.BackgroundThreads;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PreDestroy;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
+/**
+ * One JSON line per request action, logged at INFO on the {@value #EVENTS_LOGGER} logger, whose
+ * appender in {@code logback-spring.xml} prints the bare message to the console; its level and
+ * appenders are configured like any other logger's. The calling thread encodes the event straight
+ * into a preallocated slot of a {@link LogRingBuffer} (no map, no Jackson, timestamp prefix
+ * cached per second) and returns; a single background writer hands each line to logback as one
+ * event, so lines never split or interleave with other console output. The writer sleeps while
+ * the ring is empty and is woken by the next publish. A full ring drops the event and counts it
+ * rather than stalling requests.
+ * Successful redirects are sampled at {@code app.logging.redirect-sample-rate}; every other
+ * event, and any redirect that did not succeed, is always written.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class StructuredLogger {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    public static final String EVENTS_LOGGER = "com.amtinyurl.events";
 
-    public void logAction(String action, String code, String url, String cache, int status) {
-        try {
-            Map<String, Object> logEntry = new HashMap<>();
-            logEntry.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            logEntry.put("level", "INFO");
-            logEntry.put("requestId", MDC.get("requestId"));
-            logEntry.put("userId", MDC.get("userId"));
-            logEntry.put("userAgent", MDC.get("userAgent"));
-            logEntry.put("route", MDC.get("route"));
-            logEntry.put("action", action);
-
-            if (code != null) {
-                logEntry.put("code", code);
-            }
-            if (url != null) {
-                logEntry.put("url", url);
-            }
-            if (cache != null) {
-                logEntry.put("cache", cache);
-            }
-            logEntry.put("status", status);
+    private static final int DRAIN_BATCH = 256;
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.");
 
-            String jsonLog = objectMapper.writeValueAsString(logEntry);
-            log.info(jsonLog);
-        } catch (Exception e) {
-            log.error("Failed to write structured log", e);
-        }
+    private final LogRingBuffer ring;
+    private final Logger events;
+    private final double redirectSampleRate;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // Set by the writer before it parks, so producers only pay for an unpark when it sleeps
+    private volatile boolean idle;
+    private volatile SecondPrefix secondPrefix = new SecondPrefix(Long.MIN_VALUE, "");
+    private final Consumer<StringBuilder> lineWriter = this::writeLine;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+
+    @Autowired
+    public StructuredLogger(BackgroundThreads backgroundThreads,
+                            @Value("${app.logging.ring-size:8192}") int ringSize,
+                            @Value("${app.logging.redirect-sample-rate:1.0}") double redirectSampleRate) {
+        this(LoggerFactory.getLogger(EVENTS_LOGGER), backgroundThreads.factory("structured-log"), ringSize,
+            redirectSampleRate);
+    }
+
+    public StructuredLogger(Logger events, ThreadFactory threadFactory, int ringSize, double redirectSampleRate) {
+        this.ring = new LogRingBuffer(ringSize);
+        this.events = events;
+        this.redirectSampleRate = redirectSampleRate;
+        this.writerThread = threadFactory.newThread(this::drainLoop);
+        this.writerThread.start();
+        log.info("Structured logger ringSize={}, redirectSampleRate={}", ringSize, redirectSampleRate);
+    }
+
+    public void logAction(String action, String code, String url, String cache, int status) {
+        write(action, code, url, cache, status, 1.0);
     }
 
     public void logAction(String action) {
@@ -58,4 +88,164 @@ public class StructuredLogger {
     public void logAction(String action, String code, String url) {
         logAction(action, code, url, null, 200);
     }
-}
\ No newline at end of file
+
+    public void logRedirect(String code, String url, int status) {
+        if (status < 400 && redirectSampleRate < 1.0) {
+            if (ThreadLocalRandom.current().nextDouble() >= redirectSampleRate) {
+                sampledOut.increment();
+                return;
+            }
+            write("redirect", code, url, null, status, redirectSampleRate);
+            return;
+        }
+        write("redirect", code, url, null, status, 1.0);
+    }
+
+    private void write(String action, String code, String url, String cache, int status, double sampleRate) {
+        if (!events.isInfoEnabled()) {
+            return;
+        }
+        LogRingBuffer.Slot slot = ring.claim();
+        if (slot == null) {
+            dropped.increment();
+            return;
+        }
+        try {
+            encode(slot.line, RequestLogContext.current(), action, code, url, cache, status, sampleRate);
+        } finally {
+            // Always publish, even half-written, or the writer would wait on this slot forever
+            ring.publish(slot);
+        }
+        if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    void encode(StringBuilder line, RequestLogContext context, String action, String code, String url,
+                String cache, int status, double sampleRate) {
+        line.append("{\"timestamp\":\"");
+        appendTimestamp(line, System.currentTimeMillis());
+        line.append("\",\"level\":\"").append(status >= 500 ? "ERROR" : "INFO").append('"');
+        field(line, "requestId", context.requestId);
+        field(line, "userId", context.userId);
+        field(line, "userAgent", context.userAgent);
+        if (context.method != null) {
+            line.append(",\"route\":\"");
+            escape(line, context.method);
+            line.append(' ');
+            escape(line, context.path);
+            line.append('"');
+        }
+        field(line, "action", action);
+        field(line, "code", code);
+        field(line, "url", url);
+        field(line, "cache", cache);
+        line.append(",\"status\":").append(status);
+        if (sampleRate < 1.0) {
+            line.append(",\"sampleRate\":").append(sampleRate);
+        }
+        line.append('}');
+    }
+
+    private void appendTimestamp(StringBuilder line, long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        SecondPrefix prefix = secondPrefix;
+        if (prefix.second != second) {
+            prefix = new SecondPrefix(second,
+                LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC).format(SECOND_FORMAT));
+            secondPrefix = prefix;
+        }
+        int fraction = (int) Math.floorMod(millis, 1000);
+        line.append(prefix.text);
+        if (fraction < 100) {
+            line.append('0');
+        }
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction).append('Z');
+    }
+
+    private static void field(StringBuilder line, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        escape(line, value);
+        line.append('"');
+    }
+
+    static void escape(StringBuilder line, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append("\\u00");
+                        line.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (running || !ring.isEmpty()) {
+            int drained = ring.drain(lineWriter, DRAIN_BATCH);
+            if (drained > 0) {
+                written.add(drained);
+                continue;
+            }
+            idle = true;
+            if (ring.isEmpty()) {
+                if (running) {
+                    LockSupport.park(this);
+                }
+            } else {
+                // Claimed but not yet published; the producer is mid-encode
+                Thread.yield();
+            }
+            idle = false;
+        }
+    }
+
+    // Only the writer thread calls this
+    private void writeLine(StringBuilder line) {
+        events.info(line.toString());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ringSize", ring.capacity());
+        stats.put("queued", ring.size());
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("sampledOut", sampledOut.sum());
+        stats.put("redirectSampleRate", redirectSampleRate);
+        return stats;
+    }
+
+    private static final class SecondPrefix {
+        private final long second;
+        private final String text;
+
+        SecondPrefix(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
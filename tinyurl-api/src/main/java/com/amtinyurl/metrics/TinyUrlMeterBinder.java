@@ -0,0 +1,132 @@
+package com.amtinyurl.metrics;
+
+import com.amtinyurl.cache.NearCache;
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import com.amtinyurl.logging.StructuredLogger;
+import com.amtinyurl.service.CacheService;
+import com.amtinyurl.service.ClickTracker;
+import com.amtinyurl.service.CodeAllocator;
+import com.amtinyurl.service.CodeExistenceFilter;
+import com.amtinyurl.service.RedirectLoadCoalescer;
+import com.amtinyurl.service.UrlCreateCoalescer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Exposes the counters the services already keep for /healthz as Micrometer meters, read at
+ * scrape time so the request path pays nothing extra. Cache hits and misses are split by
+ * {@code direction} (code_to_url for redirects, url_to_code for creates) and {@code tier}.
+ */
+@Component
+@RequiredArgsConstructor
+public class TinyUrlMeterBinder implements MeterBinder {
+
+    private static final String CODE_TO_URL = "code_to_url";
+    private static final String URL_TO_CODE = "url_to_code";
+
+    private final NearCache nearCache;
+    private final CacheService cacheService;
+    private final CodeExistenceFilter codeExistenceFilter;
+    private final CodeAllocator codeAllocator;
+    private final ClickTracker clickTracker;
+    private final StructuredLogger structuredLogger;
+    private final RedirectLoadCoalescer redirectLoadCoalescer;
+    private final UrlCreateCoalescer urlCreateCoalescer;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cacheRequests(registry, CODE_TO_URL, CacheService.TIER_L1, "hit", n -> n.codeToUrlStats().hitCount());
+        cacheRequests(registry, CODE_TO_URL, CacheService.TIER_L1, "miss", n -> n.codeToUrlStats().missCount());
+        cacheRequests(registry, URL_TO_CODE, CacheService.TIER_L1, "hit", n -> n.urlHashToCodeStats().hitCount());
+        cacheRequests(registry, URL_TO_CODE, CacheService.TIER_L1, "miss", n -> n.urlHashToCodeStats().missCount());
+        cacheRequests(registry, CODE_TO_URL, CacheService.TIER_REDIS, "hit", n -> cacheService.redisHits(true));
+        cacheRequests(registry, CODE_TO_URL, CacheService.TIER_REDIS, "miss", n -> cacheService.redisMisses(true));
+        cacheRequests(registry, URL_TO_CODE, CacheService.TIER_REDIS, "hit", n -> cacheService.redisHits(false));
+        cacheRequests(registry, URL_TO_CODE, CacheService.TIER_REDIS, "miss", n -> cacheService.redisMisses(false));
+
+        Gauge.builder("tinyurl.cache.l1.size", nearCache, NearCache::estimatedSize)
+                .description("Entries held in the in-process cache tier")
+                .register(registry);
+
+        Gauge.builder("tinyurl.redis.breaker.state", redisCircuitBreaker, b -> b.getState().ordinal())
+                .description("Redis circuit state: 0 closed, 1 half-open, 2 open")
+                .register(registry);
+        statCounter(registry, "tinyurl.redis.breaker.opened", redisCircuitBreaker::getStats, "opened",
+                "Times the Redis circuit opened");
+        statCounter(registry, "tinyurl.redis.breaker.short.circuited", redisCircuitBreaker::getStats, "shortCircuited",
+                "Cache calls skipped because the Redis circuit was open");
+
+        statCounter(registry, "tinyurl.code.filter.rejects", codeExistenceFilter::getStats, "filterRejects",
+                "Lookups answered as absent by the Bloom filter");
+        statCounter(registry, "tinyurl.code.filter.rechecks", codeExistenceFilter::getStats, "rechecks",
+                "Recently leased codes the Bloom filter has not seen, looked up in MySQL");
+        statCounter(registry, "tinyurl.code.filter.negative.hits", codeExistenceFilter::getStats, "negativeHits",
+                "Lookups answered as absent by the negative cache");
+        statCounter(registry, "tinyurl.code.filter.confirmed.missing", codeExistenceFilter::getStats, "confirmedMissing",
+                "Lookups confirmed missing in MySQL");
+        statCounter(registry, "tinyurl.code.filter.unannounced", codeExistenceFilter::getStats, "unannounced",
+                "Codes found in MySQL before their issued broadcast reached this node");
+        statCounter(registry, "tinyurl.code.allocator.issued", codeAllocator::getStats, "issued",
+                "Short codes handed out by this node");
+        statCounter(registry, "tinyurl.code.allocator.blocks.leased", codeAllocator::getStats, "blocksLeased",
+                "Sequence blocks leased from code_sequence");
+        statGauge(registry, "tinyurl.code.allocator.keyspace.used", codeAllocator::getStats, "keyspaceUsedRatio",
+                "Fraction of the 36^7 code space leased so far");
+        statGauge(registry, "tinyurl.clicks.pending", clickTracker::getStats, "pendingClicks",
+                "Clicks recorded on this node and not flushed yet");
+        statCounter(registry, "tinyurl.clicks.flushed", clickTracker::getStats, "flushedClicks",
+                "Clicks written to url_clicks by this node");
+        statCounter(registry, "tinyurl.clicks.flush.failures", clickTracker::getStats, "flushFailures",
+                "Click flush windows that failed and were retried");
+        statCounter(registry, "tinyurl.redirect.loads", redirectLoadCoalescer::getStats, "loads",
+                "Database lookups run for redirect cache misses");
+        statCounter(registry, "tinyurl.redirect.loads.coalesced", redirectLoadCoalescer::getStats, "coalesced",
+                "Redirect cache misses that waited on another caller's in-flight lookup");
+        statCounter(registry, "tinyurl.redirect.loads.timeouts", redirectLoadCoalescer::getStats, "timeouts",
+                "Coalesced waits that timed out and loaded directly");
+        statCounter(registry, "tinyurl.create.loads.coalesced", urlCreateCoalescer::getStats, "coalesced",
+                "Creates merged onto another caller's in-flight insert of the same URL");
+        statCounter(registry, "tinyurl.log.dropped", structuredLogger::getStats, "dropped",
+                "Structured log events dropped because the ring buffer was full");
+        statGauge(registry, "tinyurl.log.queued", structuredLogger::getStats, "queued",
+                "Structured log events waiting for the writer thread");
+    }
+
+    private void cacheRequests(MeterRegistry registry, String direction, String tier, String result,
+                               ToDoubleFunction<NearCache> count) {
+        FunctionCounter.builder("tinyurl.cache.requests", nearCache, count)
+                .description("Cache lookups by direction, tier and result")
+                .tag("direction", direction)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void statCounter(MeterRegistry registry, String name, Supplier<Map<String, Object>> stats,
+                                    String key, String description) {
+        FunctionCounter.builder(name, stats, s -> stat(s, key))
+                .description(description)
+                .register(registry);
+    }
+
+    private static void statGauge(MeterRegistry registry, String name, Supplier<Map<String, Object>> stats,
+                                  String key, String description) {
+        Gauge.builder(name, stats, s -> stat(s, key))
+                .description(description)
+                .register(registry);
+    }
+
+    private static double stat(Supplier<Map<String, Object>> stats, String key) {
+        Object value = stats.get().get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+}
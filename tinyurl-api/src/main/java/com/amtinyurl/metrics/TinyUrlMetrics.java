@@ -0,0 +1,93 @@
+package com.amtinyurl.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the create and lookup paths, registered once so the hot path only does
+ * {@code System.nanoTime()} arithmetic and a timer update. Every stage shares the
+ * {@code tinyurl.stage} timer name, split by {@code stage} tag, so a p99 regression can be
+ * attributed to normalization, Redis, MySQL or code allocation from a single query.
+ */
+@Component
+public class TinyUrlMetrics {
+
+    public final Timer normalize;
+    public final Timer hash;
+    public final Timer cacheLookup;
+    public final Timer cacheStore;
+    public final Timer findById;
+    public final Timer findByUrlHash;
+    public final Timer existsByCode;
+    public final Timer codeGenerate;
+    public final Timer saveUrl;
+    public final Timer saveAssociation;
+
+    public final Timer redisGetCodeToUrl;
+    public final Timer redisGetUrlToCode;
+    public final Timer redisSet;
+
+    public final Timer redirectFound;
+    public final Timer redirectNotFound;
+
+    public final Counter collisionRetries;
+    public final Counter createRaceReused;
+
+    public TinyUrlMetrics(MeterRegistry registry) {
+        this.normalize = stage(registry, "normalize");
+        this.hash = stage(registry, "hash");
+        this.cacheLookup = stage(registry, "cache_lookup");
+        this.cacheStore = stage(registry, "cache_store");
+        this.findById = stage(registry, "db_find_by_id");
+        this.findByUrlHash = stage(registry, "db_find_by_url_hash");
+        this.existsByCode = stage(registry, "db_exists_by_code");
+        this.codeGenerate = stage(registry, "code_generate");
+        this.saveUrl = stage(registry, "db_save_url");
+        this.saveAssociation = stage(registry, "db_save_association");
+
+        this.redisGetCodeToUrl = redis(registry, "get", "code_to_url");
+        this.redisGetUrlToCode = redis(registry, "get", "url_to_code");
+        this.redisSet = redis(registry, "set", "both");
+
+        this.redirectFound = redirect(registry, "found");
+        this.redirectNotFound = redirect(registry, "not_found");
+
+        this.collisionRetries = Counter.builder("tinyurl.code.collision.retries")
+                .description("Generated short codes that were already taken and had to be regenerated")
+                .register(registry);
+        this.createRaceReused = Counter.builder("tinyurl.create.race.reused")
+                .description("Creates that lost the url_hash insert race and reused the winning row")
+                .register(registry);
+    }
+
+    public static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer stage(MeterRegistry registry, String stage) {
+        return Timer.builder("tinyurl.stage")
+                .description("Latency of one stage of URL creation or lookup")
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    private static Timer redis(MeterRegistry registry, String operation, String direction) {
+        return Timer.builder("tinyurl.redis")
+                .description("Latency of Redis calls made by the cache tier")
+                .tag("operation", operation)
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    private static Timer redirect(MeterRegistry registry, String outcome) {
+        return Timer.builder("tinyurl.redirect")
+                .description("End-to-end latency of resolving a short code for a redirect")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
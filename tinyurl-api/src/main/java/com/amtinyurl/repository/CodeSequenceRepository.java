@@ -0,0 +1,22 @@
+package com.amtinyurl.repository;
+
+import com.amtinyurl.entity.CodeSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CodeSequenceRepository extends JpaRepository<CodeSequence, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CodeSequence s WHERE s.name = :name")
+    Optional<CodeSequence> findForUpdate(@Param("name") String name);
+
+    @Query("SELECT s.nextValue FROM CodeSequence s WHERE s.name = :name")
+    Optional<Long> findNextValue(@Param("name") String name);
+}
@@ -0,0 +1,14 @@
+package com.amtinyurl.repository;
+
+import com.amtinyurl.entity.UrlClick;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UrlClickRepository extends JpaRepository<UrlClick, String> {
+
+    List<UrlClick> findByOrderByLastAccessedAtDesc(Pageable pageable);
+}
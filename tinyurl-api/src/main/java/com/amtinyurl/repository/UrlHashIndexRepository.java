@@ -0,0 +1,9 @@
+package com.amtinyurl.repository;
+
+import com.amtinyurl.entity.UrlHashIndex;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UrlHashIndexRepository extends JpaRepository<UrlHashIndex, String> {
+}
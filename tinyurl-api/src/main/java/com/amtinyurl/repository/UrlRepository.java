@@ -1,9 +1,14 @@
 package com.amtinyurl.repository;
 
 import com.amtinyurl.entity.Url;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,5 +16,18 @@ public interface UrlRepository extends JpaRepository<Url, String> {
 
     Optional<Url> findByNormalizedUrl(String normalizedUrl);
 
+    Optional<Url> findByUrlHash(String urlHash);
+
+    List<Url> findByUrlHashIn(Collection<String> urlHashes);
+
+    @Query("SELECT u.code FROM Url u WHERE u.code IN :codes")
+    List<String> findExistingCodes(@Param("codes") Collection<String> codes);
+
     boolean existsByCode(String code);
-}
\ No newline at end of file
+
+    // Newest first; the cache warm-up's fallback when there are no click statistics
+    List<Url> findByOrderByCreatedAtDesc(Pageable pageable);
+
+    @Query("SELECT u.code FROM Url u WHERE u.code > :after ORDER BY u.code")
+    List<String> findCodesAfter(@Param("after") String after, Pageable pageable);
+}
@@ -1,21 +1,61 @@
 package com.amtinyurl.repository;
 
+import com.amtinyurl.dto.UserUrlSummary;
 import com.amtinyurl.entity.UserUrl;
 import com.amtinyurl.entity.UserUrlId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserUrlRepository extends JpaRepository<UserUrl, UserUrlId> {
 
-    @Query("SELECT uu FROM UserUrl uu JOIN FETCH uu.url WHERE uu.userIdLower = :userIdLower ORDER BY uu.createdAt DESC")
-    List<UserUrl> findByUserIdLowerOrderByCreatedAtDesc(@Param("userIdLower") String userIdLower);
+    @Query("SELECT new com.amtinyurl.dto.UserUrlSummary(uu.code, u.normalizedUrl, uu.createdAt) " +
+           "FROM UserUrl uu JOIN uu.url u WHERE uu.userIdLower = :userIdLower " +
+           "ORDER BY uu.createdAt DESC, uu.code DESC")
+    List<UserUrlSummary> findFirstPage(@Param("userIdLower") String userIdLower, Pageable pageable);
+
+    @Query("SELECT new com.amtinyurl.dto.UserUrlSummary(uu.code, u.normalizedUrl, uu.createdAt) " +
+           "FROM UserUrl uu JOIN uu.url u WHERE uu.userIdLower = :userIdLower " +
+           "AND (uu.createdAt < :createdAt OR (uu.createdAt = :createdAt AND uu.code < :code)) " +
+           "ORDER BY uu.createdAt DESC, uu.code DESC")
+    List<UserUrlSummary> findPageAfter(@Param("userIdLower") String userIdLower,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("code") String code,
+                                       Pageable pageable);
+
+    // Integer.MIN_VALUE makes Connector/J stream rows instead of buffering the whole result set
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.amtinyurl.dto.UserUrlSummary(uu.code, u.normalizedUrl, uu.createdAt) " +
+           "FROM UserUrl uu JOIN uu.url u WHERE uu.userIdLower = :userIdLower " +
+           "ORDER BY uu.createdAt DESC, uu.code DESC")
+    Stream<UserUrlSummary> streamByUserIdLower(@Param("userIdLower") String userIdLower);
+
+    // Sharded deployments: the associations alone, joined to urls on the shards that own the codes
+    @Query("SELECT uu FROM UserUrl uu WHERE uu.userIdLower = :userIdLower ORDER BY uu.createdAt DESC, uu.code DESC")
+    List<UserUrl> findFirstAssociations(@Param("userIdLower") String userIdLower, Pageable pageable);
+
+    @Query("SELECT uu FROM UserUrl uu WHERE uu.userIdLower = :userIdLower " +
+           "AND (uu.createdAt < :createdAt OR (uu.createdAt = :createdAt AND uu.code < :code)) " +
+           "ORDER BY uu.createdAt DESC, uu.code DESC")
+    List<UserUrl> findAssociationsAfter(@Param("userIdLower") String userIdLower,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("code") String code,
+                                        Pageable pageable);
 
     boolean existsByUserIdLowerAndCode(String userIdLower, String code);
 
     void deleteByUserIdLowerAndCode(String userIdLower, String code);
-}
\ No newline at end of file
+}
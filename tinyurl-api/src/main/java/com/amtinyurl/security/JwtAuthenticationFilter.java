@@ -30,7 +30,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            String userId = jwtService.validateTokenAndGetUserId(token);
+            String userId = jwtService.authenticate(token);
 
             if (userId != null) {
                 UsernamePasswordAuthenticationToken authToken =
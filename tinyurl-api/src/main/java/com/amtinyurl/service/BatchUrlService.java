@@ -0,0 +1,266 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import com.amtinyurl.storage.UrlStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Set-based variant of {@link TinyUrlService#createOrGetShortUrl}: existing mappings are resolved
+ * with chunked {@code IN} queries on {@code url_hash}, new rows go out as JDBC batches and the
+ * cache is filled in one Redis pipeline. Those statements assume a single database, so with
+ * sharding each URL goes through {@link TinyUrlService#createOrGetShortUrl} instead.
+ *
+ * <p>The batch runs READ COMMITTED: under MySQL's default REPEATABLE READ the first lookup would
+ * fix the snapshot, and the re-read after {@code INSERT IGNORE} could not see a row a concurrent
+ * create committed in the meantime.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchUrlService {
+
+    private static final int IN_CLAUSE_CHUNK = 1000;
+    private static final int JDBC_BATCH_SIZE = 500;
+    private static final int MAX_ALLOCATION_ROUNDS = 3;
+
+    // IGNORE lets a concurrent writer win on url_hash; the winner's row is re-read afterwards
+    private static final String INSERT_URL_SQL =
+        "INSERT IGNORE INTO urls (code, normalized_url, created_at) VALUES (?, ?, ?)";
+    private static final String INSERT_USER_URL_SQL =
+        "INSERT IGNORE INTO user_urls (user_id_lower, code, created_at) VALUES (?, ?, ?)";
+
+    private final UrlRepository urlRepository;
+    private final UrlService urlService;
+    private final CacheService cacheService;
+    private final CodeExistenceFilter codeExistenceFilter;
+    private final CodeAllocator codeAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TinyUrlService tinyUrlService;
+    private final ShardRouter shardRouter;
+    private final UrlStore urlStore;
+    private final UserUrlVersions userUrlVersions;
+
+    @Value("${app.base-url}")
+    private String baseUrl;
+
+    public List<BatchItemResult> createOrGetShortUrls(List<String> inputUrls, String userId) {
+        if (shardRouter.isSharded()) {
+            return createOrGetSharded(inputUrls, userId);
+        }
+        TransactionTemplate readCommitted = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readCommitted.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return readCommitted.execute(status -> createOrGetBatch(inputUrls, userId));
+    }
+
+    private List<BatchItemResult> createOrGetSharded(List<String> inputUrls, String userId) {
+        List<BatchItemResult> results = new ArrayList<>(inputUrls.size());
+        for (String inputUrl : inputUrls) {
+            try {
+                results.add(BatchItemResult.of(tinyUrlService.createOrGetShortUrl(inputUrl, userId)));
+            } catch (IllegalArgumentException e) {
+                results.add(BatchItemResult.failed(e.getMessage()));
+            } catch (RuntimeException e) {
+                if (!"COLLISION_RETRY_EXHAUSTED".equals(e.getMessage())) {
+                    throw e;
+                }
+                results.add(BatchItemResult.failed(e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private List<BatchItemResult> createOrGetBatch(List<String> inputUrls, String userId) {
+        String userIdLower = userId.toLowerCase();
+        int size = inputUrls.size();
+        String[] normalizedUrls = new String[size];
+        String[] urlHashes = new String[size];
+        String[] errors = new String[size];
+
+        IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                normalizedUrls[i] = urlService.normalizeUrl(inputUrls.get(i));
+                urlHashes[i] = urlService.hashUrl(normalizedUrls[i]);
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        });
+
+        Map<String, String> urlByHash = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (errors[i] == null) {
+                urlByHash.putIfAbsent(urlHashes[i], normalizedUrls[i]);
+            }
+        }
+
+        Map<String, Url> rowsByHash = findByUrlHashes(urlByHash.keySet());
+        Map<String, String> missing = new LinkedHashMap<>();
+        urlByHash.forEach((hash, url) -> {
+            if (!rowsByHash.containsKey(hash)) {
+                missing.put(hash, url);
+            }
+        });
+        Set<String> createdHashes = insertUrls(missing, rowsByHash);
+
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Object[]> associations = new ArrayList<>(rowsByHash.size());
+        List<CacheService.Mapping> mappings = new ArrayList<>(rowsByHash.size());
+        List<String> newCodes = new ArrayList<>(createdHashes.size());
+        List<Url> newRows = new ArrayList<>(createdHashes.size());
+        rowsByHash.forEach((hash, row) -> {
+            associations.add(new Object[]{userIdLower, row.getCode(), Timestamp.valueOf(now)});
+            mappings.add(new CacheService.Mapping(row.getCode(), row.getNormalizedUrl(), hash));
+            if (createdHashes.contains(hash)) {
+                newCodes.add(row.getCode());
+                newRows.add(row);
+            }
+        });
+        // Ignored rows report 0; drivers that cannot tell report SUCCESS_NO_INFO, which counts as a change
+        for (int count : jdbcTemplate.batchUpdate(INSERT_USER_URL_SQL, associations)) {
+            if (count != 0) {
+                userUrlVersions.bump(userIdLower);
+                break;
+            }
+        }
+        codeExistenceFilter.recordIssued(newCodes);
+        cacheService.putBidirectionalBatch(mappings);
+        urlStore.saved(newRows);
+
+        List<BatchItemResult> results = new ArrayList<>(size);
+        Set<String> reported = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                results.add(BatchItemResult.failed(errors[i]));
+                continue;
+            }
+            Url row = rowsByHash.get(urlHashes[i]);
+            if (row == null) {
+                results.add(BatchItemResult.failed("COLLISION_RETRY_EXHAUSTED"));
+                continue;
+            }
+            // Repeats within one batch behave like repeated single creates: only the first is new
+            boolean existed = !createdHashes.contains(urlHashes[i]) || !reported.add(urlHashes[i]);
+            results.add(BatchItemResult.of(new TinyUrlService.CreateUrlResult(row.getCode(),
+                baseUrl + "/" + row.getCode(), row.getNormalizedUrl(), row.getCreatedAt(), existed)));
+        }
+
+        log.info("Batch create for user {}: {} urls, {} new, {} failed",
+            userIdLower, size, newCodes.size(), results.stream().filter(r -> r.error != null).count());
+        return results;
+    }
+
+    // Inserts the missing URLs and records the resulting rows; returns the hashes this call created
+    private Set<String> insertUrls(Map<String, String> missing, Map<String, Url> rowsByHash) {
+        Set<String> created = new HashSet<>();
+        Map<String, String> pending = new LinkedHashMap<>(missing);
+
+        for (int round = 0; round < MAX_ALLOCATION_ROUNDS && !pending.isEmpty(); round++) {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+            Map<String, String> codeByHash = new HashMap<>();
+            List<String> codes = allocateCodes(pending.size());
+            List<Object[]> rows = new ArrayList<>(pending.size());
+            int next = 0;
+            for (Map.Entry<String, String> entry : pending.entrySet()) {
+                String code = codes.get(next++);
+                codeByHash.put(entry.getKey(), code);
+                rows.add(new Object[]{code, entry.getValue(), Timestamp.valueOf(now)});
+            }
+            for (int from = 0; from < rows.size(); from += JDBC_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_URL_SQL, rows.subList(from, Math.min(rows.size(), from + JDBC_BATCH_SIZE)));
+            }
+
+            Map<String, Url> inserted = findByUrlHashes(pending.keySet());
+            inserted.forEach((hash, row) -> {
+                rowsByHash.put(hash, row);
+                if (row.getCode().equals(codeByHash.get(hash))) {
+                    created.add(hash);
+                }
+                pending.remove(hash);
+            });
+            if (!pending.isEmpty()) {
+                log.debug("{} batch inserts lost to legacy code collisions, round {}", pending.size(), round + 1);
+            }
+        }
+        return created;
+    }
+
+    private List<String> allocateCodes(int count) {
+        List<String> codes = new ArrayList<>(count);
+        List<String> unverified = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String code = codeAllocator.nextCode();
+            if (codeExistenceFilter.definitelyAbsent(code)) {
+                codes.add(code);
+            } else {
+                unverified.add(code);
+            }
+        }
+        if (!unverified.isEmpty()) {
+            Set<String> taken = new HashSet<>();
+            for (List<String> chunk : chunks(unverified)) {
+                taken.addAll(urlRepository.findExistingCodes(chunk));
+            }
+            for (String code : unverified) {
+                codes.add(taken.contains(code) ? codeAllocator.nextCode() : code);
+            }
+        }
+        return codes;
+    }
+
+    private Map<String, Url> findByUrlHashes(Collection<String> urlHashes) {
+        Map<String, Url> rows = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(urlHashes))) {
+            for (Url url : urlRepository.findByUrlHashIn(chunk)) {
+                rows.put(url.getUrlHash(), url);
+            }
+        }
+        return rows;
+    }
+
+    private static List<List<String>> chunks(List<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CLAUSE_CHUNK) {
+            chunks.add(values.subList(from, Math.min(values.size(), from + IN_CLAUSE_CHUNK)));
+        }
+        return chunks;
+    }
+
+    public static class BatchItemResult {
+        public final TinyUrlService.CreateUrlResult result;
+        public final String error;
+
+        private BatchItemResult(TinyUrlService.CreateUrlResult result, String error) {
+            this.result = result;
+            this.error = error;
+        }
+
+        public static BatchItemResult of(TinyUrlService.CreateUrlResult result) {
+            return new BatchItemResult(result, null);
+        }
+
+        public static BatchItemResult failed(String error) {
+            return new BatchItemResult(null, error);
+        }
+    }
+}
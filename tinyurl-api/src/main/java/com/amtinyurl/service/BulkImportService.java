@@ -0,0 +1,190 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.dto.ImportLineResult;
+import com.amtinyurl.dto.ImportProgress;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams an NDJSON or CSV upload through {@link BatchUrlService} one bounded chunk at a time.
+ * Chunk writes share a node-wide permit pool; when every permit is taken the reading thread
+ * blocks, which stops draining the request body and pushes back on the uploader through TCP
+ * flow control. Results are written back in line order as soon as each chunk completes.
+ */
+@Service
+@Slf4j
+public class BulkImportService {
+
+    static final String PROGRESS = "progress";
+    static final String COMPLETE = "complete";
+
+    private final BatchUrlService batchUrlService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxLineLength;
+    private final Semaphore writePermits;
+    private final ExecutorService writeExecutor;
+
+    public BulkImportService(BatchUrlService batchUrlService,
+                             ObjectMapper objectMapper,
+                             BackgroundThreads backgroundThreads,
+                             @Value("${app.import.chunk-size:1000}") int chunkSize,
+                             @Value("${app.import.max-concurrency:4}") int maxConcurrency,
+                             @Value("${app.import.max-line-length:8192}") int maxLineLength) {
+        this.batchUrlService = batchUrlService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxLineLength = maxLineLength;
+        this.writePermits = new Semaphore(maxConcurrency);
+        this.writeExecutor = Executors.newFixedThreadPool(maxConcurrency, backgroundThreads.factory("bulk-import"));
+    }
+
+    public ImportProgress importUrls(Reader input, ImportRecordReader.Format format, String userId, Writer output)
+            throws IOException, InterruptedException {
+        ImportRecordReader records = new ImportRecordReader(input, format, maxLineLength, objectMapper);
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        Totals totals = new Totals();
+
+        List<ImportRecordReader.Record> chunk = new ArrayList<>(chunkSize);
+        ImportRecordReader.Record record;
+        while ((record = records.next()) != null) {
+            chunk.add(record);
+            if (chunk.size() == chunkSize) {
+                inFlight.add(submit(chunk, userId));
+                chunk = new ArrayList<>(chunkSize);
+                drain(inFlight, output, totals, false);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            inFlight.add(submit(chunk, userId));
+        }
+        drain(inFlight, output, totals, true);
+
+        ImportProgress summary = totals.snapshot(COMPLETE);
+        writeLine(output, summary);
+        output.flush();
+        log.info("Bulk import for user {}: {} lines, {} created, {} existing, {} failed",
+            userId.toLowerCase(), summary.getLines(), summary.getCreated(), summary.getExisting(), summary.getFailed());
+        return summary;
+    }
+
+    private Chunk submit(List<ImportRecordReader.Record> records, String userId) throws InterruptedException {
+        List<String> urls = new ArrayList<>(records.size());
+        for (ImportRecordReader.Record record : records) {
+            if (record.url != null) {
+                urls.add(record.url);
+            }
+        }
+        if (urls.isEmpty()) {
+            return new Chunk(records, CompletableFuture.completedFuture(Collections.emptyList()));
+        }
+
+        // Blocks the reader while every write slot on this node is busy
+        writePermits.acquire();
+        try {
+            CompletableFuture<List<BatchUrlService.BatchItemResult>> results = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return batchUrlService.createOrGetShortUrls(urls, userId);
+                } finally {
+                    writePermits.release();
+                }
+            }, writeExecutor);
+            return new Chunk(records, results);
+        } catch (RuntimeException e) {
+            writePermits.release();
+            throw e;
+        }
+    }
+
+    private void drain(Deque<Chunk> inFlight, Writer output, Totals totals, boolean waitForAll) throws IOException {
+        while (!inFlight.isEmpty() && (waitForAll || inFlight.peekFirst().results.isDone())) {
+            Chunk chunk = inFlight.pollFirst();
+            List<BatchUrlService.BatchItemResult> results;
+            String chunkError = null;
+            try {
+                results = chunk.results.join();
+            } catch (CompletionException e) {
+                results = Collections.emptyList();
+                chunkError = "CODE_ALLOCATION_FAILED".equals(e.getCause().getMessage())
+                    ? "CODE_ALLOCATION_FAILED" : "INTERNAL_ERROR";
+                log.error("Bulk import chunk of {} lines failed", chunk.records.size(), e.getCause());
+            }
+
+            int next = 0;
+            for (ImportRecordReader.Record record : chunk.records) {
+                totals.lines++;
+                if (record.error != null || chunkError != null) {
+                    totals.failed++;
+                    writeLine(output, new ImportLineResult(record.line, null, null, null, null,
+                        record.error != null ? record.error : chunkError));
+                    continue;
+                }
+                BatchUrlService.BatchItemResult item = results.get(next++);
+                if (item.error != null) {
+                    totals.failed++;
+                    writeLine(output, new ImportLineResult(record.line, null, null, null, null, item.error));
+                } else {
+                    TinyUrlService.CreateUrlResult result = item.result;
+                    if (result.existed) {
+                        totals.existing++;
+                    } else {
+                        totals.created++;
+                    }
+                    writeLine(output, new ImportLineResult(record.line, result.code, result.shortUrl,
+                        result.url, result.existed, null));
+                }
+            }
+            writeLine(output, totals.snapshot(PROGRESS));
+            output.flush();
+        }
+    }
+
+    private void writeLine(Writer output, Object event) throws IOException {
+        output.write(objectMapper.writeValueAsString(event));
+        output.write('\n');
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeExecutor.shutdownNow();
+    }
+
+    private static final class Chunk {
+        private final List<ImportRecordReader.Record> records;
+        private final CompletableFuture<List<BatchUrlService.BatchItemResult>> results;
+
+        Chunk(List<ImportRecordReader.Record> records, CompletableFuture<List<BatchUrlService.BatchItemResult>> results) {
+            this.records = records;
+            this.results = results;
+        }
+    }
+
+    private static final class Totals {
+        private long lines;
+        private long created;
+        private long existing;
+        private long failed;
+
+        ImportProgress snapshot(String type) {
+            return new ImportProgress(type, lines, created, existing, failed);
+        }
+    }
+}
@@ -1,88 +1,378 @@
 package com.amtinyurl.service;
 
-import lombok.RequiredArgsConstructor;
+import com.amtinyurl.cache.NearCache;
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.metrics.TinyUrlMetrics;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CacheService {
 
     private final RedisTemplate<String, String> redisTemplate;
+    private final NearCache nearCache;
+    private final TinyUrlMetrics metrics;
+    private final RedisCircuitBreaker circuitBreaker;
     private static final Duration TTL = Duration.ofMinutes(5);
     private static final String CODE_TO_URL_PREFIX = "code:";
+    // url: keys carry the SHA-256 of the normalized URL, matching urls.url_hash
     private static final String URL_TO_CODE_PREFIX = "url:";
 
-    public void putCodeToUrl(String code, String url) {
-        try {
-            redisTemplate.opsForValue().set(CODE_TO_URL_PREFIX + code, url, TTL);
-            log.debug("Cached code->url mapping: {} -> {}", code, url);
-        } catch (Exception e) {
-            log.warn("Failed to cache code->url mapping: {} -> {}", code, url, e);
-        }
-    }
+    public static final String TIER_L1 = "l1";
+    public static final String TIER_REDIS = "redis";
 
-    public void putUrlToCode(String url, String code) {
-        try {
-            redisTemplate.opsForValue().set(URL_TO_CODE_PREFIX + url, code, TTL);
-            log.debug("Cached url->code mapping: {} -> {}", url, code);
-        } catch (Exception e) {
-            log.warn("Failed to cache url->code mapping: {} -> {}", url, code, e);
+    private final LongAdder codeRedisHits = new LongAdder();
+    private final LongAdder codeRedisMisses = new LongAdder();
+    private final LongAdder urlRedisHits = new LongAdder();
+    private final LongAdder urlRedisMisses = new LongAdder();
+
+    private final boolean asyncWrites;
+    private final int maxPendingWrites;
+    private final int writeBatchSize;
+    private final long flushIntervalNanos;
+    // Latest mapping per code; a second put for the same code before the flush replaces the first
+    private final ConcurrentHashMap<String, Mapping> pendingWrites = new ConcurrentHashMap<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // Set by the writer before it parks on an empty queue, so only the first enqueue pays for an unpark
+    private volatile boolean idle;
+
+    private final LongAdder writesFlushed = new LongAdder();
+    private final LongAdder writesCoalesced = new LongAdder();
+    private final LongAdder writesDropped = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    public CacheService(RedisTemplate<String, String> redisTemplate,
+                        NearCache nearCache,
+                        TinyUrlMetrics metrics,
+                        RedisCircuitBreaker circuitBreaker,
+                        BackgroundThreads backgroundThreads,
+                        @Value("${app.cache.write.async:true}") boolean asyncWrites,
+                        @Value("${app.cache.write.max-pending:10000}") int maxPendingWrites,
+                        @Value("${app.cache.write.batch-size:256}") int writeBatchSize,
+                        @Value("${app.cache.write.flush-interval-ms:2}") long flushIntervalMs) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.metrics = metrics;
+        this.circuitBreaker = circuitBreaker;
+        this.asyncWrites = asyncWrites;
+        this.maxPendingWrites = maxPendingWrites;
+        this.writeBatchSize = writeBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        if (asyncWrites) {
+            this.writerThread = backgroundThreads.factory("cache-writer").newThread(this::writeLoop);
+            this.writerThread.start();
+        } else {
+            this.writerThread = null;
         }
+        log.info("Cache writes async={}, maxPending={}, batchSize={}, flushIntervalMs={}",
+            asyncWrites, maxPendingWrites, writeBatchSize, flushIntervalMs);
     }
 
     public CacheResult getUrlByCode(String code) {
+        String local = nearCache.getUrlByCode(code);
+        if (local != null) {
+            log.debug("L1 hit for code->url: {} -> {}", code, local);
+            return new CacheResult(local, true, TIER_L1);
+        }
+
+        if (!circuitBreaker.allowRequest()) {
+            codeRedisMisses.increment();
+            return new CacheResult(null, false, TIER_REDIS);
+        }
         try {
+            long start = System.nanoTime();
             String url = redisTemplate.opsForValue().get(CODE_TO_URL_PREFIX + code);
+            TinyUrlMetrics.record(metrics.redisGetCodeToUrl, start);
+            circuitBreaker.recordSuccess();
             if (url != null) {
+                codeRedisHits.increment();
+                nearCache.putCodeToUrl(code, url);
                 log.debug("Cache hit for code->url: {} -> {}", code, url);
-                return new CacheResult(url, true);
+                return new CacheResult(url, true, TIER_REDIS);
             } else {
+                codeRedisMisses.increment();
                 log.debug("Cache miss for code->url: {}", code);
-                return new CacheResult(null, false);
+                return new CacheResult(null, false, TIER_REDIS);
             }
         } catch (Exception e) {
-            log.warn("Failed to get url by code from cache: {}", code, e);
-            return new CacheResult(null, false);
+            codeRedisMisses.increment();
+            circuitBreaker.recordFailure(e);
+            log.debug("Failed to get url by code from cache: {}", code, e);
+            return new CacheResult(null, false, TIER_REDIS);
         }
     }
 
-    public CacheResult getCodeByUrl(String url) {
+    public CacheResult getCodeByUrlHash(String urlHash) {
+        String local = nearCache.getCodeByUrlHash(urlHash);
+        if (local != null) {
+            log.debug("L1 hit for url->code: {} -> {}", urlHash, local);
+            return new CacheResult(local, true, TIER_L1);
+        }
+
+        if (!circuitBreaker.allowRequest()) {
+            urlRedisMisses.increment();
+            return new CacheResult(null, false, TIER_REDIS);
+        }
         try {
-            String code = redisTemplate.opsForValue().get(URL_TO_CODE_PREFIX + url);
+            long start = System.nanoTime();
+            String code = redisTemplate.opsForValue().get(URL_TO_CODE_PREFIX + urlHash);
+            TinyUrlMetrics.record(metrics.redisGetUrlToCode, start);
+            circuitBreaker.recordSuccess();
             if (code != null) {
-                log.debug("Cache hit for url->code: {} -> {}", url, code);
-                return new CacheResult(code, true);
+                urlRedisHits.increment();
+                nearCache.putUrlHashToCode(urlHash, code);
+                log.debug("Cache hit for url->code: {} -> {}", urlHash, code);
+                return new CacheResult(code, true, TIER_REDIS);
             } else {
-                log.debug("Cache miss for url->code: {}", url);
-                return new CacheResult(null, false);
+                urlRedisMisses.increment();
+                log.debug("Cache miss for url->code: {}", urlHash);
+                return new CacheResult(null, false, TIER_REDIS);
+            }
+        } catch (Exception e) {
+            urlRedisMisses.increment();
+            circuitBreaker.recordFailure(e);
+            log.debug("Failed to get code by url hash from cache: {}", urlHash, e);
+            return new CacheResult(null, false, TIER_REDIS);
+        }
+    }
+
+    /**
+     * Fills both directions in L1 right away and in Redis off the calling thread. Inside a
+     * transaction nothing is cached until it commits, so a rolled-back create never leaves a
+     * mapping behind.
+     */
+    public void putBidirectional(String code, String url, String urlHash) {
+        Mapping mapping = new Mapping(code, url, urlHash);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    populate(mapping);
+                }
+            });
+            return;
+        }
+        populate(mapping);
+    }
+
+    public void putBidirectionalBatch(List<Mapping> mappings) {
+        if (mappings.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    populate(mappings);
+                }
+            });
+            return;
+        }
+        populate(mappings);
+    }
+
+    /**
+     * Startup warm-up: fills L1 and writes Redis on the calling thread in one pipeline, bypassing
+     * the write queue so a large warm-up neither overflows it nor returns before Redis has the data.
+     */
+    public void warm(List<Mapping> mappings) {
+        for (Mapping mapping : mappings) {
+            nearCache.putCodeToUrl(mapping.code, mapping.url);
+            nearCache.putUrlHashToCode(mapping.urlHash, mapping.code);
+        }
+        writeToRedis(mappings);
+    }
+
+    private void populate(Mapping mapping) {
+        nearCache.putCodeToUrl(mapping.code, mapping.url);
+        nearCache.putUrlHashToCode(mapping.urlHash, mapping.code);
+        if (asyncWrites) {
+            enqueue(mapping);
+        } else {
+            writeToRedis(List.of(mapping));
+        }
+    }
+
+    private void populate(List<Mapping> mappings) {
+        for (Mapping mapping : mappings) {
+            nearCache.putCodeToUrl(mapping.code, mapping.url);
+            nearCache.putUrlHashToCode(mapping.urlHash, mapping.code);
+        }
+        if (asyncWrites) {
+            for (Mapping mapping : mappings) {
+                enqueue(mapping);
+            }
+        } else {
+            writeToRedis(mappings);
+        }
+    }
+
+    // Redis is only a cache in front of MySQL, so a full queue drops the write rather than wait
+    private void enqueue(Mapping mapping) {
+        if (pendingWrites.size() >= maxPendingWrites && !pendingWrites.containsKey(mapping.code)) {
+            writesDropped.increment();
+            return;
+        }
+        if (pendingWrites.put(mapping.code, mapping) != null) {
+            writesCoalesced.increment();
+        } else if (idle || pendingWrites.size() >= writeBatchSize) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void writeLoop() {
+        List<Mapping> batch = new ArrayList<>(writeBatchSize);
+        while (running || !pendingWrites.isEmpty()) {
+            if (pendingWrites.isEmpty()) {
+                idle = true;
+                if (running && pendingWrites.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            // Batching window: opened by the first write, closed early by a full batch
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            long remaining;
+            while (running && pendingWrites.size() < writeBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            for (Mapping mapping : pendingWrites.values()) {
+                // Conditional remove keeps a newer mapping put for the same code after we read this one
+                if (pendingWrites.remove(mapping.code, mapping)) {
+                    batch.add(mapping);
+                }
+                if (batch.size() == writeBatchSize) {
+                    writeToRedis(batch);
+                    batch.clear();
+                }
             }
+            if (!batch.isEmpty()) {
+                writeToRedis(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Both directions of every mapping go out in a single pipelined round trip
+    private void writeToRedis(List<Mapping> mappings) {
+        if (!circuitBreaker.allowRequest()) {
+            writesDropped.add(mappings.size());
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    ValueOperations<String, String> values = operations.opsForValue();
+                    for (Mapping mapping : mappings) {
+                        values.set(CODE_TO_URL_PREFIX + mapping.code, mapping.url, TTL);
+                        values.set(URL_TO_CODE_PREFIX + mapping.urlHash, mapping.code, TTL);
+                    }
+                    return null;
+                }
+            });
+            TinyUrlMetrics.record(metrics.redisSet, start);
+            circuitBreaker.recordSuccess();
+            writesFlushed.add(mappings.size());
+            log.debug("Cached {} mappings in one pipeline", mappings.size());
         } catch (Exception e) {
-            log.warn("Failed to get code by url from cache: {}", url, e);
-            return new CacheResult(null, false);
+            writeFailures.increment();
+            circuitBreaker.recordFailure(e);
+            log.debug("Failed to cache {} mappings in pipeline", mappings.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
         }
     }
 
-    public void putBidirectional(String code, String url) {
-        putCodeToUrl(code, url);
-        putUrlToCode(url, code);
+    public Map<String, Long> getTierStats() {
+        CacheStats codeStats = nearCache.codeToUrlStats();
+        CacheStats urlStats = nearCache.urlHashToCodeStats();
+
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("l1Hits", codeStats.hitCount() + urlStats.hitCount());
+        stats.put("l1Misses", codeStats.missCount() + urlStats.missCount());
+        stats.put("l1Evictions", codeStats.evictionCount() + urlStats.evictionCount());
+        stats.put("l1Size", nearCache.estimatedSize());
+        stats.put("redisHits", codeRedisHits.sum() + urlRedisHits.sum());
+        stats.put("redisMisses", codeRedisMisses.sum() + urlRedisMisses.sum());
+        stats.put("pendingWrites", (long) pendingWrites.size());
+        stats.put("writesFlushed", writesFlushed.sum());
+        stats.put("writesCoalesced", writesCoalesced.sum());
+        stats.put("writesDropped", writesDropped.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        return stats;
+    }
+
+    // Redis lookups per direction; the L1 side comes straight from the Caffeine stats
+    public long redisHits(boolean codeToUrl) {
+        return codeToUrl ? codeRedisHits.sum() : urlRedisHits.sum();
+    }
+
+    public long redisMisses(boolean codeToUrl) {
+        return codeToUrl ? codeRedisMisses.sum() : urlRedisMisses.sum();
+    }
+
+    public static class Mapping {
+        public final String code;
+        public final String url;
+        public final String urlHash;
+
+        public Mapping(String code, String url, String urlHash) {
+            this.code = code;
+            this.url = url;
+            this.urlHash = urlHash;
+        }
     }
 
     public static class CacheResult {
         public final String value;
         public final boolean hit;
+        public final String tier;
 
         public CacheResult(String value, boolean hit) {
+            this(value, hit, TIER_REDIS);
+        }
+
+        public CacheResult(String value, boolean hit, String tier) {
             this.value = value;
             this.hit = hit;
+            this.tier = tier;
         }
 
         public String getCacheStatus() {
             return hit ? "hit" : "miss";
         }
     }
-}
\ No newline at end of file
+}
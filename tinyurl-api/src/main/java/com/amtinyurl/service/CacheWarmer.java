@@ -0,0 +1,179 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.entity.UrlClick;
+import com.amtinyurl.repository.UrlClickRepository;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the working set into L1 and Redis before the node reports ready, so a rollout or a
+ * Redis flush does not send every first redirect to MySQL. The most recently clicked codes from
+ * {@code url_clicks} go first; if they fall short of {@code app.cache.warmup.max-codes}, the
+ * newest {@code urls} rows fill the rest. Rows are read in batches and written one Redis
+ * pipeline per batch. This runs inside the ready event itself and Boot only switches readiness
+ * to accepting traffic once every ready listener has returned, so the readiness probe waits for
+ * the warm-up; {@code app.cache.warmup.budget-ms} bounds how long.
+ */
+@Service
+@Slf4j
+public class CacheWarmer {
+
+    private final UrlRepository urlRepository;
+    private final UrlClickRepository urlClickRepository;
+    private final CacheService cacheService;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int maxCodes;
+    private final long budgetMillis;
+    private final int batchSize;
+
+    private volatile String state = "pending";
+    private volatile long warmed;
+    private volatile long durationMillis;
+
+    public CacheWarmer(UrlRepository urlRepository,
+                       UrlClickRepository urlClickRepository,
+                       CacheService cacheService,
+                       ShardRouter shardRouter,
+                       @Value("${app.cache.warmup.enabled:true}") boolean enabled,
+                       @Value("${app.cache.warmup.max-codes:20000}") int maxCodes,
+                       @Value("${app.cache.warmup.budget-ms:15000}") long budgetMillis,
+                       @Value("${app.cache.warmup.batch-size:500}") int batchSize) {
+        this.urlRepository = urlRepository;
+        this.urlClickRepository = urlClickRepository;
+        this.cacheService = cacheService;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.maxCodes = maxCodes;
+        this.budgetMillis = budgetMillis;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        if (!enabled) {
+            state = "disabled";
+            return;
+        }
+        warm(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+
+    void warm(long deadlineNanos) {
+        long started = System.nanoTime();
+        Set<String> done = new LinkedHashSet<>();
+        try {
+            boolean complete = warmHotCodes(deadlineNanos, done) && warmRecentUrls(deadlineNanos, done);
+            state = complete ? "done" : "timed_out";
+        } catch (Exception e) {
+            // A cold cache is slower, not broken; never hold readiness back on a failed warm-up
+            state = "failed";
+            log.warn("Cache warm-up failed after {} codes", done.size(), e);
+        }
+        warmed = done.size();
+        durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.info("Cache warm-up {}: {} codes in {} ms", state, warmed, durationMillis);
+    }
+
+    private boolean warmHotCodes(long deadlineNanos, Set<String> done) {
+        List<UrlClick> recent = new ArrayList<>();
+        for (String shard : shardRouter.shards()) {
+            recent.addAll(shardRouter.onShard(shard,
+                () -> urlClickRepository.findByOrderByLastAccessedAtDesc(PageRequest.of(0, maxCodes))));
+        }
+        recent.sort(Comparator.comparing(UrlClick::getLastAccessedAt).reversed());
+        List<String> codes = new ArrayList<>(Math.min(recent.size(), maxCodes));
+        for (int i = 0; i < recent.size() && i < maxCodes; i++) {
+            codes.add(recent.get(i).getCode());
+        }
+
+        for (int from = 0; from < codes.size(); from += batchSize) {
+            if (System.nanoTime() > deadlineNanos) {
+                return false;
+            }
+            List<String> batch = codes.subList(from, Math.min(codes.size(), from + batchSize));
+            Map<String, Url> rows = shardRouter.collectByKey(batch, shardCodes -> {
+                Map<String, Url> found = new HashMap<>();
+                for (Url url : urlRepository.findAllById(shardCodes)) {
+                    found.put(url.getCode(), url);
+                }
+                return found;
+            });
+            List<Url> hottestFirst = new ArrayList<>(rows.size());
+            for (String code : batch) {
+                Url url = rows.get(code);
+                if (url != null) {
+                    hottestFirst.add(url);
+                }
+            }
+            store(hottestFirst, done);
+        }
+        return true;
+    }
+
+    private boolean warmRecentUrls(long deadlineNanos, Set<String> done) {
+        int wanted = maxCodes - done.size();
+        if (wanted <= 0 || System.nanoTime() > deadlineNanos) {
+            return wanted <= 0;
+        }
+        List<Url> recent = new ArrayList<>();
+        for (String shard : shardRouter.shards()) {
+            recent.addAll(shardRouter.onShard(shard,
+                () -> urlRepository.findByOrderByCreatedAtDesc(PageRequest.of(0, wanted))));
+        }
+        recent.sort(Comparator.comparing(Url::getCreatedAt).reversed());
+        Map<String, Url> fresh = new LinkedHashMap<>();
+        for (Url url : recent) {
+            if (fresh.size() == wanted) {
+                break;
+            }
+            if (!done.contains(url.getCode())) {
+                fresh.put(url.getCode(), url);
+            }
+        }
+
+        List<Url> rows = new ArrayList<>(fresh.values());
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            if (System.nanoTime() > deadlineNanos) {
+                return false;
+            }
+            store(rows.subList(from, Math.min(rows.size(), from + batchSize)), done);
+        }
+        return true;
+    }
+
+    private void store(Iterable<Url> rows, Set<String> done) {
+        List<CacheService.Mapping> mappings = new ArrayList<>();
+        for (Url url : rows) {
+            mappings.add(new CacheService.Mapping(url.getCode(), url.getNormalizedUrl(), url.getUrlHash()));
+            done.add(url.getCode());
+        }
+        if (!mappings.isEmpty()) {
+            cacheService.warm(mappings);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("warmedCodes", warmed);
+        stats.put("durationMs", durationMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,220 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.cache.ConcurrentLongObjectMap;
+import com.amtinyurl.entity.UrlClick;
+import com.amtinyurl.repository.UrlClickRepository;
+import com.amtinyurl.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Counts redirects per code off the request path. {@link #record} decodes the code with
+ * {@link ShortCodeCodec} and bumps a per-code {@link LongAdder} found through a
+ * {@link ConcurrentLongObjectMap}, so once a code has a counter a click is a lock-free probe plus a
+ * striped increment with no allocation. Every flush window the accumulated deltas are drained and
+ * upserted into {@code url_clicks} in JDBC batches; a failed flush puts the deltas back so they go
+ * out with the next window. Codes with no clicks for {@code app.clicks.idle-retire-ms} drop out of
+ * the map, which keeps it bounded by the set of recently clicked codes; the grace period is what
+ * keeps a click racing the removal from landing on a counter that has already been retired. With
+ * sharding each shard gets its own batches, for the codes it owns at flush time.
+ */
+@Service
+@Slf4j
+public class ClickTracker {
+
+    // Deltas from several nodes add up; last access only moves forward
+    public static final String UPSERT_SQL =
+        "INSERT INTO url_clicks (code, click_count, last_accessed_at) VALUES (?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE click_count = click_count + VALUES(click_count), " +
+        "last_accessed_at = GREATEST(last_accessed_at, VALUES(last_accessed_at))";
+
+    private static final LongFunction<Counter> NEW_COUNTER = key -> new Counter();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UrlClickRepository urlClickRepository;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long idleRetireMillis;
+    private final ConcurrentLongObjectMap<Counter> counters = new ConcurrentLongObjectMap<>();
+
+    private final LongAdder flushedClicks = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    public ClickTracker(JdbcTemplate jdbcTemplate,
+                        UrlClickRepository urlClickRepository,
+                        ShardRouter shardRouter,
+                        @Value("${app.clicks.enabled:true}") boolean enabled,
+                        @Value("${app.clicks.batch-size:500}") int batchSize,
+                        @Value("${app.clicks.idle-retire-ms:60000}") long idleRetireMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.urlClickRepository = urlClickRepository;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.idleRetireMillis = idleRetireMillis;
+    }
+
+    public void record(String code) {
+        if (!enabled) {
+            return;
+        }
+        long key = ShortCodeCodec.parse(code);
+        if (key == ShortCodeCodec.INVALID) {
+            return;
+        }
+        Counter counter = counters.computeIfAbsent(key, NEW_COUNTER);
+        counter.increment();
+        long now = System.currentTimeMillis();
+        // Skip the shared write when another click already stamped this millisecond
+        if (counter.lastAccessMillis != now) {
+            counter.lastAccessMillis = now;
+        }
+    }
+
+    // Persisted totals plus whatever this node has recorded but not flushed yet
+    public ClickCount getClickCount(String code) {
+        Optional<UrlClick> stored = shardRouter.findOnShardFor(code, () -> urlClickRepository.findById(code));
+        long clicks = stored.map(UrlClick::getClickCount).orElse(0L);
+        LocalDateTime lastAccessedAt = stored.map(UrlClick::getLastAccessedAt).orElse(null);
+
+        long key = ShortCodeCodec.parse(code);
+        Counter counter = key == ShortCodeCodec.INVALID ? null : counters.get(key);
+        long pending = counter == null ? 0 : counter.sum();
+        if (pending > 0) {
+            clicks += pending;
+            LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(counter.lastAccessMillis),
+                ZoneId.systemDefault());
+            if (lastAccessedAt == null || local.isAfter(lastAccessedAt)) {
+                lastAccessedAt = local;
+            }
+        }
+        return new ClickCount(clicks, lastAccessedAt);
+    }
+
+    @Scheduled(fixedDelayString = "${app.clicks.flush-interval-ms:10000}",
+               initialDelayString = "${app.clicks.flush-interval-ms:10000}")
+    public void flush() {
+        List<Delta> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // Regrouped so that every batch goes to a single shard; written counts through the groups in order
+        Map<String, List<Delta>> byShard = shardRouter.groupByShard(deltas, delta -> delta.code);
+        deltas = new ArrayList<>(deltas.size());
+        for (List<Delta> group : byShard.values()) {
+            deltas.addAll(group);
+        }
+
+        int written = 0;
+        try {
+            for (Map.Entry<String, List<Delta>> group : byShard.entrySet()) {
+                List<Delta> shardDeltas = group.getValue();
+                for (int from = 0; from < shardDeltas.size(); from += batchSize) {
+                    List<Delta> batch = shardDeltas.subList(from, Math.min(shardDeltas.size(), from + batchSize));
+                    List<Object[]> rows = new ArrayList<>(batch.size());
+                    for (Delta delta : batch) {
+                        rows.add(new Object[]{delta.code, delta.clicks, new Timestamp(delta.lastAccessMillis)});
+                    }
+                    shardRouter.onShard(group.getKey(), () -> jdbcTemplate.batchUpdate(UPSERT_SQL, rows));
+                    written += batch.size();
+                }
+            }
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.warn("Failed to flush {} click deltas, retrying next window", deltas.size() - written, e);
+            restore(deltas.subList(written, deltas.size()));
+        }
+
+        long clicks = 0;
+        for (int i = 0; i < written; i++) {
+            clicks += deltas.get(i).clicks;
+        }
+        flushedClicks.add(clicks);
+        log.debug("Flushed {} clicks for {} codes", clicks, written);
+    }
+
+    List<Delta> drain() {
+        List<Delta> deltas = new ArrayList<>();
+        counters.forEach((key, counter) -> {
+            long clicks = counter.sumThenReset();
+            if (clicks > 0) {
+                deltas.add(new Delta(ShortCodeCodec.format(key), clicks, counter.lastAccessMillis));
+            }
+        });
+        long retireBefore = System.currentTimeMillis() - idleRetireMillis;
+        counters.removeIf((key, counter) -> counter.lastAccessMillis < retireBefore && counter.sum() == 0);
+        return deltas;
+    }
+
+    void restore(List<Delta> deltas) {
+        for (Delta delta : deltas) {
+            Counter counter = counters.computeIfAbsent(ShortCodeCodec.parse(delta.code), NEW_COUNTER);
+            counter.add(delta.clicks);
+            if (counter.lastAccessMillis < delta.lastAccessMillis) {
+                counter.lastAccessMillis = delta.lastAccessMillis;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getStats() {
+        LongAdder pending = new LongAdder();
+        counters.forEach((key, counter) -> pending.add(counter.sum()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedCodes", counters.size());
+        stats.put("pendingClicks", pending.sum());
+        stats.put("flushedClicks", flushedClicks.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    public static class ClickCount {
+        public final long clicks;
+        public final LocalDateTime lastAccessedAt;
+
+        public ClickCount(long clicks, LocalDateTime lastAccessedAt) {
+            this.clicks = clicks;
+            this.lastAccessedAt = lastAccessedAt;
+        }
+    }
+
+    // The adder itself holds the clicks, one dereference less per record
+    private static final class Counter extends LongAdder {
+        private volatile long lastAccessMillis;
+    }
+
+    static final class Delta {
+        final String code;
+        final long clicks;
+        final long lastAccessMillis;
+
+        Delta(String code, long clicks, long lastAccessMillis) {
+            this.code = code;
+            this.clicks = clicks;
+            this.lastAccessMillis = lastAccessMillis;
+        }
+    }
+}
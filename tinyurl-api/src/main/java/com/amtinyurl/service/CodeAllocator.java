@@ -0,0 +1,167 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.entity.CodeSequence;
+import com.amtinyurl.repository.CodeSequenceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Issues short codes from blocks of the {@code code_sequence} counter leased from MySQL.
+ * Within a block, allocation is a single atomic increment followed by a keyed permutation,
+ * so concurrent creates neither coordinate with other nodes nor probe for collisions.
+ * The next block is leased on a background thread once half of the current one is used,
+ * which keeps the lease off the request path and outside the caller's transaction.
+ */
+@Service
+@Slf4j
+public class CodeAllocator {
+
+    static final String SEQUENCE_NAME = "urls";
+
+    private final CodeSequenceRepository codeSequenceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShortCodePermutation permutation;
+    private final long blockSize;
+    private final long leaseTimeoutMs;
+    private final ExecutorService leaseExecutor;
+    // A lock rather than a monitor: callers park on the lease future while holding it,
+    // which would pin the carrier thread of a virtual thread on JDK 21-23
+    private final ReentrantLock leaseLock = new ReentrantLock();
+
+    private volatile Block current;
+    private CompletableFuture<Block> nextBlock;
+    private volatile long leasedThrough;
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder blocksLeased = new LongAdder();
+
+    public CodeAllocator(CodeSequenceRepository codeSequenceRepository,
+                         PlatformTransactionManager transactionManager,
+                         BackgroundThreads backgroundThreads,
+                         @Value("${app.codegen.permutation-key}") long permutationKey,
+                         @Value("${app.codegen.block-size:1000}") long blockSize,
+                         @Value("${app.codegen.lease-timeout-ms:5000}") long leaseTimeoutMs) {
+        this.codeSequenceRepository = codeSequenceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.permutation = new ShortCodePermutation(permutationKey);
+        this.blockSize = blockSize;
+        this.leaseTimeoutMs = leaseTimeoutMs;
+        this.leaseExecutor = Executors.newSingleThreadExecutor(backgroundThreads.factory("code-block-lease"));
+    }
+
+    public String nextCode() {
+        return permutation.encode(nextSequence());
+    }
+
+    long nextSequence() {
+        while (true) {
+            Block block = current;
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.end) {
+                    if (value == block.prefetchAt) {
+                        prefetch();
+                    }
+                    issued.increment();
+                    return value;
+                }
+            }
+            advance(block);
+        }
+    }
+
+    private void advance(Block exhausted) {
+        leaseLock.lock();
+        try {
+            if (current != exhausted) {
+                return;
+            }
+            prefetch();
+            try {
+                current = nextBlock.get(leaseTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.error("Failed to lease short code block", e);
+                throw new RuntimeException("CODE_ALLOCATION_FAILED", e);
+            } finally {
+                nextBlock = null;
+            }
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    private void prefetch() {
+        leaseLock.lock();
+        try {
+            if (nextBlock == null || nextBlock.isCompletedExceptionally()) {
+                nextBlock = CompletableFuture.supplyAsync(this::leaseBlock, leaseExecutor);
+            }
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    private Block leaseBlock() {
+        Block block = transactionTemplate.execute(status -> {
+            CodeSequence sequence = codeSequenceRepository.findForUpdate(SEQUENCE_NAME)
+                    .orElseThrow(() -> new IllegalStateException("Missing code_sequence row: " + SEQUENCE_NAME));
+            long start = sequence.getNextValue();
+            if (start >= ShortCodePermutation.KEYSPACE_SIZE) {
+                throw new IllegalStateException("Short code keyspace exhausted");
+            }
+            long end = Math.min(start + blockSize, ShortCodePermutation.KEYSPACE_SIZE);
+            sequence.setNextValue(end);
+            codeSequenceRepository.save(sequence);
+            return new Block(start, end);
+        });
+        leasedThrough = Math.max(leasedThrough, block.end);
+        blocksLeased.increment();
+        log.info("Leased short code block [{}, {})", block.start, block.end);
+        return block;
+    }
+
+    public Map<String, Object> getStats() {
+        Block block = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keyspaceSize", ShortCodePermutation.KEYSPACE_SIZE);
+        stats.put("leasedThrough", leasedThrough);
+        stats.put("keyspaceUsedRatio", (double) leasedThrough / ShortCodePermutation.KEYSPACE_SIZE);
+        stats.put("blocksLeased", blocksLeased.sum());
+        stats.put("issued", issued.sum());
+        stats.put("blockRemaining", block == null ? 0 : Math.max(0, block.end - block.next.get()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseExecutor.shutdownNow();
+    }
+
+    private static final class Block {
+        private final long start;
+        private final long end;
+        private final long prefetchAt;
+        private final AtomicLong next;
+
+        Block(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.prefetchAt = start + (end - start) / 2;
+            this.next = new AtomicLong(start);
+        }
+    }
+}
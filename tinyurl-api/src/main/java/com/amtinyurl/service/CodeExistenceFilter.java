@@ -0,0 +1,330 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.cache.ExpiringLongSet;
+import com.amtinyurl.cache.LongLongHashMap;
+import com.amtinyurl.cache.ScalableBloomFilter;
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.config.ReplicaRoutingDataSource;
+import com.amtinyurl.repository.CodeSequenceRepository;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps unknown short codes from reaching MySQL. A Bloom filter of every issued code is rebuilt
+ * from the {@code urls} table (on every shard) and kept current through the {@link #CHANNEL}
+ * broadcast (comma-separated codes), which is sent once the inserting transaction has committed. A
+ * code the ready filter rejects answers 404 without any I/O, and the filter's verdict also lets
+ * {@link #definitelyAbsent} skip the existence query when issuing codes.
+ *
+ * <p>The broadcast is fire-and-forget, so a node may miss a code issued elsewhere. Only codes from
+ * recent blocks can be missed that way: a code whose {@link ShortCodePermutation#invert sequence
+ * number} lies between {@code app.code-filter.recheck-sequences} below where the counter stood when
+ * the last rebuild began and where it stands now is still looked up in the database, and a code
+ * found there is added to the filter. A random code almost never falls in that window. Losing the
+ * subscription itself triggers a rebuild once it is back. Confirmed misses are remembered for a
+ * short while in a negative cache.
+ *
+ * <p>Both structures key on the code decoded by {@link ShortCodeCodec}; strings that are not short
+ * codes are never in the filter and are never answered from it.
+ */
+@Service
+@Slf4j
+public class CodeExistenceFilter implements MessageListener, SubscriptionListener {
+
+    public static final String CHANNEL = "codes:issued";
+
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    private final UrlRepository urlRepository;
+    private final CodeSequenceRepository codeSequenceRepository;
+    private final ShardRouter shardRouter;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final BackgroundThreads backgroundThreads;
+    private final boolean enabled;
+    private final long expectedCodes;
+    private final double falsePositiveRate;
+    private final ExpiringLongSet negativeCache;
+    private final ShortCodePermutation permutation;
+    private final long recheckSequences;
+
+    private volatile ScalableBloomFilter filter;
+    private volatile boolean ready;
+    private LongLongHashMap issuedDuringRebuild;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    // Sequence numbers in [recheckFrom, sequenceHighWater) may belong to codes this node missed
+    private volatile long recheckFrom;
+    private volatile long sequenceHighWater;
+
+    private final LongAdder filterRejects = new LongAdder();
+    private final LongAdder rechecks = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder confirmedMissing = new LongAdder();
+    private final LongAdder unannounced = new LongAdder();
+
+    public CodeExistenceFilter(UrlRepository urlRepository,
+                               CodeSequenceRepository codeSequenceRepository,
+                               ShardRouter shardRouter,
+                               RedisTemplate<String, String> redisTemplate,
+                               BackgroundThreads backgroundThreads,
+                               @Value("${app.code-filter.enabled:true}") boolean enabled,
+                               @Value("${app.code-filter.expected-codes:1000000}") long expectedCodes,
+                               @Value("${app.code-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${app.code-filter.negative-ttl-seconds:30}") long negativeTtlSeconds,
+                               @Value("${app.code-filter.negative-max-entries:100000}") long negativeMaxEntries,
+                               @Value("${app.code-filter.recheck-sequences:100000}") long recheckSequences,
+                               @Value("${app.codegen.permutation-key}") long permutationKey) {
+        this.urlRepository = urlRepository;
+        this.codeSequenceRepository = codeSequenceRepository;
+        this.shardRouter = shardRouter;
+        this.redisTemplate = redisTemplate;
+        this.backgroundThreads = backgroundThreads;
+        this.enabled = enabled;
+        this.expectedCodes = expectedCodes;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new ScalableBloomFilter(expectedCodes, falsePositiveRate);
+        this.negativeCache = new ExpiringLongSet(negativeMaxEntries, Duration.ofSeconds(negativeTtlSeconds).toMillis());
+        this.recheckSequences = recheckSequences;
+        this.permutation = new ShortCodePermutation(permutationKey);
+    }
+
+    /** False for codes that were never issued, or that the database recently confirmed missing. */
+    public boolean mightExist(String code) {
+        long key = ShortCodeCodec.parse(code);
+        if (!enabled || key == ShortCodeCodec.INVALID) {
+            return true;
+        }
+        if (ready && !filter.mightContain(key)) {
+            long sequence = permutation.invert(key);
+            if (sequence < recheckFrom || sequence >= sequenceHighWater) {
+                filterRejects.increment();
+                return false;
+            }
+            rechecks.increment();
+        }
+        if (negativeCache.contains(key)) {
+            negativeHits.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean definitelyAbsent(String code) {
+        long key = ShortCodeCodec.parse(code);
+        return enabled && ready && key != ShortCodeCodec.INVALID && !filter.mightContain(key);
+    }
+
+    public void recordMissing(String code) {
+        long key = ShortCodeCodec.parse(code);
+        if (enabled && key != ShortCodeCodec.INVALID) {
+            confirmedMissing.increment();
+            negativeCache.add(key);
+        }
+    }
+
+    // The database had a recent code this node never heard about; its broadcast was lost or is still on its way
+    public void recordFound(String code) {
+        long key = ShortCodeCodec.parse(code);
+        if (enabled && ready && key != ShortCodeCodec.INVALID && !filter.mightContain(key)) {
+            unannounced.increment();
+            addLocally(code);
+        }
+    }
+
+    public void recordIssued(String code) {
+        addLocally(code);
+        afterCommit(() -> broadcast(code, 1));
+    }
+
+    public void recordIssued(Collection<String> codes) {
+        if (codes.isEmpty()) {
+            return;
+        }
+        for (String code : codes) {
+            addLocally(code);
+        }
+        String payload = String.join(",", codes);
+        afterCommit(() -> broadcast(payload, codes.size()));
+    }
+
+    // Other nodes must never hear about a row that could still roll back
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    private void broadcast(String payload, int count) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast {} issued codes", count, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int from = 0;
+        while (from < payload.length()) {
+            int comma = payload.indexOf(',', from);
+            int to = comma < 0 ? payload.length() : comma;
+            addLocally(payload.substring(from, to));
+            from = to + 1;
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        // Codes issued while the subscription was down were never heard about
+        if (!subscribed.compareAndSet(false, true) && enabled && ready) {
+            log.info("Resubscribed to {}, rebuilding the code existence filter", CHANNEL);
+            backgroundThreads.factory("code-filter-loader").newThread(this::rebuild).start();
+        }
+    }
+
+    private synchronized void addLocally(String code) {
+        long key = ShortCodeCodec.parse(code);
+        if (key == ShortCodeCodec.INVALID) {
+            return;
+        }
+        filter.add(key);
+        if (issuedDuringRebuild != null) {
+            issuedDuringRebuild.put(key, 0L, 0L);
+        }
+        negativeCache.remove(key);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        backgroundThreads.factory("code-filter-loader").newThread(this::rebuild).start();
+    }
+
+    @Scheduled(fixedDelayString = "${app.code-filter.rebuild-interval-ms:3600000}",
+               initialDelayString = "${app.code-filter.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            synchronized (this) {
+                issuedDuringRebuild = new LongLongHashMap(1024);
+            }
+            // Anything leased before this point is either behind the scan cursor or in a block in use right now
+            long rebuildFrom = readSequence();
+
+            ScalableBloomFilter fresh = new ScalableBloomFilter(expectedCodes, falsePositiveRate);
+            long loaded = 0;
+            for (String shard : shardRouter.shards()) {
+                String after = "";
+                while (true) {
+                    String from = after;
+                    // A lagging replica would leave recent codes out of the filter
+                    List<String> codes = ReplicaRoutingDataSource.onPrimary(() -> shardRouter.onShard(shard,
+                        () -> urlRepository.findCodesAfter(from, PageRequest.of(0, LOAD_PAGE_SIZE))));
+                    if (codes.isEmpty()) {
+                        break;
+                    }
+                    for (String code : codes) {
+                        long key = ShortCodeCodec.parse(code);
+                        if (key != ShortCodeCodec.INVALID) {
+                            fresh.add(key);
+                        }
+                    }
+                    loaded += codes.size();
+                    after = codes.get(codes.size() - 1);
+                }
+            }
+
+            // Codes issued while the scan ran may sit behind the cursor; carry them across
+            synchronized (this) {
+                for (int slot = 0; slot < issuedDuringRebuild.capacity(); slot++) {
+                    if (issuedDuringRebuild.keyAt(slot) != LongLongHashMap.FREE) {
+                        fresh.add(issuedDuringRebuild.keyAt(slot));
+                    }
+                }
+                this.filter = fresh;
+                this.recheckFrom = Math.max(0, rebuildFrom - recheckSequences);
+                this.sequenceHighWater = Math.max(sequenceHighWater, rebuildFrom);
+                this.ready = true;
+            }
+            log.info("Code existence filter built with {} codes in {} ms ({} bytes)",
+                loaded, Duration.ofNanos(System.nanoTime() - started).toMillis(), fresh.sizeInBytes());
+        } catch (Exception e) {
+            log.warn("Failed to build code existence filter, keeping previous state", e);
+        } finally {
+            synchronized (this) {
+                issuedDuringRebuild = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /** Follows the shared counter so codes from blocks leased since the last rebuild are rechecked. */
+    @Scheduled(fixedDelayString = "${app.code-filter.sequence-refresh-ms:5000}")
+    public void refreshSequence() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            sequenceHighWater = Math.max(sequenceHighWater, readSequence());
+        } catch (Exception e) {
+            log.debug("Failed to read the short code sequence", e);
+        }
+    }
+
+    private long readSequence() {
+        // code_sequence lives on the directory shard, which unrouted queries reach
+        return ReplicaRoutingDataSource.onPrimary(() -> codeSequenceRepository.findNextValue(CodeAllocator.SEQUENCE_NAME))
+            .orElse(0L);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("codes", filter.approximateCount());
+        stats.put("bytes", filter.sizeInBytes());
+        stats.put("filterRejects", filterRejects.sum());
+        stats.put("rechecks", rechecks.sum());
+        stats.put("recheckFrom", recheckFrom);
+        stats.put("sequenceHighWater", sequenceHighWater);
+        stats.put("negativeHits", negativeHits.sum());
+        stats.put("confirmedMissing", confirmedMissing.sum());
+        stats.put("unannounced", unannounced.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,198 @@
+package com.amtinyurl.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pulls one URL per line out of an NDJSON or CSV upload without buffering the whole body.
+ * Lines longer than the configured limit are skipped up to the next newline and reported
+ * as failed records, so a single runaway line cannot grow the heap.
+ */
+public class ImportRecordReader {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String URL_COLUMN = "url";
+    private static final int EOF = -1;
+    private static final int OK = 0;
+    private static final int TOO_LONG = 1;
+
+    private final Reader reader;
+    private final Format format;
+    private final int maxLineLength;
+    private final ObjectMapper objectMapper;
+    private final StringBuilder line;
+
+    private int lineNumber;
+    private int urlColumn = 0;
+    private boolean headerChecked;
+
+    public ImportRecordReader(Reader reader, Format format, int maxLineLength, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.maxLineLength = maxLineLength;
+        this.objectMapper = objectMapper;
+        this.line = new StringBuilder(Math.min(maxLineLength, 256));
+    }
+
+    /**
+     * Returns the next non-blank record, or {@code null} at end of input.
+     */
+    public Record next() throws IOException {
+        while (true) {
+            int status = readLine();
+            if (status == EOF) {
+                return null;
+            }
+            lineNumber++;
+            if (status == TOO_LONG) {
+                return Record.failed(lineNumber, "LINE_TOO_LONG");
+            }
+            if (isBlank(line)) {
+                continue;
+            }
+            if (format == Format.CSV && !headerChecked) {
+                headerChecked = true;
+                if (detectHeader(line.toString())) {
+                    continue;
+                }
+            }
+            String url = format == Format.CSV ? csvField(line, urlColumn) : ndjsonUrl(line.toString());
+            return url == null ? Record.failed(lineNumber, "INVALID_LINE") : Record.of(lineNumber, url);
+        }
+    }
+
+    private int readLine() throws IOException {
+        line.setLength(0);
+        boolean overflow = false;
+        int c;
+        boolean any = false;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (c == '\n') {
+                break;
+            }
+            if (overflow) {
+                continue;
+            }
+            if (line.length() == maxLineLength) {
+                overflow = true;
+                line.setLength(0);
+                continue;
+            }
+            line.append((char) c);
+        }
+        if (!any) {
+            return EOF;
+        }
+        if (overflow) {
+            return TOO_LONG;
+        }
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        return OK;
+    }
+
+    private boolean detectHeader(String header) {
+        for (int column = 0; ; column++) {
+            String field = csvField(header, column);
+            if (field == null) {
+                return false;
+            }
+            if (URL_COLUMN.equalsIgnoreCase(field.trim())) {
+                urlColumn = column;
+                return true;
+            }
+        }
+    }
+
+    private String ndjsonUrl(String text) {
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            if (node == null) {
+                return null;
+            }
+            if (node.isTextual()) {
+                return node.asText();
+            }
+            JsonNode url = node.get(URL_COLUMN);
+            return url != null && url.isTextual() ? url.asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Minimal RFC 4180 field extraction: quoted fields with "" escapes, no embedded newlines
+    static String csvField(CharSequence text, int column) {
+        int position = 0;
+        int length = text.length();
+        for (int current = 0; position <= length; current++) {
+            StringBuilder field = current == column ? new StringBuilder() : null;
+            if (position < length && text.charAt(position) == '"') {
+                position++;
+                while (position < length) {
+                    char c = text.charAt(position++);
+                    if (c == '"') {
+                        if (position < length && text.charAt(position) == '"') {
+                            position++;
+                        } else {
+                            break;
+                        }
+                    }
+                    if (field != null) {
+                        field.append(c);
+                    }
+                }
+                while (position < length && text.charAt(position) != ',') {
+                    position++;
+                }
+            } else {
+                int start = position;
+                while (position < length && text.charAt(position) != ',') {
+                    position++;
+                }
+                if (field != null) {
+                    field.append(text, start, position);
+                }
+            }
+            if (field != null) {
+                return field.toString();
+            }
+            position++;
+        }
+        return null;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static class Record {
+        public final int line;
+        public final String url;
+        public final String error;
+
+        private Record(int line, String url, String error) {
+            this.line = line;
+            this.url = url;
+            this.error = error;
+        }
+
+        static Record of(int line, String url) {
+            return new Record(line, url, null);
+        }
+
+        static Record failed(int line, String error) {
+            return new Record(line, null, error);
+        }
+    }
+}
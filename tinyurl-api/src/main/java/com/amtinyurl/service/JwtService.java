@@ -1,13 +1,22 @@
 package com.amtinyurl.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Locale;
 
 @Service
 @Slf4j
@@ -15,9 +24,26 @@ public class JwtService {
 
     private final SecretKey secretKey;
     private final String issuer = "amtinyurl";
+    private final JwtParser parser;
+    // SHA-256 of an already verified token -> lowercase user id
+    private final Cache<String, String> verifiedTokens;
 
-    public JwtService(@Value("${jwt.secret}") String secret) {
+    public JwtService(String secret) {
+        this(secret, 10_000, 60);
+    }
+
+    @Autowired
+    public JwtService(@Value("${jwt.secret}") String secret,
+                      @Value("${app.jwt.verified-cache.max-entries:10000}") long maxVerifiedTokens,
+                      @Value("${app.jwt.verified-cache.ttl-minutes:60}") long verifiedTokenTtlMinutes) {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxVerifiedTokens)
+                .expireAfterAccess(Duration.ofMinutes(verifiedTokenTtlMinutes))
+                .build();
     }
 
     public String generateToken(String userId) {
@@ -32,11 +58,7 @@ public class JwtService {
 
     public String validateTokenAndGetUserId(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
 
             String subject = claims.getSubject();
             String tokenIssuer = claims.getIssuer();
@@ -53,6 +75,32 @@ public class JwtService {
         }
     }
 
+    // Tokens never expire, so a token whose exact bytes were verified once stays valid;
+    // any tampering changes the digest and falls through to full signature verification.
+    public String authenticate(String token) {
+        String digest = digest(token);
+        String cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+
+        String userId = validateTokenAndGetUserId(token);
+        if (userId != null) {
+            userId = userId.toLowerCase(Locale.ROOT);
+            verifiedTokens.put(digest, userId);
+        }
+        return userId;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     public boolean isValidUserId(String userId) {
         if (userId == null || userId.length() != 6) {
             return false;
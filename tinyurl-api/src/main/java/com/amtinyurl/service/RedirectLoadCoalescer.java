@@ -0,0 +1,19 @@
+package com.amtinyurl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Single-flight for redirect cache misses: callers that miss the same code while its
+ * {@code findById} is in flight share that lookup instead of each querying MySQL.
+ */
+@Component
+public class RedirectLoadCoalescer extends SingleFlight<Optional<String>> {
+
+    public RedirectLoadCoalescer(@Value("${app.redirect.single-flight.enabled:true}") boolean enabled,
+                                 @Value("${app.redirect.single-flight.timeout-ms:1000}") long timeoutMillis) {
+        super(enabled, timeoutMillis);
+    }
+}
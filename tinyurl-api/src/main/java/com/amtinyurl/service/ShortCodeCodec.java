@@ -0,0 +1,63 @@
+package com.amtinyurl.service;
+
+import java.util.Arrays;
+
+/**
+ * Short codes as numbers: seven base36 digits over {@code a-z0-9} (in that order) are a value in
+ * {@code [0, 36^7)}, 37 bits. {@link #parse} validates and decodes in one pass over the characters,
+ * case-insensitively and without allocating, so in-memory structures can key on the {@code long}
+ * and only turn it back into a {@code String} for Redis keys and SQL.
+ */
+public final class ShortCodeCodec {
+
+    public static final int CODE_LENGTH = 7;
+    public static final long CODE_SPACE = 78_364_164_096L; // 36^7
+    public static final long INVALID = -1L;
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DIGITS[ALPHABET[i]] = (byte) i;
+            DIGITS[Character.toUpperCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private ShortCodeCodec() {
+    }
+
+    public static long parse(CharSequence code) {
+        return code == null ? INVALID : parse(code, 0, code.length());
+    }
+
+    /** Decodes {@code code[from, to)}, or returns {@link #INVALID} if it is not a short code. */
+    public static long parse(CharSequence code, int from, int to) {
+        if (to - from != CODE_LENGTH) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = code.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = value * ALPHABET.length + digit;
+        }
+        return value;
+    }
+
+    public static String format(long value) {
+        if (value < 0 || value >= CODE_SPACE) {
+            throw new IllegalArgumentException("Value outside code space: " + value);
+        }
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (value % ALPHABET.length)];
+            value /= ALPHABET.length;
+        }
+        return new String(code);
+    }
+}
@@ -0,0 +1,77 @@
+package com.amtinyurl.service;
+
+/**
+ * Keyed bijection over the 36^7 short code space. Sequence numbers are split into a
+ * 36^3 and a 36^4 half and run through an even number of mixed-radix Feistel rounds, so
+ * consecutive numbers map to unrelated-looking codes and no two numbers share a code.
+ * The key must never change once codes have been issued with it.
+ */
+public class ShortCodePermutation {
+
+    public static final int CODE_LENGTH = ShortCodeCodec.CODE_LENGTH;
+    public static final long KEYSPACE_SIZE = ShortCodeCodec.CODE_SPACE;
+
+    private static final long SMALL_HALF = 46_656L;      // 36^3
+    private static final long LARGE_HALF = 1_679_616L;   // 36^4
+    private static final int ROUNDS = 8;
+
+    private final long key;
+
+    public ShortCodePermutation(long key) {
+        this.key = key;
+    }
+
+    public long permute(long value) {
+        if (value < 0 || value >= KEYSPACE_SIZE) {
+            throw new IllegalArgumentException("Value outside code space: " + value);
+        }
+        long left = value / LARGE_HALF;
+        long right = value % LARGE_HALF;
+        long leftSize = SMALL_HALF;
+        long rightSize = LARGE_HALF;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long mixed = (left + roundFunction(round, right) % leftSize) % leftSize;
+            left = right;
+            right = mixed;
+            long size = leftSize;
+            leftSize = rightSize;
+            rightSize = size;
+        }
+        return left * LARGE_HALF + right;
+    }
+
+    public long invert(long value) {
+        if (value < 0 || value >= KEYSPACE_SIZE) {
+            throw new IllegalArgumentException("Value outside code space: " + value);
+        }
+        long left = value / LARGE_HALF;
+        long right = value % LARGE_HALF;
+        long leftSize = SMALL_HALF;
+        long rightSize = LARGE_HALF;
+
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long size = leftSize;
+            leftSize = rightSize;
+            rightSize = size;
+            long previousRight = left;
+            left = Math.floorMod(right - roundFunction(round, previousRight) % leftSize, leftSize);
+            right = previousRight;
+        }
+        return left * LARGE_HALF + right;
+    }
+
+    public String encode(long sequence) {
+        return ShortCodeCodec.format(permute(sequence));
+    }
+
+    private long roundFunction(int round, long half) {
+        long h = half ^ key ^ ((long) round * 0x9e3779b97f4a7c15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h & Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,85 @@
+package com.amtinyurl.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per-key single-flight: the first caller for a key runs the loader, and callers that arrive
+ * for the same key while it is in flight wait for that result instead of running their own.
+ * A waiter gives up after the timeout and runs the loader itself, so one slow load can delay
+ * a caller but never strand it. Failures go to the waiters and are not remembered.
+ */
+@Slf4j
+public class SingleFlight<V> {
+
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final ConcurrentHashMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(boolean enabled, long timeoutMillis) {
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public V load(String key, Supplier<V> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, mine);
+        if (leader == null) {
+            loads.increment();
+            try {
+                V result = loader.get();
+                mine.complete(result);
+                return result;
+            } catch (RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+
+        coalesced.increment();
+        try {
+            return leader.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.debug("Timed out waiting for in-flight load of {}, loading directly", key);
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return loader.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inFlight", inFlight.size());
+        stats.put("loads", loads.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("timeouts", timeouts.sum());
+        return stats;
+    }
+}
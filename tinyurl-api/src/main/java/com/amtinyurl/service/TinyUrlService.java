@@ -1,17 +1,34 @@
 package com.amtinyurl.service;
 
+import com.amtinyurl.config.ReplicaRoutingDataSource;
+import com.amtinyurl.dto.UserUrlSummary;
 import com.amtinyurl.entity.Url;
+import com.amtinyurl.entity.UrlHashIndex;
 import com.amtinyurl.entity.UserUrl;
+import com.amtinyurl.metrics.TinyUrlMetrics;
+import com.amtinyurl.repository.UrlHashIndexRepository;
 import com.amtinyurl.repository.UrlRepository;
 import com.amtinyurl.repository.UserUrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import com.amtinyurl.storage.UrlStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -19,67 +36,218 @@ import java.util.Optional;
 public class TinyUrlService {
 
     private final UrlRepository urlRepository;
+    private final UrlStore urlStore;
     private final UserUrlRepository userUrlRepository;
+    private final UrlHashIndexRepository urlHashIndexRepository;
     private final UrlService urlService;
     private final CacheService cacheService;
+    private final CodeExistenceFilter codeExistenceFilter;
+    private final CodeAllocator codeAllocator;
+    private final TinyUrlMetrics metrics;
+    private final RedirectLoadCoalescer redirectLoadCoalescer;
+    private final UrlCreateCoalescer urlCreateCoalescer;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final UserUrlVersions userUrlVersions;
 
     @Value("${app.base-url}")
     private String baseUrl;
 
     private static final int MAX_COLLISION_RETRIES = 3;
+    private static final int SHARDED_EXPORT_PAGE = 1000;
 
-    @Transactional
+    /**
+     * Not one transaction: the {@code urls} row is found or inserted in its own short transaction
+     * (shared by concurrent callers for the same URL through {@link UrlCreateCoalescer}), then the
+     * caller's association is added. A create that loses the insert race to another node reuses
+     * the committed winner instead of failing. Pinned to the primary so these reads see this
+     * request's own insert and any row a racing create just committed, even with replicas configured.
+     * With sharding, dedup goes through {@code url_hash_index} on the hash's shard instead of the
+     * unique {@code url_hash} column, which only covers one shard. Lookups go through the
+     * configured {@link UrlStore}; inserts and the re-reads after a lost race always hit MySQL.
+     */
     public CreateUrlResult createOrGetShortUrl(String inputUrl, String userId) {
+        return ReplicaRoutingDataSource.onPrimary(() -> createOrGet(inputUrl, userId));
+    }
+
+    private CreateUrlResult createOrGet(String inputUrl, String userId) {
+        long start = System.nanoTime();
         String normalizedUrl = urlService.normalizeUrl(inputUrl);
+        TinyUrlMetrics.record(metrics.normalize, start);
+        start = System.nanoTime();
+        String urlHash = urlService.hashUrl(normalizedUrl);
+        TinyUrlMetrics.record(metrics.hash, start);
         String userIdLower = userId.toLowerCase();
 
-        CacheService.CacheResult cacheResult = cacheService.getCodeByUrl(normalizedUrl);
+        start = System.nanoTime();
+        CacheService.CacheResult cacheResult = cacheService.getCodeByUrlHash(urlHash);
+        TinyUrlMetrics.record(metrics.cacheLookup, start);
         if (cacheResult.value != null) {
             String cachedCode = cacheResult.value;
-            Optional<Url> existingUrl = urlRepository.findById(cachedCode);
+            start = System.nanoTime();
+            Optional<Url> existingUrl = urlStore.findById(cachedCode);
+            TinyUrlMetrics.record(metrics.findById, start);
             if (existingUrl.isPresent()) {
-                boolean alreadyAssociated = userUrlRepository.existsByUserIdLowerAndCode(userIdLower, cachedCode);
-                if (!alreadyAssociated) {
-                    UserUrl userUrl = new UserUrl();
-                    userUrl.setUserIdLower(userIdLower);
-                    userUrl.setCode(cachedCode);
-                    userUrlRepository.save(userUrl);
-                }
+                associate(userIdLower, cachedCode);
                 return new CreateUrlResult(cachedCode, buildShortUrl(cachedCode), normalizedUrl,
                     existingUrl.get().getCreatedAt(), true);
             }
         }
 
-        Optional<Url> existingUrl = urlRepository.findByNormalizedUrl(normalizedUrl);
+        // Only the caller whose loader ran can have created the row; merged callers see it as existing
+        ResolvedUrl[] own = new ResolvedUrl[1];
+        ResolvedUrl resolved = urlCreateCoalescer.load(urlHash, () -> own[0] = shardRouter.isSharded()
+            ? findOrInsertSharded(normalizedUrl, urlHash)
+            : findOrInsert(normalizedUrl, urlHash));
+        boolean existed = resolved.existed || resolved != own[0];
+        associate(userIdLower, resolved.code);
+
+        if (!existed) {
+            log.info("Created new short URL: {} -> {}", resolved.code, normalizedUrl);
+        }
+        return new CreateUrlResult(resolved.code, buildShortUrl(resolved.code), normalizedUrl,
+            resolved.createdAt, existed);
+    }
+
+    private ResolvedUrl findOrInsert(String normalizedUrl, String urlHash) {
+        long start = System.nanoTime();
+        Optional<Url> existingUrl = urlStore.findByUrlHash(urlHash);
+        TinyUrlMetrics.record(metrics.findByUrlHash, start);
         if (existingUrl.isPresent()) {
-            String code = existingUrl.get().getCode();
-            boolean alreadyAssociated = userUrlRepository.existsByUserIdLowerAndCode(userIdLower, code);
-            if (!alreadyAssociated) {
-                UserUrl userUrl = new UserUrl();
-                userUrl.setUserIdLower(userIdLower);
-                userUrl.setCode(code);
-                userUrlRepository.save(userUrl);
+            Url url = existingUrl.get();
+            cacheStore(url.getCode(), normalizedUrl, urlHash);
+            return new ResolvedUrl(url.getCode(), url.getCreatedAt(), true);
+        }
+
+        try {
+            Url inserted = transactionTemplate.execute(status -> insertUrl(normalizedUrl, urlHash));
+            return new ResolvedUrl(inserted.getCode(), inserted.getCreatedAt(), false);
+        } catch (DataIntegrityViolationException e) {
+            // The unique url_hash insert only fails once the other row has committed, so one re-read finds it
+            Optional<Url> winner = urlRepository.findByUrlHash(urlHash);
+            if (winner.isEmpty()) {
+                throw e;
             }
-            cacheService.putBidirectional(code, normalizedUrl);
-            return new CreateUrlResult(code, buildShortUrl(code), normalizedUrl,
-                existingUrl.get().getCreatedAt(), true);
+            metrics.createRaceReused.increment();
+            log.debug("Lost insert race for {}, reusing {}", normalizedUrl, winner.get().getCode());
+            urlStore.saved(List.of(winner.get()));
+            cacheStore(winner.get().getCode(), normalizedUrl, urlHash);
+            return new ResolvedUrl(winner.get().getCode(), winner.get().getCreatedAt(), true);
         }
+    }
 
+    private Url insertUrl(String normalizedUrl, String urlHash) {
+        long start = System.nanoTime();
         String newCode = generateUniqueCode();
+        TinyUrlMetrics.record(metrics.codeGenerate, start);
         Url newUrl = new Url();
         newUrl.setCode(newCode);
         newUrl.setNormalizedUrl(normalizedUrl);
-        urlRepository.save(newUrl);
+        newUrl.setUrlHash(urlHash);
+        start = System.nanoTime();
+        // Flushed here so a duplicate surfaces inside this transaction rather than at commit
+        Url saved = urlRepository.saveAndFlush(newUrl);
+        TinyUrlMetrics.record(metrics.saveUrl, start);
+        codeExistenceFilter.recordIssued(newCode);
+        cacheStore(newCode, normalizedUrl, urlHash);
+        urlStore.saved(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * The hash is claimed in {@code url_hash_index} before the {@code urls} row exists, so the claim
+     * alone decides which code a URL gets. Whoever reads a claim completes the {@code urls} row if it
+     * is missing, which also heals a create that died between the two inserts.
+     */
+    private ResolvedUrl findOrInsertSharded(String normalizedUrl, String urlHash) {
+        long start = System.nanoTime();
+        Optional<String> indexed = findIndexedCode(urlHash);
+        TinyUrlMetrics.record(metrics.findByUrlHash, start);
+        if (indexed.isPresent()) {
+            Url url = completeUrlRow(indexed.get(), normalizedUrl, urlHash);
+            cacheStore(url.getCode(), normalizedUrl, urlHash);
+            return new ResolvedUrl(url.getCode(), url.getCreatedAt(), true);
+        }
+
+        start = System.nanoTime();
+        String code = generateUniqueCode();
+        TinyUrlMetrics.record(metrics.codeGenerate, start);
+        try {
+            shardRouter.onShardFor(urlHash, () -> transactionTemplate.execute(status ->
+                urlHashIndexRepository.saveAndFlush(new UrlHashIndex(urlHash, code))));
+        } catch (DataIntegrityViolationException e) {
+            // The claim only fails once the other one has committed, so one re-read finds it
+            String winner = findIndexedCode(urlHash).orElseThrow(() -> e);
+            metrics.createRaceReused.increment();
+            log.debug("Lost hash claim for {}, reusing {}", normalizedUrl, winner);
+            Url url = completeUrlRow(winner, normalizedUrl, urlHash);
+            cacheStore(url.getCode(), normalizedUrl, urlHash);
+            return new ResolvedUrl(url.getCode(), url.getCreatedAt(), true);
+        }
+
+        Url url = completeUrlRow(code, normalizedUrl, urlHash);
+        codeExistenceFilter.recordIssued(code);
+        cacheStore(code, normalizedUrl, urlHash);
+        return new ResolvedUrl(code, url.getCreatedAt(), false);
+    }
+
+    private Optional<String> findIndexedCode(String urlHash) {
+        return shardRouter.findOnShardFor(urlHash, () -> urlHashIndexRepository.findById(urlHash).map(UrlHashIndex::getCode));
+    }
+
+    private Url completeUrlRow(String code, String normalizedUrl, String urlHash) {
+        Url url = findOrSaveUrlRow(code, normalizedUrl, urlHash);
+        urlStore.saved(List.of(url));
+        return url;
+    }
+
+    private Url findOrSaveUrlRow(String code, String normalizedUrl, String urlHash) {
+        Optional<Url> existing = shardRouter.findOnShardFor(code, () -> urlRepository.findById(code));
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Url newUrl = new Url();
+        newUrl.setCode(code);
+        newUrl.setNormalizedUrl(normalizedUrl);
+        newUrl.setUrlHash(urlHash);
+        long start = System.nanoTime();
+        try {
+            return shardRouter.onShardFor(code, () -> transactionTemplate.execute(status -> urlRepository.saveAndFlush(newUrl)));
+        } catch (DataIntegrityViolationException e) {
+            // Completed concurrently by another reader of the same claim
+            return shardRouter.findOnShardFor(code, () -> urlRepository.findById(code)).orElseThrow(() -> e);
+        } finally {
+            TinyUrlMetrics.record(metrics.saveUrl, start);
+        }
+    }
 
-        UserUrl userUrl = new UserUrl();
-        userUrl.setUserIdLower(userIdLower);
-        userUrl.setCode(newCode);
-        userUrlRepository.save(userUrl);
-        cacheService.putBidirectional(newCode, normalizedUrl);
+    private void associate(String userIdLower, String code) {
+        long start = System.nanoTime();
+        try {
+            boolean added = shardRouter.onShardFor(userIdLower, () -> {
+                if (userUrlRepository.existsByUserIdLowerAndCode(userIdLower, code)) {
+                    return false;
+                }
+                UserUrl userUrl = new UserUrl();
+                userUrl.setUserIdLower(userIdLower);
+                userUrl.setCode(code);
+                userUrlRepository.save(userUrl);
+                return true;
+            });
+            if (added) {
+                userUrlVersions.bump(userIdLower);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Another request for the same user and URL associated it first
+            log.debug("Association {} -> {} already exists", userIdLower, code);
+        }
+        TinyUrlMetrics.record(metrics.saveAssociation, start);
+    }
 
-        log.info("Created new short URL: {} -> {}", newCode, normalizedUrl);
-        return new CreateUrlResult(newCode, buildShortUrl(newCode), normalizedUrl,
-            newUrl.getCreatedAt(), false);
+    private void cacheStore(String code, String normalizedUrl, String urlHash) {
+        long start = System.nanoTime();
+        cacheService.putBidirectional(code, normalizedUrl, urlHash);
+        TinyUrlMetrics.record(metrics.cacheStore, start);
     }
 
     public Optional<String> getUrlByCode(String code) {
@@ -88,46 +256,182 @@ public class TinyUrlService {
             return Optional.empty();
         }
 
+        if (!codeExistenceFilter.mightExist(normalizedCode)) {
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
         CacheService.CacheResult urlCacheResult = cacheService.getUrlByCode(normalizedCode);
+        TinyUrlMetrics.record(metrics.cacheLookup, start);
         if (urlCacheResult.value != null) {
             return Optional.of(urlCacheResult.value);
         }
 
-        Optional<Url> url = urlRepository.findById(normalizedCode);
+        return redirectLoadCoalescer.load(normalizedCode, () -> loadUrlByCode(normalizedCode));
+    }
+
+    private Optional<String> loadUrlByCode(String normalizedCode) {
+        long start = System.nanoTime();
+        Optional<Url> url = urlStore.findById(normalizedCode);
+        if (url.isEmpty()) {
+            // A replica may not have the row yet; never negative-cache a code it is just lagging on
+            url = ReplicaRoutingDataSource.onPrimary(() -> urlStore.findById(normalizedCode));
+        }
+        TinyUrlMetrics.record(metrics.findById, start);
         if (url.isPresent()) {
             String normalizedUrl = url.get().getNormalizedUrl();
-            cacheService.putBidirectional(normalizedCode, normalizedUrl);
+            codeExistenceFilter.recordFound(normalizedCode);
+            cacheStore(normalizedCode, normalizedUrl, url.get().getUrlHash());
             return Optional.of(normalizedUrl);
         }
 
+        codeExistenceFilter.recordMissing(normalizedCode);
         return Optional.empty();
     }
 
-    public List<UserUrl> getUserUrls(String userId) {
+    /**
+     * With sharding the page of associations comes from the user's shard and the URLs from the
+     * shards that own their codes, so the join is done here rather than in SQL.
+     */
+    public UserUrlPage getUserUrlPage(String userId, String cursor, int limit) {
+        String userIdLower = userId.toLowerCase();
+        UserUrlCursor after = cursor == null || cursor.isEmpty() ? null : UserUrlCursor.decode(cursor);
+        if (shardRouter.isSharded()) {
+            return getShardedUserUrlPage(userIdLower, after, limit);
+        }
+        // One extra row tells us whether another page exists without a COUNT query
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<UserUrlSummary> rows;
+        if (after == null) {
+            rows = userUrlRepository.findFirstPage(userIdLower, pageable);
+        } else {
+            rows = userUrlRepository.findPageAfter(userIdLower, after.createdAt, after.code, pageable);
+        }
+
+        if (rows.size() <= limit) {
+            return new UserUrlPage(rows, null);
+        }
+        List<UserUrlSummary> items = rows.subList(0, limit);
+        UserUrlSummary last = items.get(limit - 1);
+        return new UserUrlPage(items, new UserUrlCursor(last.getCreatedAt(), last.getCode()).encode());
+    }
+
+    private UserUrlPage getShardedUserUrlPage(String userIdLower, UserUrlCursor after, int limit) {
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<UserUrl> associations = shardRouter.onShardFor(userIdLower, () -> after == null
+            ? userUrlRepository.findFirstAssociations(userIdLower, pageable)
+            : userUrlRepository.findAssociationsAfter(userIdLower, after.createdAt, after.code, pageable));
+
+        boolean more = associations.size() > limit;
+        if (more) {
+            associations = associations.subList(0, limit);
+        }
+        List<String> codes = new ArrayList<>(associations.size());
+        for (UserUrl association : associations) {
+            codes.add(association.getCode());
+        }
+        Map<String, String> urls = shardRouter.collectByKey(codes, shardCodes -> {
+            Map<String, String> found = new HashMap<>();
+            for (Url url : urlRepository.findAllById(shardCodes)) {
+                found.put(url.getCode(), url.getNormalizedUrl());
+            }
+            return found;
+        });
+
+        List<UserUrlSummary> items = new ArrayList<>(associations.size());
+        for (UserUrl association : associations) {
+            String url = urls.get(association.getCode());
+            if (url != null) {
+                items.add(new UserUrlSummary(association.getCode(), url, association.getCreatedAt()));
+            }
+        }
+        if (!more) {
+            return new UserUrlPage(items, null);
+        }
+        UserUrl last = associations.get(limit - 1);
+        return new UserUrlPage(items, new UserUrlCursor(last.getCreatedAt(), last.getCode()).encode());
+    }
+
+    // Rows are handed to the consumer as they arrive from MySQL; nothing is collected in memory
+    public long streamUserUrls(String userId, Consumer<UserUrlSummary> consumer) {
+        if (shardRouter.isSharded()) {
+            return streamShardedUserUrls(userId, consumer);
+        }
         String userIdLower = userId.toLowerCase();
-        return userUrlRepository.findByUserIdLowerOrderByCreatedAtDesc(userIdLower);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> {
+            long count = 0;
+            try (Stream<UserUrlSummary> rows = userUrlRepository.streamByUserIdLower(userIdLower)) {
+                Iterator<UserUrlSummary> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    consumer.accept(iterator.next());
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    // No cross-shard stream to hold open, so the export walks the same keyset pages as the list
+    private long streamShardedUserUrls(String userId, Consumer<UserUrlSummary> consumer) {
+        long count = 0;
+        String cursor = null;
+        do {
+            UserUrlPage page = getUserUrlPage(userId, cursor, SHARDED_EXPORT_PAGE);
+            for (UserUrlSummary item : page.items) {
+                consumer.accept(item);
+                count++;
+            }
+            cursor = page.nextCursor;
+        } while (cursor != null);
+        return count;
+    }
+
+    public boolean isAssociated(String userId, String code) {
+        String userIdLower = userId.toLowerCase();
+        String normalizedCode = urlService.normalizeShortCode(code);
+        return shardRouter.existsOnShardFor(userIdLower, () ->
+            userUrlRepository.existsByUserIdLowerAndCode(userIdLower, normalizedCode));
     }
 
-    @Transactional
     public boolean deleteUserUrlAssociation(String userId, String code) {
         String userIdLower = userId.toLowerCase();
         String normalizedCode = urlService.normalizeShortCode(code);
 
-        if (userUrlRepository.existsByUserIdLowerAndCode(userIdLower, normalizedCode)) {
-            userUrlRepository.deleteByUserIdLowerAndCode(userIdLower, normalizedCode);
-            return true;
+        boolean[] deleted = new boolean[1];
+        shardRouter.onEveryShardFor(userIdLower, () -> {
+            Boolean removed = transactionTemplate.execute(status -> {
+                if (userUrlRepository.existsByUserIdLowerAndCode(userIdLower, normalizedCode)) {
+                    userUrlRepository.deleteByUserIdLowerAndCode(userIdLower, normalizedCode);
+                    return true;
+                }
+                return false;
+            });
+            deleted[0] |= Boolean.TRUE.equals(removed);
+        });
+        if (deleted[0]) {
+            userUrlVersions.bump(userIdLower);
         }
-        return false;
+        return deleted[0];
     }
 
     private String generateUniqueCode() {
         for (int attempt = 0; attempt < MAX_COLLISION_RETRIES; attempt++) {
-            String code = urlService.generateShortCode();
+            String code = codeAllocator.nextCode();
 
+            // Allocated codes never repeat; only codes issued before the allocator can collide
+            if (codeExistenceFilter.definitelyAbsent(code)) {
+                return code;
+            }
             try {
-                if (!urlRepository.existsByCode(code)) {
+                long start = System.nanoTime();
+                boolean taken = urlStore.existsByCode(code);
+                TinyUrlMetrics.record(metrics.existsByCode, start);
+                if (!taken) {
                     return code;
                 }
+                metrics.collisionRetries.increment();
                 log.debug("Code collision detected for: {}, attempt: {}", code, attempt + 1);
             } catch (Exception e) {
                 log.warn("Error checking code existence: {}, attempt: {}", code, attempt + 1, e);
@@ -140,6 +444,28 @@ public class TinyUrlService {
         return baseUrl + "/" + code;
     }
 
+    public static class ResolvedUrl {
+        public final String code;
+        public final LocalDateTime createdAt;
+        public final boolean existed;
+
+        public ResolvedUrl(String code, LocalDateTime createdAt, boolean existed) {
+            this.code = code;
+            this.createdAt = createdAt;
+            this.existed = existed;
+        }
+    }
+
+    public static class UserUrlPage {
+        public final List<UserUrlSummary> items;
+        public final String nextCursor;
+
+        public UserUrlPage(List<UserUrlSummary> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+    }
+
     public static class CreateUrlResult {
         public final String code;
         public final String shortUrl;
@@ -0,0 +1,18 @@
+package com.amtinyurl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-flight for creates, keyed by URL hash: concurrent creates of the same normalized URL
+ * on this node share one find-or-insert of the {@code urls} row, and each caller then adds
+ * only its own user association.
+ */
+@Component
+public class UrlCreateCoalescer extends SingleFlight<TinyUrlService.ResolvedUrl> {
+
+    public UrlCreateCoalescer(@Value("${app.create.single-flight.enabled:true}") boolean enabled,
+                              @Value("${app.create.single-flight.timeout-ms:5000}") long timeoutMillis) {
+        super(enabled, timeoutMillis);
+    }
+}
@@ -5,18 +5,160 @@ import org.springframework.stereotype.Service;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.SecureRandom;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
 
 @Service
 @Slf4j
 public class UrlService {
 
     private static final int MAX_URL_LENGTH = 2048;
-    private static final String BASE36_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
-    private static final int CODE_LENGTH = 7;
-    private static final SecureRandom random = new SecureRandom();
+    private static final String HTTPS_PREFIX = "https://";
+    private static final String HTTP_PREFIX = "http://";
+    private static final int HTTPS_DEFAULT_PORT = 443;
+    private static final String BLOCKED_HOST = "amtinyurl.com";
 
     public String normalizeUrl(String urlString) {
+        if (urlString == null) {
+            throw new IllegalArgumentException("URL cannot be null or empty");
+        }
+
+        // Same bounds as String.trim(), without the copy
+        int start = 0;
+        int end = urlString.length();
+        while (start < end && urlString.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && urlString.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new IllegalArgumentException("URL cannot be null or empty");
+        }
+
+        boolean prefixed = false;
+        if (!urlString.startsWith(HTTPS_PREFIX, start)) {
+            if (urlString.startsWith(HTTP_PREFIX, start)) {
+                throw new IllegalArgumentException("Only HTTPS URLs are allowed");
+            }
+            prefixed = true;
+        }
+
+        int length = end - start + (prefixed ? HTTPS_PREFIX.length() : 0);
+        if (length > MAX_URL_LENGTH) {
+            throw new IllegalArgumentException("URL length exceeds maximum allowed length of " + MAX_URL_LENGTH);
+        }
+
+        int authorityStart = prefixed ? start : start + HTTPS_PREFIX.length();
+        if (urlString.startsWith("//", authorityStart)) {
+            // "https:////..." is parsed as a UNC name; let the URL parser handle that oddity
+            return normalizeUrlWithParser(urlString);
+        }
+        int fragmentStart = indexOf(urlString, '#', authorityStart, end);
+        int beforeFragment = fragmentStart < 0 ? end : fragmentStart;
+        int queryStart = indexOf(urlString, '?', authorityStart, beforeFragment);
+        int pathLimit = queryStart < 0 ? beforeFragment : queryStart;
+        int authorityEnd = indexOf(urlString, '/', authorityStart, pathLimit);
+        if (authorityEnd < 0) {
+            authorityEnd = pathLimit;
+        }
+
+        int hostEnd = authorityEnd;
+        boolean hostHasUpperCase = false;
+        for (int i = authorityStart; i < authorityEnd; i++) {
+            char c = urlString.charAt(i);
+            if (c == ':') {
+                hostEnd = i;
+                break;
+            }
+            if (!isPlainHostChar(c)) {
+                // User info, IPv6 literals, IDN hosts and anything else outside [A-Za-z0-9.-] are rare,
+                // and which of them java.net.URL rejects varies by JDK; leave them to the URL parser
+                return normalizeUrlWithParser(urlString);
+            }
+            hostHasUpperCase |= c >= 'A' && c <= 'Z';
+        }
+        for (int i = hostEnd; i < authorityEnd; i++) {
+            if (urlString.charAt(i) == '@') {
+                return normalizeUrlWithParser(urlString);
+            }
+        }
+
+        int port = -1;
+        if (hostEnd + 1 < authorityEnd) {
+            try {
+                port = Integer.parseInt(urlString, hostEnd + 1, authorityEnd, 10);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid URL format: " + e.getMessage());
+            }
+            if (port < -1) {
+                throw new IllegalArgumentException("Invalid URL format: Invalid port number :" + port);
+            }
+        }
+
+        if (containsIgnoreCase(urlString, authorityStart, hostEnd, BLOCKED_HOST)) {
+            throw new IllegalArgumentException("URLs pointing to amtinyurl.com are not allowed to prevent loops");
+        }
+
+        boolean keepPort = port != -1 && port != HTTPS_DEFAULT_PORT;
+        boolean keepQuery = queryStart >= 0 && queryStart + 1 < beforeFragment;
+        boolean keepFragment = fragmentStart >= 0 && fragmentStart + 1 < end;
+
+        boolean portUnchanged = hostEnd == authorityEnd
+            || (keepPort && urlString.charAt(hostEnd + 1) >= '1' && urlString.charAt(hostEnd + 1) <= '9');
+        boolean queryUnchanged = queryStart < 0 || keepQuery;
+        boolean fragmentUnchanged = fragmentStart < 0 || keepFragment;
+        if (!prefixed && start == 0 && end == urlString.length() && !hostHasUpperCase
+                && portUnchanged && queryUnchanged && fragmentUnchanged) {
+            return urlString;
+        }
+
+        StringBuilder normalized = new StringBuilder(length);
+        normalized.append(HTTPS_PREFIX);
+        for (int i = authorityStart; i < hostEnd; i++) {
+            char c = urlString.charAt(i);
+            normalized.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (keepPort) {
+            normalized.append(':').append(port);
+        }
+        normalized.append(urlString, authorityEnd, pathLimit);
+        if (keepQuery) {
+            normalized.append(urlString, queryStart, beforeFragment);
+        }
+        if (keepFragment) {
+            normalized.append(urlString, fragmentStart, end);
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isPlainHostChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-';
+    }
+
+    private static int indexOf(String s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsIgnoreCase(String s, int from, int to, String needle) {
+        for (int i = from; i + needle.length() <= to; i++) {
+            if (s.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reference implementation on java.net.URL; normalizeUrl must produce identical results
+    String normalizeUrlWithParser(String urlString) {
         if (urlString == null || urlString.trim().isEmpty()) {
             throw new IllegalArgumentException("URL cannot be null or empty");
         }
@@ -74,29 +216,22 @@ public class UrlService {
         }
     }
 
-    public String generateShortCode() {
-        StringBuilder code = new StringBuilder(CODE_LENGTH);
-        for (int i = 0; i < CODE_LENGTH; i++) {
-            code.append(BASE36_CHARS.charAt(random.nextInt(BASE36_CHARS.length())));
+    // Same digest MySQL stores in urls.url_hash (SHA2 over the utf8mb4 bytes, lowercase hex)
+    public String hashUrl(String normalizedUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalizedUrl.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        return code.toString();
     }
 
     public boolean isValidShortCode(String code) {
-        if (code == null || code.length() != CODE_LENGTH) {
-            return false;
-        }
-
-        for (char c : code.toCharArray()) {
-            if (BASE36_CHARS.indexOf(Character.toLowerCase(c)) == -1) {
-                return false;
-            }
-        }
-
-        return true;
+        return ShortCodeCodec.parse(code) != ShortCodeCodec.INVALID;
     }
 
+    // toLowerCase hands back the same instance when there is nothing to change, the common case
     public String normalizeShortCode(String code) {
-        return code == null ? null : code.toLowerCase();
+        return code == null ? null : code.toLowerCase(Locale.ROOT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.amtinyurl.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a user's newest-first link list: the {@code (created_at, code)} of the last row
+ * returned. Encoded as URL-safe base64 so clients treat it as opaque.
+ */
+public class UserUrlCursor {
+
+    private static final char SEPARATOR = '|';
+
+    public final LocalDateTime createdAt;
+    public final String code;
+
+    public UserUrlCursor(LocalDateTime createdAt, String code) {
+        this.createdAt = createdAt;
+        this.code = code;
+    }
+
+    public String encode() {
+        String raw = createdAt.toString() + SEPARATOR + code;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserUrlCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new UserUrlCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user version of the URL list, kept in Redis so every node agrees on it. Anything that adds
+ * or removes one of a user's associations {@link #bump}s it after commit; the list endpoints use it
+ * as their ETag and answer a matching {@code If-None-Match} with 304 before touching MySQL.
+ *
+ * <p>A missing version starts from a random value rather than zero, so a key lost to eviction or
+ * expiry never comes back as a number an old ETag already carries, and a bump never recreates a
+ * missing key. Versions expire {@code app.urls.etag.version-ttl-seconds} after they were created.
+ * When Redis is unavailable there is no version and the lists are served in full.
+ *
+ * <p>A bump that fails leaves a version every node would still match, so the user is marked stale
+ * here: this node stops answering with a tag for them, and once Redis takes requests again their key
+ * is deleted so that every node starts them on a fresh random version.
+ */
+@Service
+@Slf4j
+public class UserUrlVersions {
+
+    private static final String KEY_PREFIX = "user-urls:version:";
+    // INCR on a missing key would restart the version at 1
+    private static final RedisScript<Long> BUMP_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 1 then return redis.call('incr', KEYS[1]) end return 0", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final boolean enabled;
+    private final Duration ttl;
+    // Users whose last bump did not reach Redis
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder bumps = new LongAdder();
+    private final LongAdder bumpFailures = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+
+    public UserUrlVersions(RedisTemplate<String, String> redisTemplate,
+                           RedisCircuitBreaker circuitBreaker,
+                           @Value("${app.urls.etag.enabled:true}") boolean enabled,
+                           @Value("${app.urls.etag.version-ttl-seconds:3600}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.circuitBreaker = circuitBreaker;
+        this.enabled = enabled;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    /** The user's current list version, or null when conditional requests cannot be answered. */
+    public String current(String userIdLower) {
+        if (!enabled) {
+            return null;
+        }
+        reads.increment();
+        if (stale.contains(userIdLower) || !circuitBreaker.allowRequest()) {
+            unavailable.increment();
+            return null;
+        }
+        String key = KEY_PREFIX + userIdLower;
+        try {
+            String version = redisTemplate.opsForValue().get(key);
+            if (version == null) {
+                String initial = Long.toString(ThreadLocalRandom.current().nextLong(1L << 32, Long.MAX_VALUE >> 1));
+                redisTemplate.opsForValue().setIfAbsent(key, initial, ttl);
+                version = redisTemplate.opsForValue().get(key);
+            }
+            circuitBreaker.recordSuccess();
+            return version;
+        } catch (Exception e) {
+            unavailable.increment();
+            circuitBreaker.recordFailure(e);
+            log.debug("Failed to read url list version for {}", userIdLower, e);
+            return null;
+        }
+    }
+
+    /** Moves the user's version on, once the surrounding transaction (if any) has committed. */
+    public void bump(String userIdLower) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(userIdLower);
+                }
+            });
+            return;
+        }
+        increment(userIdLower);
+    }
+
+    private void increment(String userIdLower) {
+        bumps.increment();
+        if (!circuitBreaker.allowRequest()) {
+            bumpFailures.increment();
+            stale.add(userIdLower);
+            log.debug("Redis unavailable, url list version for {} not bumped", userIdLower);
+            return;
+        }
+        try {
+            redisTemplate.execute(BUMP_SCRIPT, List.of(KEY_PREFIX + userIdLower));
+            circuitBreaker.recordSuccess();
+        } catch (Exception e) {
+            bumpFailures.increment();
+            stale.add(userIdLower);
+            circuitBreaker.recordFailure(e);
+            log.debug("Failed to bump url list version for {}", userIdLower, e);
+        }
+    }
+
+    /** Drops the versions that missed a bump, so no node can match an ETag issued before it. */
+    @Scheduled(fixedDelayString = "${app.urls.etag.repair-interval-ms:1000}")
+    public void repairStale() {
+        for (String userIdLower : stale) {
+            if (!circuitBreaker.allowRequest()) {
+                return;
+            }
+            // Removed first so a bump failing meanwhile marks the user again
+            stale.remove(userIdLower);
+            try {
+                redisTemplate.delete(KEY_PREFIX + userIdLower);
+                circuitBreaker.recordSuccess();
+                repaired.increment();
+            } catch (Exception e) {
+                stale.add(userIdLower);
+                circuitBreaker.recordFailure(e);
+                log.debug("Failed to reset url list version for {}", userIdLower, e);
+                return;
+            }
+        }
+    }
+
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("reads", reads.sum());
+        stats.put("unavailable", unavailable.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("bumps", bumps.sum());
+        stats.put("bumpFailures", bumpFailures.sum());
+        stats.put("staleUsers", stale.size());
+        stats.put("repaired", repaired.sum());
+        return stats;
+    }
+}
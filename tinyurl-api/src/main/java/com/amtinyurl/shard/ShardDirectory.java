@@ -0,0 +1,71 @@
+package com.amtinyurl.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The authoritative bucket-to-shard assignment, kept in {@code shard_buckets} on the directory
+ * shard. Nodes poll it into a {@link ShardMap}; only the rebalancer writes it.
+ */
+public class ShardDirectory {
+
+    private static final String SELECT_SQL = "SELECT bucket, owner_shard, peer_shard FROM shard_buckets";
+    private static final String INSERT_SQL =
+        "INSERT IGNORE INTO shard_buckets (bucket, owner_shard, peer_shard) VALUES (?, ?, NULL)";
+    private static final String ASSIGN_SQL =
+        "UPDATE shard_buckets SET owner_shard = ?, peer_shard = ? WHERE bucket = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardDirectory(DataSource directoryDataSource) {
+        this.jdbcTemplate = new JdbcTemplate(directoryDataSource);
+    }
+
+    /**
+     * Writes the initial map on first start: every bucket on the directory shard, which is where
+     * an unsharded deployment's rows already live. Spreading them out is the rebalancer's job.
+     */
+    public void initializeIfEmpty(String directoryShard) {
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM shard_buckets", Integer.class);
+        if (rows != null && rows == ShardMap.BUCKETS) {
+            return;
+        }
+        if (rows != null && rows > ShardMap.BUCKETS) {
+            throw new IllegalStateException("shard_buckets has " + rows + " rows, expected " + ShardMap.BUCKETS);
+        }
+        List<Object[]> buckets = new ArrayList<>(ShardMap.BUCKETS);
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            buckets.add(new Object[]{bucket, directoryShard});
+        }
+        // IGNORE lets several nodes starting at once race harmlessly
+        jdbcTemplate.batchUpdate(INSERT_SQL, buckets);
+    }
+
+    public ShardMap load() {
+        String[] owners = new String[ShardMap.BUCKETS];
+        String[] peers = new String[ShardMap.BUCKETS];
+        int[] loaded = new int[1];
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            int bucket = rs.getInt("bucket");
+            owners[bucket] = rs.getString("owner_shard");
+            peers[bucket] = rs.getString("peer_shard");
+            loaded[0]++;
+        });
+        if (loaded[0] != ShardMap.BUCKETS) {
+            throw new IllegalStateException("shard_buckets has " + loaded[0] + " rows, expected " + ShardMap.BUCKETS);
+        }
+        return new ShardMap(owners, peers);
+    }
+
+    public void assign(Collection<Integer> buckets, String owner, String peer) {
+        List<Object[]> rows = new ArrayList<>(buckets.size());
+        for (int bucket : buckets) {
+            rows.add(new Object[]{owner, peer, bucket});
+        }
+        jdbcTemplate.batchUpdate(ASSIGN_SQL, rows);
+    }
+}
@@ -0,0 +1,79 @@
+package com.amtinyurl.shard;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of which shard owns each of the {@link #BUCKETS} hash buckets. Every routed key (a short
+ * code, a URL hash or a lowercased user id) hashes to one bucket, so moving a bucket moves the rows
+ * of all three kinds together. While a bucket is being moved it also has a peer: the other shard
+ * that holds some of its rows, which reads fall back to and deletes are applied on.
+ */
+public final class ShardMap {
+
+    // Fixed for the life of the data; changing it would re-home every row
+    public static final int BUCKETS = 1024;
+
+    private final String[] owners;
+    private final String[] peers;
+
+    public ShardMap(String[] owners, String[] peers) {
+        if (owners.length != BUCKETS || peers.length != BUCKETS) {
+            throw new IllegalArgumentException("Shard map must cover " + BUCKETS + " buckets");
+        }
+        this.owners = owners;
+        this.peers = peers;
+    }
+
+    public static ShardMap allOn(String shard) {
+        String[] owners = new String[BUCKETS];
+        Arrays.fill(owners, shard);
+        return new ShardMap(owners, new String[BUCKETS]);
+    }
+
+    // String.hashCode is specified, so every node and the rebalancer agree on the bucket
+    public static int bucketOf(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (BUCKETS - 1);
+    }
+
+    public String owner(int bucket) {
+        return owners[bucket];
+    }
+
+    public String peer(int bucket) {
+        return peers[bucket];
+    }
+
+    public String ownerOf(String key) {
+        return owners[bucketOf(key)];
+    }
+
+    public String peerOf(String key) {
+        return peers[bucketOf(key)];
+    }
+
+    public int movingBuckets() {
+        int moving = 0;
+        for (String peer : peers) {
+            if (peer != null) {
+                moving++;
+            }
+        }
+        return moving;
+    }
+
+    public Map<String, Integer> bucketsPerShard() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String owner : owners) {
+            counts.merge(owner, 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,372 @@
+package com.amtinyurl.shard;
+
+import com.amtinyurl.service.ClickTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Moves buckets between shards while every node keeps serving. A move of some buckets from
+ * shard A to shard B goes through the directory in three steps, waiting after each for all nodes
+ * to pick up the new map:
+ * <ol>
+ *   <li>A owns, B is peer: rows are copied A to B; deletes already reach both copies.</li>
+ *   <li>B owns, A is peer: new writes land on B, reads that miss on B fall back to A; the copy
+ *       runs again for rows written to A before every node switched, and click counts are merged.</li>
+ *   <li>B owns alone: the buckets' rows are purged from A.</li>
+ * </ol>
+ * Copies are idempotent, so a run that dies part way is finished by {@link #settle}, which
+ * completes every bucket that still has a peer towards its current owner. A {@code urls} row whose
+ * URL already has another code on B cannot be copied; its bucket keeps A as peer, so the code
+ * still resolves there, until the duplicate is resolved and a later settle finishes the bucket.
+ */
+@Slf4j
+public class ShardRebalancer {
+
+    private static final List<Table> COPIED_TABLES = List.of(
+        new Table("urls", "code",
+            "SELECT code, normalized_url, created_at FROM urls WHERE code > ? ORDER BY code LIMIT ?",
+            "INSERT IGNORE INTO urls (code, normalized_url, created_at) VALUES (?, ?, ?)",
+            "DELETE FROM urls WHERE code = ?",
+            row -> new Object[]{row.get("code")},
+            row -> new Object[]{row.get("code")},
+            row -> new Object[]{row.get("code"), row.get("normalized_url"), row.get("created_at")},
+            new Object[]{""}),
+        new Table("url_hash_index", "url_hash",
+            "SELECT url_hash, code FROM url_hash_index WHERE url_hash > ? ORDER BY url_hash LIMIT ?",
+            "INSERT IGNORE INTO url_hash_index (url_hash, code) VALUES (?, ?)",
+            "DELETE FROM url_hash_index WHERE url_hash = ?",
+            row -> new Object[]{row.get("url_hash")},
+            row -> new Object[]{row.get("url_hash")},
+            row -> new Object[]{row.get("url_hash"), row.get("code")},
+            new Object[]{""}),
+        new Table("user_urls", "user_id_lower",
+            "SELECT user_id_lower, code, created_at FROM user_urls " +
+            "WHERE user_id_lower > ? OR (user_id_lower = ? AND code > ?) ORDER BY user_id_lower, code LIMIT ?",
+            "INSERT IGNORE INTO user_urls (user_id_lower, code, created_at) VALUES (?, ?, ?)",
+            "DELETE FROM user_urls WHERE user_id_lower = ? AND code = ?",
+            row -> new Object[]{row.get("user_id_lower"), row.get("user_id_lower"), row.get("code")},
+            row -> new Object[]{row.get("user_id_lower"), row.get("code")},
+            row -> new Object[]{row.get("user_id_lower"), row.get("code"), row.get("created_at")},
+            new Object[]{"", "", ""}));
+
+    private static final Table CLICKS = new Table("url_clicks", "code",
+        "SELECT code, click_count, last_accessed_at FROM url_clicks WHERE code > ? ORDER BY code LIMIT ?",
+        ClickTracker.UPSERT_SQL,
+        "DELETE FROM url_clicks WHERE code = ?",
+        row -> new Object[]{row.get("code")},
+        row -> new Object[]{row.get("code")},
+        row -> new Object[]{row.get("code"), row.get("click_count"), row.get("last_accessed_at")},
+        new Object[]{""});
+
+    private final ShardRoutingDataSource routing;
+    private final ShardDirectory directory;
+    private final long propagationMillis;
+    private final int batchSize;
+    private final int bucketsPerStep;
+    private final boolean purge;
+
+    public ShardRebalancer(ShardRoutingDataSource routing, ShardDirectory directory, long propagationMillis,
+                           int batchSize, int bucketsPerStep, boolean purge) {
+        this.routing = routing;
+        this.directory = directory;
+        this.propagationMillis = propagationMillis;
+        this.batchSize = batchSize;
+        this.bucketsPerStep = bucketsPerStep;
+        this.purge = purge;
+    }
+
+    /** Evens out bucket ownership over every configured shard, moving as few buckets as possible. */
+    public int spread() {
+        settle();
+        ShardMap map = directory.load();
+        List<String> shards = new ArrayList<>(routing.getShards().keySet());
+        Map<String, List<Integer>> owned = new LinkedHashMap<>();
+        for (String shard : shards) {
+            owned.put(shard, new ArrayList<>());
+        }
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            owned.computeIfAbsent(map.owner(bucket), shard -> new ArrayList<>()).add(bucket);
+        }
+
+        Map<String, Integer> target = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            target.put(shards.get(i), ShardMap.BUCKETS / shards.size() + (i < ShardMap.BUCKETS % shards.size() ? 1 : 0));
+        }
+        // Buckets on shards no longer configured have a target of zero and are all handed out
+        List<Integer> surplus = new ArrayList<>();
+        Map<Integer, String> sourceOf = new HashMap<>();
+        owned.forEach((shard, buckets) -> {
+            int keep = target.getOrDefault(shard, 0);
+            for (int bucket : buckets.subList(Math.min(keep, buckets.size()), buckets.size())) {
+                surplus.add(bucket);
+                sourceOf.put(bucket, shard);
+            }
+        });
+
+        Map<String, Map<String, List<Integer>>> moves = new LinkedHashMap<>();
+        int next = 0;
+        for (String shard : shards) {
+            for (int missing = target.get(shard) - owned.get(shard).size(); missing > 0; missing--) {
+                int bucket = surplus.get(next++);
+                moves.computeIfAbsent(sourceOf.get(bucket), source -> new LinkedHashMap<>())
+                    .computeIfAbsent(shard, destination -> new ArrayList<>())
+                    .add(bucket);
+            }
+        }
+
+        int moved = 0;
+        for (Map.Entry<String, Map<String, List<Integer>>> bySource : moves.entrySet()) {
+            for (Map.Entry<String, List<Integer>> byTarget : bySource.getValue().entrySet()) {
+                List<Integer> buckets = byTarget.getValue();
+                for (int from = 0; from < buckets.size(); from += bucketsPerStep) {
+                    List<Integer> step = buckets.subList(from, Math.min(buckets.size(), from + bucketsPerStep));
+                    move(bySource.getKey(), byTarget.getKey(), step);
+                    moved += step.size();
+                }
+            }
+        }
+        log.info("Rebalance complete: {} buckets moved, now {}", moved, directory.load().bucketsPerShard());
+        return moved;
+    }
+
+    public void move(String source, String target, List<Integer> buckets) {
+        Set<Integer> moving = new TreeSet<>(buckets);
+        log.info("Moving {} buckets {} -> {}", moving.size(), source, target);
+
+        directory.assign(moving, source, target);
+        awaitPropagation();
+        copy(source, target, moving);
+
+        directory.assign(moving, target, source);
+        awaitPropagation();
+        Set<String> kept = copy(source, target, moving);
+        mergeClicks(source, target, moving, kept);
+
+        release(source, target, moving, kept);
+    }
+
+    /** Completes any move left half-done by an interrupted run. */
+    public void settle() {
+        ShardMap map = directory.load();
+        Map<String, Map<String, Set<Integer>>> unfinished = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            String peer = map.peer(bucket);
+            if (peer != null) {
+                unfinished.computeIfAbsent(peer, shard -> new LinkedHashMap<>())
+                    .computeIfAbsent(map.owner(bucket), shard -> new TreeSet<>())
+                    .add(bucket);
+            }
+        }
+        unfinished.forEach((peer, byOwner) -> byOwner.forEach((owner, buckets) -> {
+            log.info("Settling {} buckets left between {} and {}", buckets.size(), peer, owner);
+            Set<String> kept = copy(peer, owner, buckets);
+            mergeClicks(peer, owner, buckets, kept);
+            release(peer, owner, buckets, kept);
+        }));
+    }
+
+    /**
+     * Fills {@code url_hash_index} from the {@code urls} rows on every shard. Run once when turning
+     * sharding on over an existing database, before the new shards take traffic.
+     */
+    public long backfillHashIndex() {
+        ShardMap map = directory.load();
+        long indexed = 0;
+        for (Map.Entry<String, JdbcTemplate> shard : templates().entrySet()) {
+            Object[] cursor = {""};
+            while (true) {
+                List<Map<String, Object>> rows = shard.getValue().queryForList(
+                    "SELECT code, url_hash FROM urls WHERE code > ? ORDER BY code LIMIT ?", cursor[0], batchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                Map<String, List<Object[]>> byOwner = new LinkedHashMap<>();
+                for (Map<String, Object> row : rows) {
+                    String urlHash = (String) row.get("url_hash");
+                    byOwner.computeIfAbsent(map.ownerOf(urlHash), owner -> new ArrayList<>())
+                        .add(new Object[]{urlHash, row.get("code")});
+                }
+                byOwner.forEach((owner, entries) -> template(owner).batchUpdate(
+                    "INSERT IGNORE INTO url_hash_index (url_hash, code) VALUES (?, ?)", entries));
+                indexed += rows.size();
+                cursor[0] = rows.get(rows.size() - 1).get("code");
+            }
+        }
+        log.info("Hash index backfilled from {} urls rows", indexed);
+        return indexed;
+    }
+
+    // Returns the codes that could not be copied and must stay on the source
+    private Set<String> copy(String source, String target, Set<Integer> buckets) {
+        Set<String> kept = new HashSet<>();
+        for (Table table : COPIED_TABLES) {
+            long copied = scan(source, table, buckets, rows -> {
+                template(target).batchUpdate(table.insertSql, values(rows, table.values));
+                if (table.name.equals("urls")) {
+                    kept.addAll(notCopied(target, rows));
+                }
+            });
+            log.debug("Copied {} {} rows {} -> {}", copied, table.name, source, target);
+        }
+        if (!kept.isEmpty()) {
+            // Only possible when two codes for one URL were created across a map switch
+            log.warn("{} urls rows conflict on url_hash at {} and stay on {}: {}", kept.size(), target, source, kept);
+        }
+        return kept;
+    }
+
+    private List<String> notCopied(String target, List<Map<String, Object>> rows) {
+        List<String> codes = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            codes.add((String) row.get("code"));
+        }
+        String placeholders = String.join(",", Collections.nCopies(codes.size(), "?"));
+        Set<String> present = new HashSet<>(template(target).queryForList(
+            "SELECT code FROM urls WHERE code IN (" + placeholders + ")", String.class, codes.toArray()));
+        codes.removeAll(present);
+        return codes;
+    }
+
+    // Click rows are moved rather than copied: each is added to the target and removed from the source.
+    // Kept codes have no urls row on the target for their clicks to reference, so theirs stay put.
+    private void mergeClicks(String source, String target, Set<Integer> buckets, Set<String> kept) {
+        long merged = scan(source, CLICKS, buckets, rows -> {
+            rows.removeIf(row -> kept.contains(row.get("code")));
+            if (rows.isEmpty()) {
+                return;
+            }
+            template(target).batchUpdate(CLICKS.insertSql, values(rows, CLICKS.values));
+            template(source).batchUpdate(CLICKS.deleteSql, values(rows, CLICKS.key));
+        });
+        log.debug("Merged {} click rows {} -> {}", merged, source, target);
+    }
+
+    // Last step: the target owns the buckets alone, except those holding kept codes, which keep the source as peer
+    private void release(String source, String target, Set<Integer> buckets, Set<String> kept) {
+        Set<Integer> held = new TreeSet<>();
+        for (String code : kept) {
+            held.add(ShardMap.bucketOf(code));
+        }
+        Set<Integer> released = new TreeSet<>(buckets);
+        released.removeAll(held);
+        if (!held.isEmpty()) {
+            log.warn("Buckets {} keep {} as peer until their url_hash conflicts at {} are resolved; settle finishes them",
+                held, source, target);
+        }
+        if (released.isEmpty()) {
+            return;
+        }
+        directory.assign(released, target, null);
+        awaitPropagation();
+        purge(source, target, released);
+    }
+
+    private void purge(String source, String target, Set<Integer> buckets) {
+        if (!purge) {
+            return;
+        }
+        // Flushes that were routed before the last switch can still land on the source
+        mergeClicks(source, target, buckets, Set.of());
+        for (int i = COPIED_TABLES.size() - 1; i >= 0; i--) {
+            Table table = COPIED_TABLES.get(i);
+            long purged = scan(source, table, buckets,
+                rows -> template(source).batchUpdate(table.deleteSql, values(rows, table.key)));
+            log.debug("Purged {} {} rows from {}", purged, table.name, source);
+        }
+    }
+
+    // Keyset scan of a whole table, handing over the rows whose routing key falls in the buckets
+    private long scan(String shard, Table table, Set<Integer> buckets, Consumer<List<Map<String, Object>>> batch) {
+        JdbcTemplate jdbc = template(shard);
+        Object[] cursor = table.start;
+        long matched = 0;
+        while (true) {
+            Object[] args = new Object[cursor.length + 1];
+            System.arraycopy(cursor, 0, args, 0, cursor.length);
+            args[cursor.length] = batchSize;
+            List<Map<String, Object>> rows = jdbc.queryForList(table.selectSql, args);
+            if (rows.isEmpty()) {
+                return matched;
+            }
+            cursor = table.cursor.apply(rows.get(rows.size() - 1));
+            List<Map<String, Object>> inBuckets = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                if (buckets.contains(ShardMap.bucketOf((String) row.get(table.bucketColumn)))) {
+                    inBuckets.add(row);
+                }
+            }
+            if (!inBuckets.isEmpty()) {
+                batch.accept(inBuckets);
+                matched += inBuckets.size();
+            }
+        }
+    }
+
+    private static List<Object[]> values(Collection<Map<String, Object>> rows, Function<Map<String, Object>, Object[]> columns) {
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            values.add(columns.apply(row));
+        }
+        return values;
+    }
+
+    private Map<String, JdbcTemplate> templates() {
+        Map<String, JdbcTemplate> templates = new LinkedHashMap<>();
+        for (String shard : routing.getShards().keySet()) {
+            templates.put(shard, template(shard));
+        }
+        return templates;
+    }
+
+    private JdbcTemplate template(String shard) {
+        return new JdbcTemplate(routing.getShards().get(shard));
+    }
+
+    private void awaitPropagation() {
+        try {
+            Thread.sleep(propagationMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for nodes to pick up the shard map", e);
+        }
+    }
+
+    private static final class Table {
+        final String name;
+        final String bucketColumn;
+        final String selectSql;
+        final String insertSql;
+        final String deleteSql;
+        final Function<Map<String, Object>, Object[]> cursor;
+        final Function<Map<String, Object>, Object[]> key;
+        final Function<Map<String, Object>, Object[]> values;
+        final Object[] start;
+
+        Table(String name, String bucketColumn, String selectSql, String insertSql, String deleteSql,
+              Function<Map<String, Object>, Object[]> cursor, Function<Map<String, Object>, Object[]> key,
+              Function<Map<String, Object>, Object[]> values, Object[] start) {
+            this.name = name;
+            this.bucketColumn = bucketColumn;
+            this.selectSql = selectSql;
+            this.insertSql = insertSql;
+            this.deleteSql = deleteSql;
+            this.cursor = cursor;
+            this.key = key;
+            this.values = values;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.amtinyurl.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs repository work on the shard that owns a key: {@code urls} and {@code url_clicks} by short
+ * code, {@code url_hash_index} by URL hash and {@code user_urls} by lowercased user id. Each call
+ * must start outside a transaction, since the shard is chosen when the transaction opens.
+ * Without {@code app.sharding.shards} every method simply runs the work against the one database.
+ * The bucket map is re-read from the directory every {@code app.sharding.map-refresh-ms}; a node
+ * that cannot reach the directory keeps routing with the map it has.
+ */
+@Component
+@Slf4j
+public class ShardRouter {
+
+    static final String SINGLE = "default";
+
+    private final ShardRoutingDataSource routing;
+    private final ShardDirectory directory;
+    private volatile ShardMap map;
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder peerReads = new LongAdder();
+
+    @Autowired
+    public ShardRouter(ObjectProvider<ShardRoutingDataSource> routing, ObjectProvider<ShardDirectory> directory) {
+        this(routing.getIfAvailable(), directory.getIfAvailable());
+    }
+
+    public ShardRouter(ShardRoutingDataSource routing, ShardDirectory directory) {
+        this.routing = routing;
+        this.directory = directory;
+    }
+
+    public static ShardRouter unsharded() {
+        return new ShardRouter((ShardRoutingDataSource) null, null);
+    }
+
+    public boolean isSharded() {
+        return routing != null;
+    }
+
+    public List<String> shards() {
+        return routing == null ? List.of(SINGLE) : new ArrayList<>(routing.getShards().keySet());
+    }
+
+    public <T> T onShard(String shard, Supplier<T> work) {
+        return routing == null ? work.get() : ShardRoutingDataSource.on(shard, work);
+    }
+
+    public <T> T onShardFor(String key, Supplier<T> work) {
+        return routing == null ? work.get() : ShardRoutingDataSource.on(map().ownerOf(key), work);
+    }
+
+    /** Looks on the owning shard and, while the key's bucket is being moved, on its peer too. */
+    public <T> Optional<T> findOnShardFor(String key, Supplier<Optional<T>> lookup) {
+        if (routing == null) {
+            return lookup.get();
+        }
+        ShardMap current = map();
+        int bucket = ShardMap.bucketOf(key);
+        Optional<T> found = ShardRoutingDataSource.on(current.owner(bucket), lookup);
+        String peer = current.peer(bucket);
+        if (found.isPresent() || peer == null) {
+            return found;
+        }
+        peerReads.increment();
+        return ShardRoutingDataSource.on(peer, lookup);
+    }
+
+    public boolean existsOnShardFor(String key, BooleanSupplier check) {
+        return findOnShardFor(key, () -> check.getAsBoolean() ? Optional.of(Boolean.TRUE) : Optional.<Boolean>empty()).isPresent();
+    }
+
+    /** Runs on the owning shard and on the peer of a bucket being moved, so deletes reach both copies. */
+    public void onEveryShardFor(String key, Runnable work) {
+        if (routing == null) {
+            work.run();
+            return;
+        }
+        ShardMap current = map();
+        int bucket = ShardMap.bucketOf(key);
+        ShardRoutingDataSource.on(current.owner(bucket), () -> {
+            work.run();
+            return null;
+        });
+        String peer = current.peer(bucket);
+        if (peer != null) {
+            ShardRoutingDataSource.on(peer, () -> {
+                work.run();
+                return null;
+            });
+        }
+    }
+
+    public <T> Map<String, List<T>> groupByShard(Collection<T> items, Function<T, String> key) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        if (routing == null) {
+            groups.put(SINGLE, new ArrayList<>(items));
+            return groups;
+        }
+        ShardMap current = map();
+        for (T item : items) {
+            groups.computeIfAbsent(current.ownerOf(key.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * Multi-get across shards: {@code lookup} runs once per owning shard with that shard's keys,
+     * then once per peer for keys still missing from buckets being moved.
+     */
+    public <T> Map<String, T> collectByKey(Collection<String> keys, Function<List<String>, Map<String, T>> lookup) {
+        if (routing == null) {
+            return lookup.apply(new ArrayList<>(keys));
+        }
+        ShardMap current = map();
+        Map<String, T> found = new HashMap<>();
+        groupByShard(keys, key -> key).forEach((shard, shardKeys) ->
+            found.putAll(ShardRoutingDataSource.on(shard, () -> lookup.apply(shardKeys))));
+
+        Map<String, List<String>> missingByPeer = new LinkedHashMap<>();
+        for (String key : keys) {
+            String peer = current.peerOf(key);
+            if (peer != null && !found.containsKey(key)) {
+                missingByPeer.computeIfAbsent(peer, shard -> new ArrayList<>()).add(key);
+            }
+        }
+        missingByPeer.forEach((peer, peerKeys) -> {
+            peerReads.add(peerKeys.size());
+            found.putAll(ShardRoutingDataSource.on(peer, () -> lookup.apply(peerKeys)));
+        });
+        return found;
+    }
+
+    public ShardMap map() {
+        ShardMap current = map;
+        if (current == null) {
+            synchronized (this) {
+                if (map == null) {
+                    directory.initializeIfEmpty(routing.getDirectoryShard());
+                    map = directory.load();
+                }
+                current = map;
+            }
+        }
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${app.sharding.map-refresh-ms:5000}")
+    public void refresh() {
+        if (routing == null) {
+            return;
+        }
+        try {
+            if (map == null) {
+                map();
+            } else {
+                map = directory.load();
+            }
+            refreshes.increment();
+        } catch (Exception e) {
+            refreshFailures.increment();
+            log.warn("Failed to refresh shard map, routing with the previous one", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sharded", isSharded());
+        if (routing != null) {
+            ShardMap current = map;
+            stats.put("shards", routing.getShards().size());
+            stats.put("bucketsPerShard", current == null ? Map.of() : current.bucketsPerShard());
+            stats.put("movingBuckets", current == null ? 0 : current.movingBuckets());
+            stats.put("mapRefreshes", refreshes.sum());
+            stats.put("mapRefreshFailures", refreshFailures.sum());
+            stats.put("peerReads", peerReads.sum());
+        }
+        return stats;
+    }
+}
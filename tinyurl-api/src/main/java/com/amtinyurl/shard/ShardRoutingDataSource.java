@@ -0,0 +1,81 @@
+package com.amtinyurl.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections to the shard selected with {@link #on} on the current thread, or to the
+ * directory shard (the first one, which also holds {@code shard_buckets} and {@code code_sequence})
+ * when none is selected. The shard is fixed when a transaction takes its connection, so
+ * {@link #on} refuses to switch shards inside a transaction that is already running.
+ */
+@Slf4j
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final ThreadLocal<String> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final Map<String, DataSource> shards;
+    private final String directoryShard;
+
+    public ShardRoutingDataSource(Map<String, DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.directoryShard = shards.keySet().iterator().next();
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(directoryShard));
+    }
+
+    public static <T> T on(String shard, Supplier<T> work) {
+        String previous = CURRENT_SHARD.get();
+        if (!shard.equals(previous) && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a running transaction");
+        }
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = CURRENT_SHARD.get();
+        return shard != null ? shard : directoryShard;
+    }
+
+    public Map<String, DataSource> getShards() {
+        return shards;
+    }
+
+    public String getDirectoryShard() {
+        return directoryShard;
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, DataSource> shard : shards.entrySet()) {
+            if (shard.getValue() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close pool for {}", shard.getKey(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.amtinyurl.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Only active when {@code app.sharding.shards} lists JDBC URLs. The database in
+ * {@code spring.datasource.url} becomes {@code shard-0}, the directory shard, and the listed ones
+ * {@code shard-1} onwards; all share its credentials and driver, and every shard runs every
+ * Flyway migration. Shards are named by position, so new ones are only ever appended.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.sharding.shards:}'.trim().isEmpty()")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties,
+                                                         @Value("${app.sharding.shards}") List<String> shardUrls,
+                                                         @Value("${app.sharding.maximum-pool-size:10}") int maxPoolSize) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        shards.put("shard-0", pool(properties, properties.getUrl(), "shard-0", maxPoolSize));
+        for (String url : shardUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "shard-" + shards.size();
+            shards.put(name, pool(properties, url.trim(), name, maxPoolSize));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url, String name, int maxPoolSize) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(maxPoolSize);
+        return dataSource;
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardRoutingDataSource shardRoutingDataSource) {
+        return new ShardDirectory(shardRoutingDataSource.getShards().get(shardRoutingDataSource.getDirectoryShard()));
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardRoutingDataSource shardRoutingDataSource) {
+        return flyway -> shardRoutingDataSource.getShards().values().forEach(shard ->
+            Flyway.configure().configuration(flyway.getConfiguration()).dataSource(shard).load().migrate());
+    }
+
+    // Waits long enough for every node to have re-read the directory at least once
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardRoutingDataSource shardRoutingDataSource,
+                                           ShardDirectory shardDirectory,
+                                           @Value("${app.sharding.map-refresh-ms:5000}") long mapRefreshMillis,
+                                           @Value("${app.sharding.rebalance.batch-size:1000}") int batchSize,
+                                           @Value("${app.sharding.rebalance.buckets-per-step:64}") int bucketsPerStep,
+                                           @Value("${app.sharding.rebalance.purge:true}") boolean purge) {
+        return new ShardRebalancer(shardRoutingDataSource, shardDirectory, 2 * mapRefreshMillis + 1000,
+            batchSize, bucketsPerStep, purge);
+    }
+
+    /**
+     * One-off rebalancing process alongside the serving nodes, e.g.
+     * {@code java -jar tinyurl-api.jar --spring.main.web-application-type=none --app.sharding.rebalance.plan=spread}.
+     * Plans: {@code spread}, {@code settle}, {@code backfill-index}. Exits when done.
+     */
+    @Bean
+    @ConditionalOnProperty("app.sharding.rebalance.plan")
+    public ApplicationRunner shardRebalanceRunner(ShardRebalancer shardRebalancer,
+                                                  ConfigurableApplicationContext context,
+                                                  @Value("${app.sharding.rebalance.plan}") String plan) {
+        return args -> {
+            switch (plan) {
+                case "spread" -> shardRebalancer.spread();
+                case "settle" -> shardRebalancer.settle();
+                case "backfill-index" -> shardRebalancer.backfillHashIndex();
+                default -> throw new IllegalArgumentException("Unknown rebalance plan: " + plan);
+            }
+            System.exit(SpringApplication.exit(context, () -> 0));
+        };
+    }
+}
@@ -0,0 +1,713 @@
+package com.amtinyurl.storage;
+
+import com.amtinyurl.entity.Url;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded code→URL store: an append-only log of checksummed records split into memory-mapped
+ * segment files, with two {@link OffHeapLongMap} indexes from code and from URL hash to the newest
+ * record's location.
+ *
+ * <p>Record layout after an 8-byte segment header ({@code "TULG"}, version):
+ * {@code crc32c:int | bodyLength:int | type:byte | codeLength:byte | hashLength:byte |
+ * createdAtMillis:long | code | urlHash | url}, the checksum covering everything after itself.
+ *
+ * <p>Opening the directory replays every segment in order to rebuild the indexes. A record that
+ * fails its checksum at the end of the newest segment is a write torn by a crash: the tail is
+ * zeroed and appends resume there. Writers block until their records are forced to disk, but the
+ * force happens on one thread every {@code fsyncIntervalMillis}, so concurrent writers share a
+ * single {@code msync}; an interval of 0 forces on every write. {@link #compact()} rewrites the live
+ * records of sealed segments that are mostly garbage into the active one, then deletes them.
+ */
+@Slf4j
+public class LogStructuredStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x54554c47;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_FIXED = 11;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int COMPACTION_STEP_BYTES = 256 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.log");
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long fsyncIntervalNanos;
+    private final double compactionGarbageRatio;
+
+    // Guards the segment map, both indexes and the active segment's end
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapLongMap codes;
+    private final OffHeapLongMap hashes;
+    private Segment active;
+    private long appendedBytes;
+
+    // A j.u.c. lock rather than a monitor, so writers on virtual threads unmount while they wait
+    private final ReentrantLock durability = new ReentrantLock();
+    private final Condition durable = durability.newCondition();
+    private long durableBytes;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder fsyncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private long recoveredRecords;
+    private long discardedTailBytes;
+    private int corruptSegments;
+
+    public LogStructuredStore(Path directory, int segmentBytes, long fsyncIntervalMillis,
+                              double compactionGarbageRatio, int expectedEntries,
+                              ThreadFactory threadFactory) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        this.codes = new OffHeapLongMap(expectedEntries);
+        this.hashes = new OffHeapLongMap(expectedEntries);
+
+        Files.createDirectories(directory);
+        recover();
+        if (fsyncIntervalNanos > 0) {
+            this.flusher = threadFactory.newThread(this::flushLoop);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        ids.sort(null);
+
+        for (int i = 0; i < ids.size(); i++) {
+            boolean newest = i == ids.size() - 1;
+            Segment segment = openSegment(ids.get(i), newest);
+            segments.put(segment.id, segment);
+            replay(segment, newest);
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+            segments.put(active.id, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        log.info("Opened log store in {}: {} segments, {} records replayed, {} codes",
+            directory, segments.size(), recoveredRecords, codes.size());
+    }
+
+    private void replay(Segment segment, boolean newest) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = SEGMENT_HEADER;
+        int length;
+        while ((length = validRecordLength(buffer, position)) > 0) {
+            apply(segment, position);
+            position += length;
+            recoveredRecords++;
+        }
+        segment.end = position;
+        if (newest) {
+            // Whatever follows the last good record was never acknowledged; clear it so later appends can't line up with it
+            for (int at = position; at < buffer.capacity(); at++) {
+                if (buffer.get(at) != 0) {
+                    buffer.put(at, (byte) 0);
+                    discardedTailBytes++;
+                }
+            }
+            if (length < 0) {
+                log.warn("Discarded torn write at {}:{}", segment.path.getFileName(), position);
+            }
+        } else if (length < 0) {
+            corruptSegments++;
+            log.error("Checksum failure in sealed segment {} at offset {}; later records in it are lost",
+                segment.path.getFileName(), position);
+        }
+    }
+
+    // Length of the record at position; 0 at the clean end of the data, -1 for a torn or corrupt record
+    private static int validRecordLength(ByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.capacity()) {
+            return 0;
+        }
+        int crc = buffer.getInt(position);
+        int body = buffer.getInt(position + 4);
+        if (crc == 0 && body == 0) {
+            return 0;
+        }
+        if (body < BODY_FIXED || body > buffer.capacity() - position - RECORD_HEADER) {
+            return -1;
+        }
+        int keys = (buffer.get(position + 9) & 0xff) + (buffer.get(position + 10) & 0xff);
+        if (BODY_FIXED + keys > body || checksum(buffer, position, body) != crc) {
+            return -1;
+        }
+        return RECORD_HEADER + body;
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int body) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + 4, 4 + body));
+        return (int) crc.getValue();
+    }
+
+    public Optional<Url> get(String code) {
+        lock.readLock().lock();
+        try {
+            long location = codes.get(codeKey(code));
+            if (location == OffHeapLongMap.ABSENT) {
+                return Optional.empty();
+            }
+            Url url = read(location);
+            return code.equals(url.getCode()) ? Optional.of(url) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The hash index is keyed by 64 bits of the URL hash and every hit is checked against the
+     * record, so a key collision can only turn into a miss, never into the wrong code.
+     */
+    public Optional<Url> findByUrlHash(String urlHash) {
+        lock.readLock().lock();
+        try {
+            long location = hashes.get(hashKey(urlHash));
+            if (location == OffHeapLongMap.ABSENT) {
+                return Optional.empty();
+            }
+            Url url = read(location);
+            return urlHash.equals(url.getUrlHash()) ? Optional.of(url) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String code) {
+        lock.readLock().lock();
+        try {
+            long location = codes.get(codeKey(code));
+            return location != OffHeapLongMap.ABSENT && code.equals(readCode(location));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(Url url) {
+        putAll(List.of(url));
+    }
+
+    /** Returns once every record is on disk; mappings already stored unchanged are skipped. */
+    public void putAll(Collection<Url> urls) {
+        List<byte[]> records = new ArrayList<>(urls.size());
+        for (Url url : urls) {
+            records.add(encode(PUT, url.getCode(), url.getUrlHash(), url.getNormalizedUrl(), url.getCreatedAt()));
+        }
+        long target = 0;
+        lock.writeLock().lock();
+        try {
+            int next = 0;
+            for (Url url : urls) {
+                byte[] record = records.get(next++);
+                long current = codes.get(codeKey(url.getCode()));
+                if (current != OffHeapLongMap.ABSENT && sameMapping(read(current), url)) {
+                    continue;
+                }
+                write(record);
+                target = appendedBytes;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (target > 0) {
+            awaitDurable(target);
+        }
+    }
+
+    public boolean delete(String code) {
+        byte[] tombstone = encode(DELETE, code, "", "", null);
+        long target;
+        lock.writeLock().lock();
+        try {
+            if (codes.get(codeKey(code)) == OffHeapLongMap.ABSENT) {
+                return false;
+            }
+            write(tombstone);
+            target = appendedBytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(target);
+        return true;
+    }
+
+    private static boolean sameMapping(Url stored, Url url) {
+        return stored.getCode().equals(url.getCode())
+            && stored.getNormalizedUrl().equals(url.getNormalizedUrl())
+            && stored.getUrlHash().equals(url.getUrlHash() == null ? "" : url.getUrlHash());
+    }
+
+    // Points the indexes at the record just written or replayed at this position
+    private void apply(Segment segment, int position) {
+        ByteBuffer buffer = segment.buffer;
+        long location = location(segment.id, position);
+        long codeKey = codeKey(readCode(buffer, position));
+        if (buffer.get(position + 8) == PUT) {
+            release(codes.put(codeKey, location));
+            hashes.put(hashKey(readHash(buffer, position)), location);
+            segment.liveBytes += recordLength(buffer, position);
+        } else {
+            release(codes.remove(codeKey));
+        }
+    }
+
+    private void release(long location) {
+        if (location == OffHeapLongMap.ABSENT) {
+            return;
+        }
+        Segment segment = segments.get(segmentId(location));
+        int position = offset(location);
+        long hashKey = hashKey(readHash(segment.buffer, position));
+        if (hashes.get(hashKey) == location) {
+            hashes.remove(hashKey);
+        }
+        segment.liveBytes -= recordLength(segment.buffer, position);
+    }
+
+    // Appends and indexes; append may roll, so active is only read once it has returned
+    private void write(byte[] record) {
+        int position = append(record);
+        apply(active, position);
+    }
+
+    private int append(byte[] record) {
+        if (active.end + record.length > active.buffer.capacity()) {
+            roll();
+        }
+        int position = active.end;
+        active.buffer.put(position, record);
+        active.end += record.length;
+        appendedBytes += record.length;
+        return position;
+    }
+
+    // Called with the write lock held; the sealed segment is forced so durability never spans two files
+    private void roll() {
+        active.buffer.force();
+        fsyncs.increment();
+        publishDurable(appendedBytes);
+        try {
+            Segment next = createSegment(active.id + 1);
+            segments.put(next.id, next);
+            active = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + (active.id + 1), e);
+        }
+    }
+
+    private void awaitDurable(long target) {
+        if (flusher == null) {
+            flush();
+            return;
+        }
+        durability.lock();
+        try {
+            while (durableBytes < target) {
+                durable.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for fsync", e);
+        } finally {
+            durability.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(fsyncIntervalNanos);
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("Failed to force log segment", e);
+            }
+        }
+    }
+
+    private void flush() {
+        Segment segment;
+        long target;
+        lock.readLock().lock();
+        try {
+            segment = active;
+            target = appendedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+        durability.lock();
+        try {
+            if (target <= durableBytes) {
+                return;
+            }
+        } finally {
+            durability.unlock();
+        }
+        // Only dirty pages are written, so one msync covers every writer since the last one
+        segment.buffer.force();
+        fsyncs.increment();
+        publishDurable(target);
+    }
+
+    private void publishDurable(long target) {
+        durability.lock();
+        try {
+            if (target > durableBytes) {
+                durableBytes = target;
+                durable.signalAll();
+            }
+        } finally {
+            durability.unlock();
+        }
+    }
+
+    /**
+     * Rewrites sealed segments whose live records have fallen to {@code 1 - compactionGarbageRatio}
+     * of their data. Work is done in short write-locked steps so lookups and writes keep flowing;
+     * a source segment is deleted only after its copies are on disk. Returns the segments reclaimed.
+     */
+    public int compact() {
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                long data = segment.end - SEGMENT_HEADER;
+                if (segment != active && data > 0 && segment.liveBytes <= data * (1 - compactionGarbageRatio)) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Segment segment : candidates) {
+            compact(segment);
+        }
+        return candidates.size();
+    }
+
+    private void compact(Segment source) {
+        long copied = 0;
+        int position = SEGMENT_HEADER;
+        while (position < source.end) {
+            lock.writeLock().lock();
+            try {
+                int stop = Math.min(source.end, position + COMPACTION_STEP_BYTES);
+                while (position < stop) {
+                    int length = recordLength(source.buffer, position);
+                    if (isLive(source, position)) {
+                        byte[] record = new byte[length];
+                        source.buffer.get(position, record);
+                        write(record);
+                        copied += length;
+                    }
+                    position += length;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        flush();
+
+        lock.writeLock().lock();
+        try {
+            segments.remove(source.id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // The mapping stays valid for readers until it is collected; unlinking never truncates it
+        try {
+            Files.deleteIfExists(source.path);
+            syncDirectory();
+        } catch (IOException e) {
+            log.warn("Failed to delete compacted segment {}", source.path, e);
+        }
+        compactions.increment();
+        reclaimedBytes.add(source.end - SEGMENT_HEADER - copied);
+        log.info("Compacted {}: kept {} of {} bytes", source.path.getFileName(), copied, source.end - SEGMENT_HEADER);
+    }
+
+    private boolean isLive(Segment segment, int position) {
+        ByteBuffer buffer = segment.buffer;
+        long current = codes.get(codeKey(readCode(buffer, position)));
+        if (buffer.get(position + 8) == PUT) {
+            return current == location(segment.id, position);
+        }
+        // A tombstone matters only while an older segment may still hold a put it cancels
+        return current == OffHeapLongMap.ABSENT && segments.firstKey() < segment.id;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return codes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            long diskBytes = 0;
+            long liveBytes = 0;
+            for (Segment segment : segments.values()) {
+                diskBytes += segment.end;
+                liveBytes += segment.liveBytes;
+            }
+            stats.put("codes", codes.size());
+            stats.put("segments", segments.size());
+            stats.put("dataBytes", diskBytes);
+            stats.put("liveBytes", liveBytes);
+            stats.put("indexBytes", codes.memoryBytes() + hashes.memoryBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("fsyncs", fsyncs.sum());
+        stats.put("compactions", compactions.sum());
+        stats.put("reclaimedBytes", reclaimedBytes.sum());
+        stats.put("recoveredRecords", recoveredRecords);
+        stats.put("discardedTailBytes", discardedTailBytes);
+        stats.put("corruptSegments", corruptSegments);
+        return stats;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        flush();
+    }
+
+    private Segment openSegment(int id, boolean writable) throws IOException {
+        Path path = segmentPath(id);
+        MappedByteBuffer buffer;
+        if (writable) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        if (writable && buffer.getLong(0) == 0) {
+            // Created just before a crash, before its header reached the disk
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        }
+        if (buffer.capacity() < SEGMENT_HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException(path + " is not a version " + VERSION + " log segment");
+        }
+        return new Segment(id, path, buffer);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path path = segmentPath(id);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.force();
+        syncDirectory();
+        Segment segment = new Segment(id, path, buffer);
+        segment.end = SEGMENT_HEADER;
+        return segment;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("segment-%08d.log", id));
+    }
+
+    // Makes a created or deleted segment file itself survive a crash; not every platform allows it
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Directory fsync not supported for {}", directory, e);
+        }
+    }
+
+    private byte[] encode(byte type, String code, String urlHash, String url, LocalDateTime createdAt) {
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        byte[] hashBytes = (urlHash == null ? "" : urlHash).getBytes(StandardCharsets.UTF_8);
+        byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        if (codeBytes.length > 255 || hashBytes.length > 255) {
+            throw new IllegalArgumentException("Code or URL hash longer than 255 bytes");
+        }
+        int body = BODY_FIXED + codeBytes.length + hashBytes.length + urlBytes.length;
+        if (RECORD_HEADER + body > segmentBytes - SEGMENT_HEADER) {
+            throw new IllegalArgumentException("Record of " + (RECORD_HEADER + body) + " bytes does not fit a segment");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + body);
+        record.putInt(0);
+        record.putInt(body);
+        record.put(type);
+        record.put((byte) codeBytes.length);
+        record.put((byte) hashBytes.length);
+        record.putLong(createdAt == null ? NO_TIMESTAMP : createdAt.toInstant(ZoneOffset.UTC).toEpochMilli());
+        record.put(codeBytes);
+        record.put(hashBytes);
+        record.put(urlBytes);
+        record.putInt(0, checksum(record, 0, body));
+        return record.array();
+    }
+
+    private Url read(long location) {
+        ByteBuffer buffer = segments.get(segmentId(location)).buffer;
+        int position = offset(location);
+        int body = buffer.getInt(position + 4);
+        int codeLength = buffer.get(position + 9) & 0xff;
+        int hashLength = buffer.get(position + 10) & 0xff;
+        long createdAt = buffer.getLong(position + 11);
+        int keys = position + RECORD_HEADER + BODY_FIXED;
+        return Url.builder()
+            .code(string(buffer, keys, codeLength))
+            .urlHash(string(buffer, keys + codeLength, hashLength))
+            .normalizedUrl(string(buffer, keys + codeLength + hashLength, body - BODY_FIXED - codeLength - hashLength))
+            .createdAt(createdAt == NO_TIMESTAMP ? null
+                : LocalDateTime.ofEpochSecond(Math.floorDiv(createdAt, 1000),
+                    (int) Math.floorMod(createdAt, 1000) * 1_000_000, ZoneOffset.UTC))
+            .build();
+    }
+
+    private String readCode(long location) {
+        return readCode(segments.get(segmentId(location)).buffer, offset(location));
+    }
+
+    private static String readCode(ByteBuffer buffer, int position) {
+        return string(buffer, position + RECORD_HEADER + BODY_FIXED, buffer.get(position + 9) & 0xff);
+    }
+
+    private static String readHash(ByteBuffer buffer, int position) {
+        int codeLength = buffer.get(position + 9) & 0xff;
+        return string(buffer, position + RECORD_HEADER + BODY_FIXED + codeLength, buffer.get(position + 10) & 0xff);
+    }
+
+    private static int recordLength(ByteBuffer buffer, int position) {
+        return RECORD_HEADER + buffer.getInt(position + 4);
+    }
+
+    private static String string(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long location(int segmentId, int position) {
+        return (long) segmentId << 32 | position;
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    // Short codes are at most 8 ASCII characters and pack into the key losslessly; anything else is hashed, top bit set
+    static long codeKey(String code) {
+        int length = code.length();
+        if (length > 0 && length <= 8) {
+            long key = 0;
+            for (int i = 0; i < length; i++) {
+                char c = code.charAt(i);
+                if (c >= 0x80) {
+                    return hash64(code) | Long.MIN_VALUE;
+                }
+                key = key << 8 | c;
+            }
+            return key;
+        }
+        return hash64(code) | Long.MIN_VALUE;
+    }
+
+    static long hashKey(String urlHash) {
+        long key = hash64(urlHash);
+        return key == 0 ? 1 : key;
+    }
+
+    // FNV-1a followed by the MurmurHash3 finalizer
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int end;
+        long liveBytes;
+
+        Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
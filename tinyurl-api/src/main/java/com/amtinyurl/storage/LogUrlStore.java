@@ -0,0 +1,119 @@
+package com.amtinyurl.storage;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Serves lookups from the local {@link LogStructuredStore} and never from MySQL, so redirects keep
+ * working while the database is slow or away. Meant for single-node and edge deployments: the log
+ * only holds what this node wrote or seeded. An empty log is seeded from {@code urls} on every
+ * shard before the web server starts.
+ */
+@Slf4j
+public class LogUrlStore implements UrlStore {
+
+    private final LogStructuredStore store;
+    private final UrlRepository urlRepository;
+    private final ShardRouter shardRouter;
+    private final boolean seed;
+    private final int seedBatchSize;
+
+    public LogUrlStore(LogStructuredStore store, UrlRepository urlRepository, ShardRouter shardRouter,
+                       boolean seed, int seedBatchSize) {
+        this.store = store;
+        this.urlRepository = urlRepository;
+        this.shardRouter = shardRouter;
+        this.seed = seed;
+        this.seedBatchSize = seedBatchSize;
+    }
+
+    @PostConstruct
+    public void seedIfEmpty() {
+        if (!seed || store.size() > 0) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        long seeded = 0;
+        for (String shard : shardRouter.shards()) {
+            String after = "";
+            while (true) {
+                String from = after;
+                List<String> codes = shardRouter.onShard(shard,
+                    () -> urlRepository.findCodesAfter(from, PageRequest.of(0, seedBatchSize)));
+                if (codes.isEmpty()) {
+                    break;
+                }
+                List<Url> rows = shardRouter.onShard(shard, () -> urlRepository.findAllById(codes));
+                store.putAll(rows);
+                seeded += rows.size();
+                after = codes.get(codes.size() - 1);
+            }
+        }
+        log.info("Seeded log store with {} urls in {} ms", seeded, System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public Optional<Url> findById(String code) {
+        return store.get(code);
+    }
+
+    @Override
+    public Optional<Url> findByUrlHash(String urlHash) {
+        return store.findByUrlHash(urlHash);
+    }
+
+    @Override
+    public boolean existsByCode(String code) {
+        return store.contains(code);
+    }
+
+    @Override
+    public void saved(List<Url> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    store.putAll(urls);
+                }
+            });
+            return;
+        }
+        store.putAll(urls);
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.log.compaction-interval-ms:60000}",
+               initialDelayString = "${app.storage.log.compaction-interval-ms:60000}")
+    public void compact() {
+        try {
+            int compacted = store.compact();
+            if (compacted > 0) {
+                log.info("Log store compaction reclaimed {} segments", compacted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Log store compaction failed", e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backend", "log");
+        stats.putAll(store.getStats());
+        return stats;
+    }
+}
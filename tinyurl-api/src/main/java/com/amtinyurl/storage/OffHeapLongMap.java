@@ -0,0 +1,137 @@
+package com.amtinyurl.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open-addressing {@code long -> long} hash table in a single direct buffer: 16 bytes a slot,
+ * linear probing, backward-shift deletion, doubling at 70% load. Nothing per entry lives on the
+ * Java heap, so a few million codes cost the collector nothing. Key 0 marks an empty slot and
+ * callers keep their keys away from it. Not thread-safe; {@link LogStructuredStore} guards it.
+ */
+final class OffHeapLongMap {
+
+    static final long ABSENT = -1L;
+
+    private static final int SLOT_BYTES = 16;
+    private static final double MAX_LOAD = 0.7;
+    // 1 GiB of slots; one direct buffer is int-indexed
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    OffHeapLongMap(int expectedEntries) {
+        int needed = (int) Math.min(MAX_CAPACITY, (long) Math.ceil(Math.max(expectedEntries, 16) / MAX_LOAD));
+        allocate(Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    long get(long key) {
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            long found = slots.getLong(slot * SLOT_BYTES);
+            if (found == key) {
+                return slots.getLong(slot * SLOT_BYTES + 8);
+            }
+            if (found == 0) {
+                return ABSENT;
+            }
+        }
+    }
+
+    /** Returns the value replaced, or {@link #ABSENT}. */
+    long put(long key, long value) {
+        if (size >= resizeAt) {
+            grow();
+        }
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT_BYTES;
+            long found = slots.getLong(at);
+            if (found == key) {
+                long previous = slots.getLong(at + 8);
+                slots.putLong(at + 8, value);
+                return previous;
+            }
+            if (found == 0) {
+                slots.putLong(at, key);
+                slots.putLong(at + 8, value);
+                size++;
+                return ABSENT;
+            }
+        }
+    }
+
+    /** Returns the value removed, or {@link #ABSENT}. */
+    long remove(long key) {
+        int slot = home(key);
+        while (true) {
+            long found = slots.getLong(slot * SLOT_BYTES);
+            if (found == key) {
+                break;
+            }
+            if (found == 0) {
+                return ABSENT;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long previous = slots.getLong(slot * SLOT_BYTES + 8);
+
+        // Pull later entries of the same probe run back so lookups never stop at a false gap
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long moved = slots.getLong(next * SLOT_BYTES);
+            if (moved == 0) {
+                break;
+            }
+            if (((next - hole) & mask) <= ((next - home(moved)) & mask)) {
+                slots.putLong(hole * SLOT_BYTES, moved);
+                slots.putLong(hole * SLOT_BYTES + 8, slots.getLong(next * SLOT_BYTES + 8));
+                hole = next;
+            }
+        }
+        slots.putLong(hole * SLOT_BYTES, 0L);
+        slots.putLong(hole * SLOT_BYTES + 8, 0L);
+        size--;
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long memoryBytes() {
+        return (long) slots.capacity();
+    }
+
+    private void grow() {
+        if (mask + 1 >= MAX_CAPACITY) {
+            throw new IllegalStateException("Index is full at " + size + " entries");
+        }
+        ByteBuffer old = slots;
+        int oldCapacity = mask + 1;
+        allocate(oldCapacity << 1);
+        size = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long key = old.getLong(slot * SLOT_BYTES);
+            if (key != 0) {
+                put(key, old.getLong(slot * SLOT_BYTES + 8));
+            }
+        }
+    }
+
+    private int home(long key) {
+        // MurmurHash3 fmix64; packed short codes differ mostly in their low bytes
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,42 @@
+package com.amtinyurl.storage;
+
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Only active with {@code app.storage.backend=log}; otherwise {@link JpaUrlStore} is the
+ * {@link UrlStore}. The store directory must be on local disk: segments are memory-mapped.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "log")
+public class StorageConfig {
+
+    @Bean(destroyMethod = "close")
+    public LogStructuredStore logStructuredStore(BackgroundThreads backgroundThreads,
+                                                 @Value("${app.storage.log.directory}") String directory,
+                                                 @Value("${app.storage.log.segment-bytes:67108864}") int segmentBytes,
+                                                 @Value("${app.storage.log.fsync-interval-ms:5}") long fsyncIntervalMillis,
+                                                 @Value("${app.storage.log.compaction-garbage-ratio:0.5}") double garbageRatio,
+                                                 @Value("${app.storage.log.expected-entries:1000000}") int expectedEntries)
+            throws IOException {
+        return new LogStructuredStore(Path.of(directory), segmentBytes, fsyncIntervalMillis, garbageRatio,
+            expectedEntries, backgroundThreads.factory("log-store-fsync"));
+    }
+
+    @Bean
+    public LogUrlStore logUrlStore(LogStructuredStore logStructuredStore,
+                                   UrlRepository urlRepository,
+                                   ShardRouter shardRouter,
+                                   @Value("${app.storage.log.seed-from-database:true}") boolean seed,
+                                   @Value("${app.storage.log.seed-batch-size:1000}") int seedBatchSize) {
+        return new LogUrlStore(logStructuredStore, urlRepository, shardRouter, seed, seedBatchSize);
+    }
+}
@@ -0,0 +1,27 @@
+package com.amtinyurl.storage;
+
+import com.amtinyurl.entity.Url;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The {@code urls} lookups on the redirect and create paths, selected by {@code app.storage.backend}:
+ * {@code jpa} (default) answers them from MySQL through {@code UrlRepository}, {@code log} from the
+ * embedded {@link LogStructuredStore}. MySQL stays the system of record either way; creates insert
+ * the row there and hand it to {@link #saved} so the log backend can keep its copy.
+ */
+public interface UrlStore {
+
+    Optional<Url> findById(String code);
+
+    Optional<Url> findByUrlHash(String urlHash);
+
+    boolean existsByCode(String code);
+
+    /** Rows just written to {@code urls}; inside a transaction they are applied after it commits. */
+    void saved(List<Url> urls);
+
+    Map<String, Object> getStats();
+}
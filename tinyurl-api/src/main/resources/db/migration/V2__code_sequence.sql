@@ -0,0 +1,9 @@
+-- Block-leased sequence backing short code allocation
+-- Each API node reserves a contiguous range of next_value and permutes it into codes locally
+
+CREATE TABLE code_sequence (
+    name VARCHAR(32) NOT NULL PRIMARY KEY,
+    next_value BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+INSERT INTO code_sequence (name, next_value) VALUES ('urls', 0);
@@ -0,0 +1,6 @@
+-- GET /api/urls pages newest-first on (created_at, code) per user; this index serves both the
+-- first page and every "after cursor" seek without a filesort
+CREATE INDEX idx_user_created_code ON user_urls (user_id_lower, created_at DESC, code DESC);
+
+-- Redundant with the primary key prefix and the index above
+DROP INDEX idx_user_id_lower ON user_urls;
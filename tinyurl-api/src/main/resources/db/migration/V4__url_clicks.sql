@@ -0,0 +1,9 @@
+-- Redirect counts per short code, flushed from each API node's in-memory counters
+-- Nodes only ever add deltas, so concurrent flushes from several nodes compose
+
+CREATE TABLE url_clicks (
+    code CHAR(7) NOT NULL PRIMARY KEY,
+    click_count BIGINT NOT NULL DEFAULT 0,
+    last_accessed_at TIMESTAMP(3) NOT NULL,
+    FOREIGN KEY (code) REFERENCES urls(code) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
@@ -0,0 +1,18 @@
+-- Horizontal sharding (only used when app.sharding.shards is set; every shard runs every migration)
+
+-- Bucket-to-shard assignment, read from the first (directory) shard by every node
+CREATE TABLE shard_buckets (
+    bucket INT NOT NULL PRIMARY KEY,
+    owner_shard VARCHAR(32) NOT NULL,
+    peer_shard VARCHAR(32) NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+-- urls are placed by code, so dedup looks the hash up here, on the shard that owns the hash
+CREATE TABLE url_hash_index (
+    url_hash CHAR(64) NOT NULL PRIMARY KEY,
+    code CHAR(7) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+-- user_urls are placed by user and urls by code, so the referenced row is usually on another shard.
+-- Rows in urls are never deleted, so the constraint only ever guarded inserts, which always follow the urls insert.
+ALTER TABLE user_urls DROP FOREIGN KEY user_urls_ibfk_1;
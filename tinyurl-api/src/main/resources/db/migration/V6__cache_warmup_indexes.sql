@@ -0,0 +1,4 @@
+-- Startup cache warm-up reads the most recently clicked codes, falling back to the newest urls;
+-- both are LIMIT scans backwards along these indexes
+CREATE INDEX idx_last_accessed_at ON url_clicks (last_accessed_at);
+CREATE INDEX idx_created_at ON urls (created_at);
@@ -0,0 +1,57 @@
+package com.amtinyurl.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongObjectMapTest {
+
+    @Test
+    void testMatchesHashMapThroughGrowthAndRemoval() {
+        ConcurrentLongObjectMap<AtomicLong> map = new ConcurrentLongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (long key = 0; key < 50_000; key += 3) {
+            map.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(key);
+            expected.put(key, key);
+        }
+        assertEquals(expected.size(), map.size());
+
+        int removed = map.removeIf((key, value) -> key % 2 == 0);
+        expected.keySet().removeIf(key -> key % 2 == 0);
+        assertEquals(expected.size(), map.size());
+        assertTrue(removed > 0);
+
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach((key, value) -> visited.put(key, value.get()));
+        assertEquals(expected, visited);
+        assertNull(map.get(6));
+        assertEquals(9L, map.get(9).get());
+    }
+
+    @Test
+    void testConcurrentInsertsShareOneValuePerKey() throws InterruptedException {
+        ConcurrentLongObjectMap<AtomicLong> map = new ConcurrentLongObjectMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (long key = 0; key < 20_000; key++) {
+                    map.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20_000, map.size());
+        map.forEach((key, value) -> assertEquals(4L, value.get(), "key " + key));
+    }
+}
@@ -0,0 +1,73 @@
+package com.amtinyurl.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongHashMapTest {
+
+    @Test
+    void testMatchesHashMapThroughGrowthRemovalAndShrink() {
+        LongLongHashMap map = new LongLongHashMap(8);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? -7L : removed, map.remove(key, -7L));
+            } else {
+                Long added = expected.merge(key, 3L, Long::sum);
+                assertEquals(added, map.addTo(key, 3L));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+
+        for (long key = 100; key < 20_000; key++) {
+            expected.remove(key);
+            map.remove(key, 0L);
+        }
+        int capacity = map.capacity();
+        map.shrink();
+        assertTrue(map.capacity() < capacity);
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 20_000; key++) {
+            assertEquals(expected.getOrDefault(key, 0L), map.get(key, 0L));
+        }
+    }
+
+    @Test
+    void testPutMaxOnlyMovesForward() {
+        LongLongHashMap map = new LongLongHashMap(8);
+        map.putMax(0, 50);
+        map.putMax(0, 20);
+        assertEquals(50, map.get(0, -1));
+        map.putMax(0, 70);
+        assertEquals(70, map.get(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, 1, 0));
+    }
+
+    @Test
+    void testExpiringSetForgetsKeysAfterTtlAndStaysBounded() throws InterruptedException {
+        ExpiringLongSet set = new ExpiringLongSet(1_000, 30);
+        assertTrue(set.add(42));
+        assertTrue(set.contains(42));
+        set.remove(42);
+        assertFalse(set.contains(42));
+
+        for (long key = 0; key < 10_000; key++) {
+            set.add(key);
+        }
+        assertTrue(set.size() <= 1_000);
+
+        Thread.sleep(60);
+        assertFalse(set.contains(1));
+        assertTrue(set.add(20_000));
+        assertTrue(set.contains(20_000));
+    }
+}
@@ -0,0 +1,35 @@
+package com.amtinyurl.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearCacheTest {
+
+    private static final String URL_HASH = "100680ad546ce6a577f42f52df33b4cfdca756859e664b8d7de329b150d09ce9";
+
+    private NearCache nearCache;
+
+    @BeforeEach
+    void setUp() {
+        nearCache = new NearCache(true, 1024 * 1024, 60);
+    }
+
+    @Test
+    void shouldCacheBothDirections() {
+        nearCache.putCodeToUrl("abc1234", "https://example.com");
+        nearCache.putUrlHashToCode(URL_HASH, "abc1234");
+
+        assertEquals("https://example.com", nearCache.getUrlByCode("abc1234"));
+        assertEquals("abc1234", nearCache.getCodeByUrlHash(URL_HASH));
+        assertEquals(2, nearCache.codeToUrlStats().hitCount() + nearCache.urlHashToCodeStats().hitCount());
+    }
+
+    @Test
+    void shouldBypassWhenDisabled() {
+        NearCache disabled = new NearCache(false, 1024 * 1024, 60);
+        disabled.putCodeToUrl("abc1234", "https://example.com");
+        assertNull(disabled.getUrlByCode("abc1234"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.amtinyurl.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTest {
+
+    private final AtomicBoolean redisUp = new AtomicBoolean(false);
+    private final RedisTemplate<String, String> redisTemplate = new RedisTemplate<>() {
+        @Override
+        public <T> T execute(RedisCallback<T> action) {
+            if (!redisUp.get()) {
+                throw new RedisConnectionFailureException("Connection refused");
+            }
+            return null;
+        }
+    };
+    private final RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, true, 3);
+
+    @Test
+    void testOpensAfterConsecutiveFailuresOnly() {
+        breaker.recordFailure(new RuntimeException("timeout"));
+        breaker.recordFailure(new RuntimeException("timeout"));
+        breaker.recordSuccess();
+        breaker.recordFailure(new RuntimeException("timeout"));
+        breaker.recordFailure(new RuntimeException("timeout"));
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure(new RuntimeException("timeout"));
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1L, breaker.getStats().get("shortCircuited"));
+    }
+
+    @Test
+    void testProbeClosesTheCircuitOnlyOnceRedisAnswers() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure(new RuntimeException("timeout"));
+        }
+
+        breaker.probe();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+
+        redisUp.set(true);
+        breaker.probe();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertEquals(0, breaker.getStats().get("consecutiveFailures"));
+    }
+
+    @Test
+    void testDisabledBreakerNeverOpens() {
+        RedisCircuitBreaker disabled = new RedisCircuitBreaker(redisTemplate, false, 1);
+        disabled.recordFailure(new RuntimeException("timeout"));
+        disabled.recordFailure(new RuntimeException("timeout"));
+        assertTrue(disabled.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.CLOSED, disabled.getState());
+    }
+}
@@ -0,0 +1,41 @@
+package com.amtinyurl.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void shouldNeverReportFalseNegatives() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 5000; i++) {
+            filter.add(String.format("%07d", i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(filter.mightContain(String.format("%07d", i)));
+        }
+        assertTrue(filter.sliceCount() > 1);
+    }
+
+    @Test
+    void shouldKeepFalsePositiveRateBounded() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 4000; i++) {
+            filter.add("a" + String.format("%06d", i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("z" + String.format("%06d", i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void shouldRejectInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(100, 1.5));
+    }
+}
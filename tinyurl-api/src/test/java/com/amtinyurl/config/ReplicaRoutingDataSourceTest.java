@@ -0,0 +1,109 @@
+package com.amtinyurl.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final Map<String, DataSource> databases = new LinkedHashMap<>();
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    // Each in-memory H2 database knows its own name and reports a configurable replication lag
+    private DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE whoami (name VARCHAR(32))");
+        jdbc.update("INSERT INTO whoami VALUES (?)", name);
+        jdbc.execute("CREATE TABLE replica_status (seconds_behind INT)");
+        jdbc.update("INSERT INTO replica_status VALUES (0)");
+        databases.put(name, dataSource);
+        return dataSource;
+    }
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", database("replica-0"));
+        replicas.put("replica-1", database("replica-1"));
+        routing = new ReplicaRoutingDataSource(primary, replicas,
+            "SELECT seconds_behind FROM replica_status", "seconds_behind", 5);
+        routing.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String whoami(TransactionTemplate template) {
+        return template.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class));
+    }
+
+    private void setLag(String name, int seconds) {
+        new JdbcTemplate(databases.get(name)).update("UPDATE replica_status SET seconds_behind = ?", seconds);
+    }
+
+    @Test
+    void testReadOnlyTransactionsAreSpreadOverReplicas() {
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            seen.add(whoami(readOnly));
+        }
+        assertEquals(Set.of("replica-0", "replica-1"), seen);
+    }
+
+    @Test
+    void testWritesAndPinnedWorkStayOnPrimary() {
+        assertEquals("primary", whoami(readWrite));
+        assertEquals("primary", ReplicaRoutingDataSource.onPrimary(() -> whoami(readOnly)));
+    }
+
+    @Test
+    void testLaggingReplicaIsEjectedAndReadmitted() {
+        setLag("replica-1", 60);
+        routing.checkReplicas();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica-0", whoami(readOnly));
+        }
+
+        setLag("replica-1", 0);
+        routing.checkReplicas();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            seen.add(whoami(readOnly));
+        }
+        assertEquals(Set.of("replica-0", "replica-1"), seen);
+    }
+
+    @Test
+    void testReadsFallBackToPrimaryWithoutHealthyReplicas() {
+        setLag("replica-0", 60);
+        new JdbcTemplate(databases.get("replica-1")).execute("DROP TABLE replica_status");
+        routing.checkReplicas();
+
+        assertEquals("primary", whoami(readOnly));
+        assertEquals(0, routing.getStats().get("healthyReplicas"));
+        assertEquals(1L, routing.getStats().get("primaryFallbacks"));
+    }
+}
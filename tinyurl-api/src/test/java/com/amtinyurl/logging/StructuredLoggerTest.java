@@ -0,0 +1,129 @@
+package com.amtinyurl.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructuredLoggerTest {
+
+    private static final AtomicInteger LOGGERS = new AtomicInteger();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Logger events = (Logger) LoggerFactory.getLogger("test.events." + LOGGERS.incrementAndGet());
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    StructuredLoggerTest() {
+        appender.start();
+        events.addAppender(appender);
+        events.setAdditive(false);
+        events.setLevel(Level.INFO);
+    }
+
+    private List<String> lines() {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+    }
+
+    private StructuredLogger logger(int ringSize, double sampleRate) {
+        return new StructuredLogger(events, r -> {
+            Thread thread = new Thread(r, "structured-log-test");
+            thread.setDaemon(true);
+            return thread;
+        }, ringSize, sampleRate);
+    }
+
+    @Test
+    void testEventsAreWrittenAsEscapedJsonLines() throws Exception {
+        StructuredLogger structuredLogger = logger(16, 1.0);
+        RequestLogContext.current().set("req-1", "abc123", "agent \"quoted\"\n", "GET", "/abc1234");
+        try {
+            structuredLogger.logAction("create", "abc1234", "https://example.com/a\\b", "hit", 201);
+        } finally {
+            RequestLogContext.current().clear();
+        }
+        structuredLogger.shutdown();
+
+        assertEquals(1, lines().size());
+        JsonNode event = objectMapper.readTree(lines().get(0));
+        assertEquals("req-1", event.get("requestId").asText());
+        assertEquals("agent \"quoted\"\n", event.get("userAgent").asText());
+        assertEquals("GET /abc1234", event.get("route").asText());
+        assertEquals("https://example.com/a\\b", event.get("url").asText());
+        assertEquals(201, event.get("status").asInt());
+        assertTrue(event.get("timestamp").asText().matches("\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}Z"));
+    }
+
+    @Test
+    void testConcurrentEventsAreAllWrittenOnce() throws Exception {
+        StructuredLogger structuredLogger = logger(1 << 16, 1.0);
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    structuredLogger.logAction("get", 200);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        structuredLogger.shutdown();
+
+        long written = (long) structuredLogger.getStats().get("written");
+        long dropped = (long) structuredLogger.getStats().get("dropped");
+        assertEquals(threads * perThread, written + dropped);
+        assertEquals(written, lines().size());
+        for (String line : lines().subList(0, 100)) {
+            assertEquals("get", objectMapper.readTree(line).get("action").asText());
+        }
+    }
+
+    @Test
+    void testSuccessfulRedirectsAreSampledButFailuresAreNot() throws Exception {
+        StructuredLogger structuredLogger = logger(1024, 0.0);
+        for (int i = 0; i < 100; i++) {
+            structuredLogger.logRedirect("abc1234", "https://example.com", 301);
+        }
+        structuredLogger.logRedirect("zzz9999", null, 404);
+        structuredLogger.shutdown();
+
+        assertEquals(100L, structuredLogger.getStats().get("sampledOut"));
+        assertEquals(1, lines().size());
+        assertEquals(404, objectMapper.readTree(lines().get(0)).get("status").asInt());
+    }
+
+    @Test
+    void testNothingIsEncodedWhileTheEventsLoggerIsOff() throws Exception {
+        events.setLevel(Level.OFF);
+        StructuredLogger structuredLogger = logger(16, 1.0);
+        structuredLogger.logAction("create", "abc1234", "https://example.com", null, 201);
+        structuredLogger.shutdown();
+
+        assertTrue(lines().isEmpty());
+        assertEquals(0L, structuredLogger.getStats().get("written"));
+        assertEquals(0L, structuredLogger.getStats().get("dropped"));
+    }
+
+    @Test
+    void testRequestIdsSortByCreationTime() {
+        String earlier = RequestIds.format(1_700_000_000_000L, 42);
+        String later = RequestIds.format(1_700_000_000_001L, 7);
+        assertTrue(earlier.compareTo(later) < 0);
+        assertEquals('7', earlier.charAt(14));
+        assertEquals(36, RequestIds.next().length());
+        assertNotEquals(RequestIds.next(), RequestIds.next());
+    }
+}
@@ -0,0 +1,150 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import com.amtinyurl.storage.UrlStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchUrlServiceTest {
+
+    private final UrlService urlService = new UrlService();
+    private final UrlRepository urlRepository = mock(UrlRepository.class);
+    private final CodeExistenceFilter codeExistenceFilter = mock(CodeExistenceFilter.class);
+    private final CodeAllocator codeAllocator = mock(CodeAllocator.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final UserUrlVersions userUrlVersions = mock(UserUrlVersions.class);
+
+    private final BatchUrlService batchUrlService = new BatchUrlService(urlRepository, urlService,
+        mock(CacheService.class), codeExistenceFilter, codeAllocator, jdbcTemplate,
+        new TransactionTemplate(transactionManager), null, ShardRouter.unsharded(), mock(UrlStore.class),
+        userUrlVersions);
+
+    // The urls table by url_hash, plus codes taken by rows from before url_hash was unique
+    private final Map<String, Url> table = new ConcurrentHashMap<>();
+    private final Set<String> legacyCodes = new HashSet<>();
+    private final AtomicInteger issued = new AtomicInteger();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(batchUrlService, "baseUrl", "http://short");
+        when(codeExistenceFilter.definitelyAbsent(anyString())).thenReturn(true);
+        when(codeAllocator.nextCode()).thenAnswer(invocation -> String.format("c%06d", issued.incrementAndGet()));
+        when(urlRepository.findByUrlHashIn(anyCollection())).thenAnswer(invocation -> {
+            List<Url> rows = new ArrayList<>();
+            for (String hash : (Collection<String>) invocation.getArgument(0)) {
+                if (table.containsKey(hash)) {
+                    rows.add(table.get(hash));
+                }
+            }
+            return rows;
+        });
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            int[] counts = new int[rows.size()];
+            if (!invocation.<String>getArgument(0).startsWith("INSERT IGNORE INTO urls")) {
+                Arrays.fill(counts, 1);
+                return counts;
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                String code = (String) rows.get(i)[0];
+                String url = (String) rows.get(i)[1];
+                String hash = urlService.hashUrl(url);
+                if (!table.containsKey(hash) && !legacyCodes.contains(code)) {
+                    table.put(hash, new Url(code, url, hash, LocalDateTime.now()));
+                    counts[i] = 1;
+                }
+            }
+            return counts;
+        });
+    }
+
+    @Test
+    void testRepeatsWithinABatchAreOnlyNewOnce() {
+        store("zzz0001", "https://example.com/old");
+
+        List<BatchUrlService.BatchItemResult> results = batchUrlService.createOrGetShortUrls(List.of(
+            "https://example.com/new", "https://example.com/old", "https://example.com/new", "http://example.com/plain"), "Alice");
+
+        assertEquals(4, results.size());
+        assertEquals("c000001", results.get(0).result.code);
+        assertFalse(results.get(0).result.existed);
+        assertEquals("zzz0001", results.get(1).result.code);
+        assertTrue(results.get(1).result.existed);
+        assertEquals("c000001", results.get(2).result.code);
+        assertTrue(results.get(2).result.existed);
+        assertEquals("Only HTTPS URLs are allowed", results.get(3).error);
+        assertEquals("http://short/c000001", results.get(0).result.shortUrl);
+
+        verify(codeAllocator, times(1)).nextCode();
+        verify(codeExistenceFilter).recordIssued(List.of("c000001"));
+        verify(userUrlVersions).bump("alice");
+    }
+
+    @Test
+    void testUrlCommittedByAConcurrentCreateIsReusedAndRunsReadCommitted() {
+        // Committed between the batch's first lookup and its insert
+        when(urlRepository.findByUrlHashIn(anyCollection())).thenAnswer(invocation -> {
+            store("zzz0002", "https://example.com/race");
+            return List.of();
+        }).thenAnswer(invocation -> List.copyOf(table.values()));
+
+        List<BatchUrlService.BatchItemResult> results =
+            batchUrlService.createOrGetShortUrls(List.of("https://example.com/race"), "alice");
+
+        assertEquals("zzz0002", results.get(0).result.code);
+        assertTrue(results.get(0).result.existed);
+        verify(codeAllocator, times(1)).nextCode();
+        verify(codeExistenceFilter).recordIssued(List.of());
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.ISOLATION_READ_COMMITTED, definition.getValue().getIsolationLevel());
+    }
+
+    @Test
+    void testCodeCollisionsRetryWithFreshCodesUntilExhausted() {
+        legacyCodes.add("c000001");
+
+        List<BatchUrlService.BatchItemResult> results =
+            batchUrlService.createOrGetShortUrls(List.of("https://example.com/retry"), "alice");
+
+        assertEquals("c000002", results.get(0).result.code);
+        assertFalse(results.get(0).result.existed);
+
+        legacyCodes.addAll(List.of("c000003", "c000004", "c000005"));
+        results = batchUrlService.createOrGetShortUrls(List.of("https://example.com/unlucky"), "alice");
+
+        assertEquals("COLLISION_RETRY_EXHAUSTED", results.get(0).error);
+        verify(codeAllocator, times(5)).nextCode();
+    }
+
+    private void store(String code, String url) {
+        String hash = urlService.hashUrl(urlService.normalizeUrl(url));
+        table.put(hash, new Url(code, urlService.normalizeUrl(url), hash, LocalDateTime.now()));
+    }
+}
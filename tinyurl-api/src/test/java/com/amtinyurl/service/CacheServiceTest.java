@@ -0,0 +1,103 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.cache.NearCache;
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.metrics.TinyUrlMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheServiceTest {
+
+    private final AtomicInteger pipelines = new AtomicInteger();
+    private final NearCache nearCache = new NearCache(true, 1024 * 1024, 60);
+    private final RedisTemplate<String, String> redisTemplate = new RedisTemplate<>() {
+        @Override
+        public List<Object> executePipelined(SessionCallback<?> session) {
+            pipelines.incrementAndGet();
+            return Collections.emptyList();
+        }
+    };
+
+    // A flush interval long enough that nothing is written until shutdown drains the queue
+    private final CacheService cacheService = new CacheService(redisTemplate, nearCache,
+        new TinyUrlMetrics(new SimpleMeterRegistry()), new RedisCircuitBreaker(redisTemplate, true, 5),
+        new BackgroundThreads(false), true, 3, 1000, 3_600_000);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        cacheService.shutdown();
+    }
+
+    @Test
+    void testRepeatedPutsForOneCodeCoalesceIntoOneWrite() throws InterruptedException {
+        cacheService.putBidirectional("abc1234", "https://example.com/a", "hash-a");
+        cacheService.putBidirectional("abc1234", "https://example.com/a", "hash-a");
+        cacheService.putBidirectional("zzz9999", "https://example.com/z", "hash-z");
+
+        assertEquals("https://example.com/a", nearCache.getUrlByCode("abc1234"));
+        assertEquals(2L, cacheService.getTierStats().get("pendingWrites"));
+        assertEquals(1L, cacheService.getTierStats().get("writesCoalesced"));
+        assertEquals(0, pipelines.get());
+
+        cacheService.shutdown();
+        assertEquals(1, pipelines.get());
+        assertEquals(2L, cacheService.getTierStats().get("writesFlushed"));
+    }
+
+    @Test
+    void testFirstWriteWakesAnIdleWriter() throws InterruptedException {
+        CacheService prompt = new CacheService(redisTemplate, nearCache,
+            new TinyUrlMetrics(new SimpleMeterRegistry()), new RedisCircuitBreaker(redisTemplate, true, 5),
+            new BackgroundThreads(false), true, 100, 100, 5);
+        try {
+            // Long past the window, so the writer is parked with no timeout
+            Thread.sleep(50);
+            prompt.putBidirectional("abc1234", "https://example.com/a", "hash-a");
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (pipelines.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, pipelines.get());
+        } finally {
+            prompt.shutdown();
+        }
+    }
+
+    @Test
+    void testWritesBeyondTheQueueBoundAreDropped() {
+        for (int i = 0; i < 5; i++) {
+            cacheService.putBidirectional("code00" + i, "https://example.com/" + i, "hash-" + i);
+        }
+        assertEquals(3L, cacheService.getTierStats().get("pendingWrites"));
+        assertEquals(2L, cacheService.getTierStats().get("writesDropped"));
+    }
+
+    @Test
+    void testNothingIsCachedBeforeTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        cacheService.putBidirectional("abc1234", "https://example.com/a", "hash-a");
+        assertNull(nearCache.getUrlByCode("abc1234"));
+        assertEquals(0L, cacheService.getTierStats().get("pendingWrites"));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertEquals("https://example.com/a", nearCache.getUrlByCode("abc1234"));
+        assertEquals(1L, cacheService.getTierStats().get("pendingWrites"));
+    }
+}
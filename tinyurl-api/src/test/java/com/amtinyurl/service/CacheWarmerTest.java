@@ -0,0 +1,105 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.entity.UrlClick;
+import com.amtinyurl.repository.UrlClickRepository;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CacheWarmerTest {
+
+    private final UrlRepository urlRepository = mock(UrlRepository.class);
+    private final UrlClickRepository urlClickRepository = mock(UrlClickRepository.class);
+    private final CacheService cacheService = mock(CacheService.class);
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private CacheWarmer warmer(int maxCodes, int batchSize) {
+        return new CacheWarmer(urlRepository, urlClickRepository, cacheService, ShardRouter.unsharded(),
+            true, maxCodes, 15_000, batchSize);
+    }
+
+    private static Url url(String code, int minutesAgo) {
+        return new Url(code, "https://example.com/" + code, "hash-" + code, NOW.minusMinutes(minutesAgo));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> warmedCodes() {
+        ArgumentCaptor<List<CacheService.Mapping>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cacheService, atLeast(0)).warm(captor.capture());
+        List<String> codes = new ArrayList<>();
+        captor.getAllValues().forEach(batch -> batch.forEach(mapping -> codes.add(mapping.code)));
+        return codes;
+    }
+
+    @Test
+    void testHotCodesAreWarmedInBatches() {
+        when(urlClickRepository.findByOrderByLastAccessedAtDesc(any())).thenReturn(List.of(
+            new UrlClick("aaa0001", 9, NOW), new UrlClick("aaa0002", 3, NOW.minusMinutes(1)),
+            new UrlClick("aaa0003", 1, NOW.minusMinutes(2))));
+        when(urlRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Url> rows = new ArrayList<>();
+            for (String code : invocation.<Iterable<String>>getArgument(0)) {
+                rows.add(url(code, 60));
+            }
+            return rows;
+        });
+
+        CacheWarmer warmer = warmer(3, 2);
+        warmer.warmOnStartup();
+
+        verify(cacheService, times(2)).warm(any());
+        assertEquals(List.of("aaa0001", "aaa0002", "aaa0003"), warmedCodes());
+        verify(urlRepository, never()).findByOrderByCreatedAtDesc(any());
+        assertEquals("done", warmer.getStats().get("state"));
+        assertEquals(3L, warmer.getStats().get("warmedCodes"));
+    }
+
+    @Test
+    void testRecentUrlsFillWhatAccessStatisticsLeaveOver() {
+        when(urlClickRepository.findByOrderByLastAccessedAtDesc(any())).thenReturn(List.of(
+            new UrlClick("aaa0001", 9, NOW)));
+        when(urlRepository.findAllById(any())).thenReturn(List.of(url("aaa0001", 60)));
+        when(urlRepository.findByOrderByCreatedAtDesc(any())).thenReturn(List.of(
+            url("bbb0001", 1), url("aaa0001", 60), url("bbb0002", 2), url("bbb0003", 3)));
+
+        CacheWarmer warmer = warmer(3, 500);
+        warmer.warmOnStartup();
+
+        assertEquals(List.of("aaa0001", "bbb0001", "bbb0002"), warmedCodes());
+        assertEquals("done", warmer.getStats().get("state"));
+    }
+
+    @Test
+    void testSpentBudgetStopsWarmUpWithoutFailing() {
+        when(urlClickRepository.findByOrderByLastAccessedAtDesc(any())).thenReturn(List.of(
+            new UrlClick("aaa0001", 9, NOW)));
+
+        CacheWarmer warmer = warmer(10, 500);
+        warmer.warm(System.nanoTime() - 1);
+
+        verify(cacheService, never()).warm(any());
+        assertEquals("timed_out", warmer.getStats().get("state"));
+        assertEquals(0L, warmer.getStats().get("warmedCodes"));
+    }
+
+    @Test
+    void testDisabledWarmUpDoesNotTouchTheDatabase() {
+        CacheWarmer warmer = new CacheWarmer(urlRepository, urlClickRepository, cacheService,
+            ShardRouter.unsharded(), false, 10, 15_000, 500);
+        warmer.warmOnStartup();
+
+        verifyNoInteractions(urlRepository, urlClickRepository, cacheService);
+        assertEquals("disabled", warmer.getStats().get("state"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.shard.ShardRouter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickTrackerTest {
+
+    private final ClickTracker clickTracker = new ClickTracker(null, null, ShardRouter.unsharded(), true, 500, 60_000);
+
+    @Test
+    void testDrainReturnsDeltasSinceLastWindow() {
+        clickTracker.record("abc1234");
+        clickTracker.record("abc1234");
+        clickTracker.record("zzz9999");
+
+        List<ClickTracker.Delta> first = clickTracker.drain();
+        assertEquals(2, first.size());
+        assertEquals(3, first.stream().mapToLong(d -> d.clicks).sum());
+        assertTrue(first.stream().allMatch(d -> d.lastAccessMillis > 0));
+
+        clickTracker.record("abc1234");
+        List<ClickTracker.Delta> second = clickTracker.drain();
+        assertEquals(1, second.size());
+        assertEquals("abc1234", second.get(0).code);
+        assertEquals(1, second.get(0).clicks);
+    }
+
+    @Test
+    void testIdleCodesAreRetired() throws InterruptedException {
+        ClickTracker retiring = new ClickTracker(null, null, ShardRouter.unsharded(), true, 500, 20);
+        retiring.record("abc1234");
+        retiring.drain();
+        assertTrue(retiring.drain().isEmpty());
+        assertEquals(1, retiring.getStats().get("trackedCodes"));
+
+        Thread.sleep(40);
+        assertTrue(retiring.drain().isEmpty());
+        assertEquals(0, retiring.getStats().get("trackedCodes"));
+    }
+
+    @Test
+    void testRestoredDeltasGoOutWithNextWindow() {
+        clickTracker.record("abc1234");
+        List<ClickTracker.Delta> failed = clickTracker.drain();
+        clickTracker.restore(failed);
+        clickTracker.record("abc1234");
+
+        List<ClickTracker.Delta> retried = clickTracker.drain();
+        assertEquals(1, retried.size());
+        assertEquals(2, retried.get(0).clicks);
+    }
+
+    @Test
+    void testConcurrentClicksAreNotLost() throws InterruptedException {
+        int threads = 8;
+        int clicksPerThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < clicksPerThread; i++) {
+                    clickTracker.record("abc1234");
+                }
+            });
+        }
+
+        long drained = 0;
+        while (!executor.isTerminated()) {
+            executor.shutdown();
+            drained += clickTracker.drain().stream().mapToLong(d -> d.clicks).sum();
+            executor.awaitTermination(1, TimeUnit.MILLISECONDS);
+        }
+        drained += clickTracker.drain().stream().mapToLong(d -> d.clicks).sum();
+
+        assertEquals((long) threads * clicksPerThread, drained);
+    }
+}
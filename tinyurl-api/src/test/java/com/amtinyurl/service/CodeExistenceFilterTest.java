@@ -0,0 +1,104 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.config.BackgroundThreads;
+import com.amtinyurl.repository.CodeSequenceRepository;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CodeExistenceFilterTest {
+
+    private static final long PERMUTATION_KEY = 42L;
+
+    private final ShortCodePermutation permutation = new ShortCodePermutation(PERMUTATION_KEY);
+    private final UrlRepository urlRepository = mock(UrlRepository.class);
+    private final CodeSequenceRepository codeSequenceRepository = mock(CodeSequenceRepository.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final CodeExistenceFilter filter = new CodeExistenceFilter(urlRepository, codeSequenceRepository,
+        ShardRouter.unsharded(), redisTemplate, new BackgroundThreads(false), true, 1_000, 0.01, 30, 1_000,
+        100, PERMUTATION_KEY);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void codesOutsideRecentBlocksAreRejectedByTheFilterAlone() {
+        when(codeSequenceRepository.findNextValue(CodeAllocator.SEQUENCE_NAME)).thenReturn(Optional.of(1_000L));
+        when(urlRepository.findCodesAfter(anyString(), any())).thenReturn(List.of(permutation.encode(5)), List.of());
+        filter.rebuild();
+
+        assertTrue(filter.mightExist(permutation.encode(5)));
+        // Issued long before the rebuild, or never leased at all
+        assertFalse(filter.mightExist(permutation.encode(50)));
+        assertFalse(filter.mightExist(permutation.encode(5_000)));
+        assertEquals(2L, filter.getStats().get("filterRejects"));
+    }
+
+    @Test
+    void recentCodesMissingFromTheFilterAreConfirmedInTheDatabase() {
+        when(codeSequenceRepository.findNextValue(CodeAllocator.SEQUENCE_NAME)).thenReturn(Optional.of(1_000L));
+        when(urlRepository.findCodesAfter(anyString(), any())).thenReturn(List.of(permutation.encode(5)), List.of());
+        filter.rebuild();
+
+        // Issued on another node whose broadcast never arrived
+        String recent = permutation.encode(950);
+        assertTrue(filter.definitelyAbsent(recent));
+        assertTrue(filter.mightExist(recent));
+        filter.recordFound(recent);
+        assertFalse(filter.definitelyAbsent(recent));
+        assertEquals(1L, filter.getStats().get("unannounced"));
+
+        // A block leased after the rebuild comes into the window once the counter is read again
+        String leasedLater = permutation.encode(5_000);
+        assertFalse(filter.mightExist(leasedLater));
+        when(codeSequenceRepository.findNextValue(CodeAllocator.SEQUENCE_NAME)).thenReturn(Optional.of(6_000L));
+        filter.refreshSequence();
+        assertTrue(filter.mightExist(leasedLater));
+
+        filter.recordMissing(leasedLater);
+        assertFalse(filter.mightExist(leasedLater));
+    }
+
+    @Test
+    void resubscribingRebuildsTheFilter() {
+        when(codeSequenceRepository.findNextValue(CodeAllocator.SEQUENCE_NAME)).thenReturn(Optional.of(1_000L));
+        when(urlRepository.findCodesAfter(anyString(), any())).thenReturn(List.of());
+        filter.rebuild();
+        filter.onChannelSubscribed(CodeExistenceFilter.CHANNEL.getBytes(), 1);
+        verify(urlRepository, times(1)).findCodesAfter(anyString(), any());
+
+        filter.onChannelSubscribed(CodeExistenceFilter.CHANNEL.getBytes(), 1);
+        verify(urlRepository, timeout(1_000).times(2)).findCodesAfter(anyString(), any());
+    }
+
+    @Test
+    void issuedCodesAreBroadcastOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        filter.recordIssued("aaaaaaa");
+        filter.recordIssued(List.of("bbbbbbb", "ccccccc"));
+        verifyNoInteractions(redisTemplate);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(redisTemplate).convertAndSend(CodeExistenceFilter.CHANNEL, "aaaaaaa");
+        verify(redisTemplate).convertAndSend(CodeExistenceFilter.CHANNEL, "bbbbbbb,ccccccc");
+    }
+}
@@ -0,0 +1,75 @@
+package com.amtinyurl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportRecordReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<ImportRecordReader.Record> readAll(String body, ImportRecordReader.Format format, int maxLineLength)
+            throws IOException {
+        ImportRecordReader reader = new ImportRecordReader(new StringReader(body), format, maxLineLength, objectMapper);
+        List<ImportRecordReader.Record> records = new ArrayList<>();
+        ImportRecordReader.Record record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    void testNdjsonObjectsAndStrings() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+            "{\"url\":\"https://a.example\"}\n\n\"b.example/x\"\r\n{\"link\":1}\nnot json\n",
+            ImportRecordReader.Format.NDJSON, 8192);
+
+        assertEquals(4, records.size());
+        assertEquals(1, records.get(0).line);
+        assertEquals("https://a.example", records.get(0).url);
+        assertEquals(3, records.get(1).line);
+        assertEquals("b.example/x", records.get(1).url);
+        assertEquals("INVALID_LINE", records.get(2).error);
+        assertEquals("INVALID_LINE", records.get(3).error);
+    }
+
+    @Test
+    void testCsvHeaderSelectsUrlColumn() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+            "id,URL,note\n1,https://a.example,x\n2,\"https://b.example/?q=\"\"a,b\"\"\",y",
+            ImportRecordReader.Format.CSV, 8192);
+
+        assertEquals(2, records.size());
+        assertEquals(2, records.get(0).line);
+        assertEquals("https://a.example", records.get(0).url);
+        assertEquals("https://b.example/?q=\"a,b\"", records.get(1).url);
+    }
+
+    @Test
+    void testCsvWithoutHeaderUsesFirstColumn() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+            "https://a.example,legacy\nhttps://b.example\n", ImportRecordReader.Format.CSV, 8192);
+
+        assertEquals(2, records.size());
+        assertEquals("https://a.example", records.get(0).url);
+        assertEquals("https://b.example", records.get(1).url);
+    }
+
+    @Test
+    void testOverlongLineIsReportedAndSkipped() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+            "https://" + "a".repeat(100) + "\nhttps://b.example\n", ImportRecordReader.Format.CSV, 32);
+
+        assertEquals(2, records.size());
+        assertEquals("LINE_TOO_LONG", records.get(0).error);
+        assertEquals(2, records.get(1).line);
+        assertEquals("https://b.example", records.get(1).url);
+    }
+}
@@ -34,6 +34,27 @@ class JwtServiceTest {
         assertNull(result);
     }
 
+    @Test
+    void shouldAuthenticateRepeatedTokenFromCache() {
+        String token = jwtService.generateToken("AbC123");
+
+        assertEquals("abc123", jwtService.authenticate(token));
+        assertEquals("abc123", jwtService.authenticate(token));
+    }
+
+    @Test
+    void shouldRejectTamperedTokenAfterOriginalWasCached() {
+        String token = jwtService.generateToken("AbC123");
+        assertEquals("abc123", jwtService.authenticate(token));
+
+        String[] parts = token.split("\\.");
+        char last = parts[2].charAt(0);
+        String tampered = parts[0] + "." + parts[1] + "." + (last == 'A' ? 'B' : 'A') + parts[2].substring(1);
+
+        assertNull(jwtService.authenticate(tampered));
+        assertNull(jwtService.authenticate(token + "x"));
+    }
+
     @Test
     void shouldValidateUserIdFormat() {
         assertTrue(jwtService.isValidUserId("abc123"));
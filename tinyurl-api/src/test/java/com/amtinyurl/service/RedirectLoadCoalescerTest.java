@@ -0,0 +1,90 @@
+package com.amtinyurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectLoadCoalescerTest {
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        RedirectLoadCoalescer coalescer = new RedirectLoadCoalescer(true, 5_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<String>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> coalescer.load("abc1234", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Optional.of("https://example.com");
+                })));
+            }
+            // Let every caller reach the in-flight load before the leader finishes
+            while ((long) coalescer.getStats().get("coalesced") < callers - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<Optional<String>> result : results) {
+                assertEquals(Optional.of("https://example.com"), result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, coalescer.getStats().get("loads"));
+        assertEquals(0, coalescer.getStats().get("inFlight"));
+    }
+
+    @Test
+    void testWaiterLoadsDirectlyAfterTimeout() throws Exception {
+        RedirectLoadCoalescer coalescer = new RedirectLoadCoalescer(true, 20);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> coalescer.load("abc1234", () -> {
+            leaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of("https://example.com/slow");
+        }));
+        leader.start();
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        Optional<String> result = coalescer.load("abc1234", () -> Optional.of("https://example.com/direct"));
+        release.countDown();
+        leader.join();
+
+        assertEquals(Optional.of("https://example.com/direct"), result);
+        assertEquals(1L, coalescer.getStats().get("timeouts"));
+    }
+
+    @Test
+    void testLeaderFailureIsNotCached() {
+        RedirectLoadCoalescer coalescer = new RedirectLoadCoalescer(true, 1_000);
+        assertThrows(IllegalStateException.class, () -> coalescer.load("abc1234", () -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertEquals(Optional.empty(), coalescer.load("abc1234", Optional::empty));
+        assertEquals(2L, coalescer.getStats().get("loads"));
+    }
+}
@@ -0,0 +1,37 @@
+package com.amtinyurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodeCodecTest {
+
+    @Test
+    void shouldRoundTripAcrossTheCodeSpace() {
+        long[] samples = {0, 1, 35, 36, 123_456_789, ShortCodeCodec.CODE_SPACE - 1};
+        for (long value : samples) {
+            String code = ShortCodeCodec.format(value);
+            assertEquals(ShortCodeCodec.CODE_LENGTH, code.length());
+            assertEquals(value, ShortCodeCodec.parse(code));
+        }
+        assertEquals("aaaaaaa", ShortCodeCodec.format(0));
+        assertEquals("9999999", ShortCodeCodec.format(ShortCodeCodec.CODE_SPACE - 1));
+    }
+
+    @Test
+    void shouldParseCaseInsensitivelyAndWithinBounds() {
+        assertEquals(ShortCodeCodec.parse("abc1234"), ShortCodeCodec.parse("ABC1234"));
+        assertEquals(ShortCodeCodec.parse("abc1234"), ShortCodeCodec.parse("/abc1234?x=1", 1, 8));
+    }
+
+    @Test
+    void shouldRejectNonCodes() {
+        assertEquals(ShortCodeCodec.INVALID, ShortCodeCodec.parse(null));
+        assertEquals(ShortCodeCodec.INVALID, ShortCodeCodec.parse("abc123"));
+        assertEquals(ShortCodeCodec.INVALID, ShortCodeCodec.parse("abc12345"));
+        assertEquals(ShortCodeCodec.INVALID, ShortCodeCodec.parse("abc@234"));
+        assertEquals(ShortCodeCodec.INVALID, ShortCodeCodec.parse("abcİ234"));
+        assertThrows(IllegalArgumentException.class, () -> ShortCodeCodec.format(-1));
+        assertThrows(IllegalArgumentException.class, () -> ShortCodeCodec.format(ShortCodeCodec.CODE_SPACE));
+    }
+}
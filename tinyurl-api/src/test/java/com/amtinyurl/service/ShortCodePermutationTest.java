@@ -0,0 +1,41 @@
+package com.amtinyurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodePermutationTest {
+
+    private final ShortCodePermutation permutation = new ShortCodePermutation(7318624519375302147L);
+
+    @Test
+    void shouldRoundTripThroughInverse() {
+        long[] samples = {0, 1, 2, 46_655, 1_679_616, 123_456_789, ShortCodePermutation.KEYSPACE_SIZE - 1};
+        for (long value : samples) {
+            long permuted = permutation.permute(value);
+            assertTrue(permuted >= 0 && permuted < ShortCodePermutation.KEYSPACE_SIZE);
+            assertEquals(value, permutation.invert(permuted));
+        }
+    }
+
+    @Test
+    void shouldProduceDistinctValidCodes() {
+        UrlService urlService = new UrlService();
+        Set<String> codes = new HashSet<>();
+        for (long i = 0; i < 100_000; i++) {
+            String code = permutation.encode(i);
+            assertTrue(urlService.isValidShortCode(code), code);
+            assertTrue(codes.add(code), "duplicate code " + code);
+        }
+    }
+
+    @Test
+    void shouldRejectValuesOutsideKeyspace() {
+        assertThrows(IllegalArgumentException.class, () -> permutation.permute(-1));
+        assertThrows(IllegalArgumentException.class,
+            () -> permutation.permute(ShortCodePermutation.KEYSPACE_SIZE));
+    }
+}
@@ -0,0 +1,126 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.entity.Url;
+import com.amtinyurl.metrics.TinyUrlMetrics;
+import com.amtinyurl.repository.UrlRepository;
+import com.amtinyurl.repository.UserUrlRepository;
+import com.amtinyurl.shard.ShardRouter;
+import com.amtinyurl.storage.JpaUrlStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TinyUrlServiceTest {
+
+    private final UrlRepository urlRepository = mock(UrlRepository.class);
+    private final UserUrlRepository userUrlRepository = mock(UserUrlRepository.class);
+    private final CacheService cacheService = mock(CacheService.class);
+    private final CodeExistenceFilter codeExistenceFilter = mock(CodeExistenceFilter.class);
+    private final CodeAllocator codeAllocator = mock(CodeAllocator.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final TinyUrlMetrics metrics = new TinyUrlMetrics(new SimpleMeterRegistry());
+    private final UrlCreateCoalescer urlCreateCoalescer = new UrlCreateCoalescer(true, 5_000);
+    private final UserUrlVersions userUrlVersions = mock(UserUrlVersions.class);
+
+    private final TinyUrlService tinyUrlService = new TinyUrlService(urlRepository,
+        new JpaUrlStore(urlRepository, ShardRouter.unsharded()), userUrlRepository, null, new UrlService(),
+        cacheService, codeExistenceFilter, codeAllocator, metrics, new RedirectLoadCoalescer(true, 1_000),
+        urlCreateCoalescer, transactionTemplate, ShardRouter.unsharded(), userUrlVersions);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(cacheService.getCodeByUrlHash(anyString())).thenReturn(new CacheService.CacheResult(null, false));
+        when(codeAllocator.nextCode()).thenReturn("abc1234");
+        when(codeExistenceFilter.definitelyAbsent(anyString())).thenReturn(true);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+            ((TransactionCallback<Url>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void testLoserOfInsertRaceReusesWinningRow() {
+        Url winner = new Url("zzz9999", "https://example.com/race", "hash", LocalDateTime.now());
+        when(urlRepository.findByUrlHash(anyString())).thenReturn(Optional.empty(), Optional.of(winner));
+        when(urlRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        TinyUrlService.CreateUrlResult result = tinyUrlService.createOrGetShortUrl("https://example.com/race", "abc123");
+
+        assertEquals("zzz9999", result.code);
+        assertTrue(result.existed);
+        assertEquals(1.0, metrics.createRaceReused.count());
+        verify(urlRepository, times(1)).saveAndFlush(any());
+        verify(userUrlRepository).save(any());
+        verify(userUrlVersions).bump("abc123");
+    }
+
+    @Test
+    void testConcurrentCreatesOfOneUrlShareOneInsert() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(urlRepository.findByUrlHash(anyString())).thenReturn(Optional.empty());
+        when(urlRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            Url url = invocation.getArgument(0);
+            url.setCreatedAt(LocalDateTime.now());
+            return url;
+        });
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<Future<TinyUrlService.CreateUrlResult>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                String userId = "user0" + i;
+                results.add(pool.submit(() -> tinyUrlService.createOrGetShortUrl("https://example.com/viral", userId)));
+            }
+            // Hold the insert until every other caller has joined it
+            while ((long) urlCreateCoalescer.getStats().get("coalesced") < callers - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            int created = 0;
+            for (Future<TinyUrlService.CreateUrlResult> result : results) {
+                TinyUrlService.CreateUrlResult item = result.get(5, TimeUnit.SECONDS);
+                assertEquals("abc1234", item.code);
+                if (!item.existed) {
+                    created++;
+                }
+            }
+            assertEquals(1, created);
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(urlRepository, times(1)).saveAndFlush(any());
+        verify(userUrlRepository, times(callers)).save(any());
+    }
+
+    @Test
+    void testCodeMissingOnReplicaIsRereadFromPrimaryBeforeNegativeCaching() {
+        Url url = new Url("abc1234", "https://example.com/fresh", "hash", LocalDateTime.now());
+        when(codeExistenceFilter.mightExist("abc1234")).thenReturn(true);
+        when(cacheService.getUrlByCode("abc1234")).thenReturn(new CacheService.CacheResult(null, false));
+        when(urlRepository.findById("abc1234")).thenReturn(Optional.empty(), Optional.of(url));
+
+        assertEquals(Optional.of("https://example.com/fresh"), tinyUrlService.getUrlByCode("abc1234"));
+        verify(urlRepository, times(2)).findById("abc1234");
+        verify(codeExistenceFilter, never()).recordMissing(anyString());
+    }
+}
@@ -3,6 +3,8 @@ package com.amtinyurl.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class UrlServiceTest {
@@ -49,11 +51,55 @@ class UrlServiceTest {
     }
 
     @Test
-    void shouldGenerateValidShortCodes() {
-        String code = urlService.generateShortCode();
-        assertNotNull(code);
-        assertEquals(7, code.length());
-        assertTrue(urlService.isValidShortCode(code));
+    void shouldMatchUrlParserNormalization() {
+        String[] inputs = {
+            "https://Example.com/Path?A=1&b=2#Frag", "  example.com/path  ", "EXAMPLE.COM", "https://a.com:443/x",
+            "https://a.com:8443/x", "https://a.com:+80", "https://a.com:-1/x", "https://a.com:-5", "https://a.com:",
+            "https://a.com:0080/", "https://a.com:x/", "https://a.com?", "https://a.com?#", "https://a.com?#x",
+            "https://a.com#", "https://a.com/p?q#f?g", "https://a.com/x/../y", "https://HTTPS://x", "https://",
+            "https:", "https://u@A.com:443/p", "https://a@b@c.com/p", "https://[::1]:8080/p", "https://[zz]/p",
+            "https://Bücher.de/x", "https://AmTinyUrl.COM", "https://x.AMTINYURL.com.evil/p", "http://a.com",
+            "HTTP://a.com", "https:// a.com/ b", "https://a b.com/", "https://a_b.com/x", "https://a%41.com/x",
+            "https://a+b.com", "https://a.com\t/x", "https://a.com/" + "a".repeat(2030), "https://a.com/" + "a".repeat(2040)
+        };
+        for (String input : inputs) {
+            assertSameNormalization(input);
+        }
+
+        Random random = new Random(42);
+        String alphabet = "aZ09.:/?#@[]-+ %_\t";
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder input = new StringBuilder(random.nextBoolean() ? "https://" : "");
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; j++) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertSameNormalization(input.toString());
+        }
+    }
+
+    private void assertSameNormalization(String input) {
+        String expected;
+        try {
+            expected = urlService.normalizeUrlWithParser(input);
+        } catch (IllegalArgumentException e) {
+            assertThrows(IllegalArgumentException.class, () -> urlService.normalizeUrl(input), input);
+            return;
+        }
+        assertEquals(expected, urlService.normalizeUrl(input), input);
+    }
+
+    @Test
+    void shouldReturnAlreadyNormalizedUrlUnchanged() {
+        String normalized = "https://example.com/path?query=1#top";
+        assertSame(normalized, urlService.normalizeUrl(normalized));
+    }
+
+    @Test
+    void shouldHashUrlLikeMysqlSha2() {
+        assertEquals("100680ad546ce6a577f42f52df33b4cfdca756859e664b8d7de329b150d09ce9",
+            urlService.hashUrl("https://example.com"));
+        assertEquals(64, urlService.hashUrl("https://example.com/" + "a".repeat(2000)).length());
     }
 
     @Test
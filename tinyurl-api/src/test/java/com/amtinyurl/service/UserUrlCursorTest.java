@@ -0,0 +1,36 @@
+package com.amtinyurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserUrlCursorTest {
+
+    @Test
+    void testRoundTrip() {
+        UserUrlCursor cursor = new UserUrlCursor(LocalDateTime.of(2024, 3, 1, 12, 30, 5), "abc1234");
+
+        String encoded = cursor.encode();
+        UserUrlCursor decoded = UserUrlCursor.decode(encoded);
+
+        assertFalse(encoded.contains("|"));
+        assertEquals(cursor.createdAt, decoded.createdAt);
+        assertEquals(cursor.code, decoded.code);
+    }
+
+    @Test
+    void testRoundTripKeepsFractionalSeconds() {
+        UserUrlCursor cursor = new UserUrlCursor(LocalDateTime.of(2024, 3, 1, 12, 30, 5, 123_000_000), "zz9yy8x");
+
+        assertEquals(cursor.createdAt, UserUrlCursor.decode(cursor.encode()).createdAt);
+    }
+
+    @Test
+    void testRejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> UserUrlCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> UserUrlCursor.decode("bm8tc2VwYXJhdG9y"));
+        assertThrows(IllegalArgumentException.class, () -> UserUrlCursor.decode("bm90LWEtZGF0ZXxhYmMxMjM0"));
+    }
+}
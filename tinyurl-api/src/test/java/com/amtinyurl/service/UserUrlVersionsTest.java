@@ -0,0 +1,88 @@
+package com.amtinyurl.service;
+
+import com.amtinyurl.cache.RedisCircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserUrlVersionsTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+    private final UserUrlVersions versions = new UserUrlVersions(redisTemplate, circuitBreaker, true, 3600);
+
+    UserUrlVersionsTest() {
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(circuitBreaker.allowRequest()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testMissingVersionStartsFromARandomValueWithTtl() {
+        when(values.get("user-urls:version:alice")).thenReturn(null, "8589934601");
+
+        assertEquals("8589934601", versions.current("alice"));
+
+        verify(values).setIfAbsent(eq("user-urls:version:alice"),
+            argThat(initial -> Long.parseLong(initial) >= 1L << 32), eq(Duration.ofHours(1)));
+    }
+
+    @Test
+    void testNoVersionWhileRedisIsUnavailable() {
+        when(circuitBreaker.allowRequest()).thenReturn(false);
+
+        assertNull(versions.current("alice"));
+        verifyNoInteractions(values);
+        assertEquals(1L, versions.getStats().get("unavailable"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBumpInsideTransactionWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        versions.bump("alice");
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("user-urls:version:alice")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFailedBumpWithholdsTheVersionUntilTheKeyIsReset() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList())).thenThrow(new RuntimeException("timeout"));
+        when(values.get(anyString())).thenReturn("8589934601");
+
+        versions.bump("alice");
+        assertNull(versions.current("alice"));
+        assertEquals("8589934601", versions.current("bob"));
+
+        versions.repairStale();
+        verify(redisTemplate).delete("user-urls:version:alice");
+        assertEquals("8589934601", versions.current("alice"));
+        assertEquals(0, versions.getStats().get("staleUsers"));
+    }
+}
@@ -0,0 +1,228 @@
+package com.amtinyurl.shard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRebalancerTest {
+
+    private static final int URLS = 300;
+
+    private final Map<String, DataSource> databases = new LinkedHashMap<>();
+    private ShardRoutingDataSource routing;
+    private ShardDirectory directory;
+    private ShardRouter router;
+    private JdbcTemplate jdbcTemplate;
+
+    // Same tables as the Flyway migrations, in H2's MySQL mode; url_hash is a plain column here
+    private DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE urls (code VARCHAR(7) PRIMARY KEY, normalized_url VARCHAR(2048) NOT NULL, " +
+            "url_hash VARCHAR(64), created_at TIMESTAMP, UNIQUE (url_hash))");
+        jdbc.execute("CREATE TABLE user_urls (user_id_lower VARCHAR(6) NOT NULL, code VARCHAR(7) NOT NULL, " +
+            "created_at TIMESTAMP, PRIMARY KEY (user_id_lower, code))");
+        jdbc.execute("CREATE TABLE url_clicks (code VARCHAR(7) PRIMARY KEY, click_count BIGINT NOT NULL, " +
+            "last_accessed_at TIMESTAMP(3) NOT NULL, FOREIGN KEY (code) REFERENCES urls(code) ON DELETE CASCADE)");
+        jdbc.execute("CREATE TABLE url_hash_index (url_hash VARCHAR(64) PRIMARY KEY, code VARCHAR(7) NOT NULL)");
+        jdbc.execute("CREATE TABLE shard_buckets (bucket INT PRIMARY KEY, owner_shard VARCHAR(32) NOT NULL, " +
+            "peer_shard VARCHAR(32))");
+        databases.put(name, dataSource);
+        return dataSource;
+    }
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            shards.put("shard-" + i, database("shard-" + i));
+        }
+        routing = new ShardRoutingDataSource(shards);
+        routing.afterPropertiesSet();
+        directory = new ShardDirectory(shards.get("shard-0"));
+        router = new ShardRouter(routing, directory);
+        jdbcTemplate = new JdbcTemplate(routing);
+    }
+
+    private static String code(int i) {
+        return String.format("c%06d", i);
+    }
+
+    private static String user(int i) {
+        return String.format("u%05d", i % 40);
+    }
+
+    private void insertThroughRouter() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < URLS; i++) {
+            String code = code(i);
+            String hash = "hash-" + i;
+            String url = "https://example.com/" + i;
+            String user = user(i);
+            router.onShardFor(code, () -> jdbcTemplate.update(
+                "INSERT INTO urls (code, normalized_url, url_hash, created_at) VALUES (?, ?, ?, ?)",
+                code, url, hash, now));
+            router.onShardFor(hash, () -> jdbcTemplate.update(
+                "INSERT INTO url_hash_index (url_hash, code) VALUES (?, ?)", hash, code));
+            router.onShardFor(user, () -> jdbcTemplate.update(
+                "INSERT INTO user_urls (user_id_lower, code, created_at) VALUES (?, ?, ?)", user, code, now));
+            router.onShardFor(code, () -> jdbcTemplate.update(
+                "INSERT INTO url_clicks (code, click_count, last_accessed_at) VALUES (?, ?, ?)", code, 5, now));
+        }
+    }
+
+    private Optional<String> findUrl(String code) {
+        return router.findOnShardFor(code, () -> jdbcTemplate.queryForList(
+            "SELECT normalized_url FROM urls WHERE code = ?", String.class, code).stream().findFirst());
+    }
+
+    private int rowsOn(String shard, String table) {
+        return new JdbcTemplate(databases.get(shard)).queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    @Test
+    void testEverythingStartsOnTheDirectoryShard() {
+        insertThroughRouter();
+
+        assertEquals(Map.of("shard-0", ShardMap.BUCKETS), router.map().bucketsPerShard());
+        assertEquals(URLS, rowsOn("shard-0", "urls"));
+        assertEquals(0, rowsOn("shard-1", "urls"));
+    }
+
+    @Test
+    void testSpreadMovesRowsToTheirNewOwnersAndKeepsThemReachable() {
+        insertThroughRouter();
+        ShardRebalancer rebalancer = new ShardRebalancer(routing, directory, 0, 64, 128, true);
+
+        rebalancer.spread();
+        router.refresh();
+
+        ShardMap map = router.map();
+        assertEquals(Map.of("shard-0", 342, "shard-1", 341, "shard-2", 341), map.bucketsPerShard());
+        assertEquals(0, map.movingBuckets());
+
+        int urls = 0;
+        int associations = 0;
+        int indexed = 0;
+        long clicks = 0;
+        for (String shard : databases.keySet()) {
+            JdbcTemplate jdbc = new JdbcTemplate(databases.get(shard));
+            for (String code : jdbc.queryForList("SELECT code FROM urls", String.class)) {
+                assertEquals(shard, map.ownerOf(code));
+            }
+            for (String hash : jdbc.queryForList("SELECT url_hash FROM url_hash_index", String.class)) {
+                assertEquals(shard, map.ownerOf(hash));
+            }
+            for (String user : jdbc.queryForList("SELECT user_id_lower FROM user_urls", String.class)) {
+                assertEquals(shard, map.ownerOf(user));
+            }
+            urls += rowsOn(shard, "urls");
+            associations += rowsOn(shard, "user_urls");
+            indexed += rowsOn(shard, "url_hash_index");
+            clicks += jdbc.queryForObject("SELECT COALESCE(SUM(click_count), 0) FROM url_clicks", Long.class);
+        }
+        assertEquals(URLS, urls);
+        assertEquals(URLS, associations);
+        assertEquals(URLS, indexed);
+        assertEquals(5L * URLS, clicks);
+        for (int i = 0; i < URLS; i++) {
+            assertEquals(Optional.of("https://example.com/" + i), findUrl(code(i)));
+        }
+    }
+
+    @Test
+    void testReadsFallBackToThePeerWhileABucketMoves() {
+        insertThroughRouter();
+        String code = code(7);
+        int bucket = ShardMap.bucketOf(code);
+
+        // Second step of a move: shard-1 owns the bucket but the row is still only on shard-0
+        directory.assign(List.of(bucket), "shard-1", "shard-0");
+        router.refresh();
+
+        assertEquals(Optional.of("https://example.com/7"), findUrl(code));
+        assertEquals(1L, router.getStats().get("peerReads"));
+        assertTrue(router.findOnShardFor("c999999", Optional::<String>empty).isEmpty());
+    }
+
+    @Test
+    void testSettleFinishesAnInterruptedMove() {
+        insertThroughRouter();
+        List<Integer> buckets = new ArrayList<>();
+        for (int i = 0; i < URLS; i += 10) {
+            buckets.add(ShardMap.bucketOf(code(i)));
+        }
+        directory.assign(buckets, "shard-2", "shard-0");
+
+        new ShardRebalancer(routing, directory, 0, 64, 128, true).settle();
+        router.refresh();
+
+        assertEquals(0, router.map().movingBuckets());
+        for (int i = 0; i < URLS; i += 10) {
+            String code = code(i);
+            assertEquals(1, new JdbcTemplate(databases.get("shard-2")).queryForObject(
+                "SELECT COUNT(*) FROM urls WHERE code = ?", Integer.class, code));
+            assertEquals(0, new JdbcTemplate(databases.get("shard-0")).queryForObject(
+                "SELECT COUNT(*) FROM urls WHERE code = ?", Integer.class, code));
+            assertEquals(Optional.of("https://example.com/" + i), findUrl(code));
+        }
+    }
+
+    @Test
+    void testCodeConflictingOnTheTargetStaysReachableOnThePeer() {
+        insertThroughRouter();
+        String conflicting = code(7);
+        String moved = code(8);
+        int held = ShardMap.bucketOf(conflicting);
+        int released = ShardMap.bucketOf(moved);
+        assertNotEquals(held, released);
+        // The same URL already has another code on shard-1, created across a map switch;
+        // a unique normalized_url stands in for MySQL's generated url_hash
+        JdbcTemplate target = new JdbcTemplate(databases.get("shard-1"));
+        target.execute("CREATE UNIQUE INDEX urls_normalized_url ON urls (normalized_url)");
+        target.update("INSERT INTO urls (code, normalized_url, url_hash, created_at) VALUES (?, ?, ?, ?)",
+            "d000007", "https://example.com/7", "hash-7", new Timestamp(System.currentTimeMillis()));
+        ShardRebalancer rebalancer = new ShardRebalancer(routing, directory, 0, 64, 128, true);
+
+        rebalancer.move("shard-0", "shard-1", List.of(held, released));
+        rebalancer.settle();
+        router.refresh();
+
+        ShardMap map = router.map();
+        assertEquals("shard-0", map.peer(held));
+        assertNull(map.peer(released));
+        JdbcTemplate source = new JdbcTemplate(databases.get("shard-0"));
+        assertEquals(5L, source.queryForObject(
+            "SELECT click_count FROM url_clicks WHERE code = ?", Long.class, conflicting));
+        assertEquals(0, target.queryForObject(
+            "SELECT COUNT(*) FROM url_clicks WHERE code = ?", Integer.class, conflicting));
+        assertEquals(5L, target.queryForObject(
+            "SELECT click_count FROM url_clicks WHERE code = ?", Long.class, moved));
+        assertEquals(0, source.queryForObject("SELECT COUNT(*) FROM urls WHERE code = ?", Integer.class, moved));
+        assertEquals(Optional.of("https://example.com/7"), findUrl(conflicting));
+        assertEquals(Optional.of("https://example.com/8"), findUrl(moved));
+    }
+
+    @Test
+    void testShardCannotChangeInsideATransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+
+        assertThrows(IllegalStateException.class, () -> transaction.execute(status ->
+            ShardRoutingDataSource.on("shard-1", () -> jdbcTemplate.queryForObject("SELECT 1", Integer.class))));
+    }
+}
@@ -0,0 +1,170 @@
+package com.amtinyurl.storage;
+
+import com.amtinyurl.entity.Url;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStructuredStoreTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000);
+
+    @TempDir
+    Path directory;
+
+    private final List<LogStructuredStore> opened = new ArrayList<>();
+
+    private LogStructuredStore open(int segmentBytes, long fsyncIntervalMillis) throws IOException {
+        LogStructuredStore store = new LogStructuredStore(directory, segmentBytes, fsyncIntervalMillis, 0.5, 16, Thread::new);
+        opened.add(store);
+        return store;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (LogStructuredStore store : opened) {
+            store.close();
+        }
+    }
+
+    private static Url url(String code, String target) {
+        return new Url(code, target, "hash-" + target, CREATED);
+    }
+
+    private static String code(int i) {
+        return String.format("c%06d", i);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testMappingsSurviveReopen() throws Exception {
+        LogStructuredStore store = open(1 << 20, 0);
+        for (int i = 0; i < 500; i++) {
+            store.put(url(code(i), "https://example.com/" + i));
+        }
+        store.close();
+
+        LogStructuredStore reopened = open(1 << 20, 0);
+        assertEquals(500, reopened.size());
+        Url found = reopened.get(code(42)).orElseThrow();
+        assertEquals("https://example.com/42", found.getNormalizedUrl());
+        assertEquals("hash-https://example.com/42", found.getUrlHash());
+        assertEquals(CREATED, found.getCreatedAt());
+        assertEquals(Optional.of(code(7)), reopened.findByUrlHash("hash-https://example.com/7").map(Url::getCode));
+        assertTrue(reopened.contains(code(499)));
+        assertFalse(reopened.contains("zzzzzzz"));
+        assertTrue(reopened.findByUrlHash("hash-unknown").isEmpty());
+    }
+
+    @Test
+    void testTornTailIsDiscardedAndAppendsResume() throws Exception {
+        LogStructuredStore store = open(1 << 16, 0);
+        store.put(url("aaa0001", "https://example.com/one"));
+        store.put(url("aaa0002", "https://example.com/two"));
+        store.close();
+
+        // Damage the last record's URL bytes, as a crash mid-write would
+        Path segment = directory.resolve("segment-00000001.log");
+        byte[] bytes = Files.readAllBytes(segment);
+        int last = bytes.length - 1;
+        while (bytes[last] == 0) {
+            last--;
+        }
+        bytes[last - 2] ^= 0x5a;
+        Files.write(segment, bytes);
+
+        LogStructuredStore recovered = open(1 << 16, 0);
+        assertTrue(recovered.contains("aaa0001"));
+        assertFalse(recovered.contains("aaa0002"));
+        assertTrue((long) recovered.getStats().get("discardedTailBytes") > 0);
+
+        recovered.put(url("aaa0003", "https://example.com/three"));
+        recovered.close();
+        LogStructuredStore again = open(1 << 16, 0);
+        assertEquals(2, again.size());
+        assertEquals("https://example.com/three", again.get("aaa0003").orElseThrow().getNormalizedUrl());
+        assertEquals(0L, again.getStats().get("discardedTailBytes"));
+    }
+
+    @Test
+    void testCompactionKeepsLatestValuesAndDropsGarbage() throws Exception {
+        LogStructuredStore store = open(4096, 0);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 10; i++) {
+                store.put(url(code(i), "https://example.com/" + i + "?v=" + round));
+            }
+        }
+        store.put(url("gone001", "https://example.com/deleted"));
+        assertTrue(store.delete("gone001"));
+        long before = segmentFiles();
+
+        assertTrue(store.compact() > 0);
+        assertTrue(segmentFiles() < before);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("https://example.com/" + i + "?v=19", store.get(code(i)).orElseThrow().getNormalizedUrl());
+        }
+        assertFalse(store.contains("gone001"));
+        store.close();
+
+        LogStructuredStore reopened = open(4096, 0);
+        assertEquals(10, reopened.size());
+        assertEquals("https://example.com/3?v=19", reopened.get(code(3)).orElseThrow().getNormalizedUrl());
+        assertFalse(reopened.contains("gone001"));
+        assertTrue(reopened.findByUrlHash("hash-https://example.com/3?v=18").isEmpty());
+    }
+
+    @Test
+    void testUnchangedMappingIsNotRewritten() throws Exception {
+        LogStructuredStore store = open(1 << 16, 0);
+        store.put(url("aaa0001", "https://example.com/one"));
+        long bytes = (long) store.getStats().get("dataBytes");
+
+        store.put(url("aaa0001", "https://example.com/one"));
+
+        assertEquals(bytes, store.getStats().get("dataBytes"));
+    }
+
+    @Test
+    void testConcurrentWritersShareFsyncs() throws Exception {
+        LogStructuredStore store = open(1 << 20, 5);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                writes.add(pool.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        store.put(url(code(thread * 100 + i), "https://example.com/" + thread + "/" + i));
+                    }
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(200, store.size());
+        assertTrue((long) store.getStats().get("fsyncs") < 200);
+    }
+}
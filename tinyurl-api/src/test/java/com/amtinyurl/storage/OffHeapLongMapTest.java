@@ -0,0 +1,42 @@
+package com.amtinyurl.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapLongMapTest {
+
+    @Test
+    void testMatchesHashMapThroughGrowthAndRemoval() {
+        OffHeapLongMap map = new OffHeapLongMap(16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? OffHeapLongMap.ABSENT : removed, map.remove(key));
+            } else {
+                Long replaced = expected.put(key, (long) i);
+                assertEquals(replaced == null ? OffHeapLongMap.ABSENT : replaced, map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 20_000; key++) {
+            assertEquals(expected.getOrDefault(key, OffHeapLongMap.ABSENT), map.get(key));
+        }
+    }
+
+    @Test
+    void testPackedCodesAreDistinctKeys() {
+        assertNotEquals(LogStructuredStore.codeKey("abc1234"), LogStructuredStore.codeKey("abc1235"));
+        assertNotEquals(0L, LogStructuredStore.codeKey("0000000"));
+        assertTrue(LogStructuredStore.codeKey("a-code-longer-than-eight") < 0);
+    }
+}
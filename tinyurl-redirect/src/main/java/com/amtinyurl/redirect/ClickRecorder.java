@@ -0,0 +1,165 @@
+package com.amtinyurl.redirect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the redirects this node serves and adds them to {@code url_clicks} like tinyurl-api's
+ * {@code ClickTracker}: per-code {@link LongAdder}s are drained every
+ * {@code REDIRECT_CLICK_FLUSH_MS} into batched upserts with the same SQL, so deltas from both
+ * fleets add up. A failed flush keeps the deltas for the next window; codes with no clicks for a
+ * minute drop out of the map, and a click that lands on a counter as it is being dropped is moved
+ * to its replacement by whichever side sees the other second.
+ */
+final class ClickRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickRecorder.class);
+
+    // Same statement as ClickTracker.UPSERT_SQL in tinyurl-api
+    static final String UPSERT_SQL =
+        "INSERT INTO url_clicks (code, click_count, last_accessed_at) VALUES (?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE click_count = click_count + VALUES(click_count), " +
+        "last_accessed_at = GREATEST(last_accessed_at, VALUES(last_accessed_at))";
+
+    private static final int BATCH_SIZE = 500;
+    static final long IDLE_RETIRE_MILLIS = 60_000;
+
+    private final DataSource dataSource;
+    private final long idleRetireMillis;
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final LongAdder flushedClicks = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    ClickRecorder(DataSource dataSource, long idleRetireMillis) {
+        this.dataSource = dataSource;
+        this.idleRetireMillis = idleRetireMillis;
+    }
+
+    void record(String code) {
+        Counter counter = counters.get(code);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(code, Counter::new);
+        }
+        counter.clicks.increment();
+        long now = System.currentTimeMillis();
+        // Skip the shared write when another click already stamped this millisecond
+        if (counter.lastAccessMillis != now) {
+            counter.lastAccessMillis = now;
+        }
+        moveIfRetired(counter);
+    }
+
+    // Run on the scheduler thread and once at shutdown
+    void flush() {
+        List<Counter> drained = new ArrayList<>();
+        List<Long> clicks = new ArrayList<>();
+        long retireBefore = System.currentTimeMillis() - idleRetireMillis;
+        Iterator<Counter> entries = counters.values().iterator();
+        while (entries.hasNext()) {
+            Counter counter = entries.next();
+            long count = counter.clicks.sumThenReset();
+            if (count == 0) {
+                if (counter.lastAccessMillis < retireBefore) {
+                    // Marked only once it is gone, so a replacement is never the retired counter itself
+                    entries.remove();
+                    counter.retired = true;
+                    moveIfRetired(counter);
+                }
+                continue;
+            }
+            drained.add(counter);
+            clicks.add(count);
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        int written = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            // The pool hands out read-only connections for lookups
+            connection.setReadOnly(false);
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+                for (int i = 0; i < drained.size(); i++) {
+                    statement.setString(1, drained.get(i).code);
+                    statement.setLong(2, clicks.get(i));
+                    statement.setTimestamp(3, new Timestamp(drained.get(i).lastAccessMillis));
+                    statement.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0 || i == drained.size() - 1) {
+                        statement.executeBatch();
+                        written = i + 1;
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            flushFailures.increment();
+            log.warn("Failed to flush {} click deltas, retrying next window: {}", drained.size() - written, e.getMessage());
+            for (int i = written; i < drained.size(); i++) {
+                restore(drained.get(i), clicks.get(i));
+            }
+        }
+
+        long total = 0;
+        for (int i = 0; i < written; i++) {
+            total += clicks.get(i);
+        }
+        flushedClicks.add(total);
+        log.debug("Flushed {} clicks for {} codes", total, written);
+    }
+
+    private void restore(Counter drained, long count) {
+        Counter counter = counters.computeIfAbsent(drained.code, Counter::new);
+        counter.clicks.add(count);
+        if (counter.lastAccessMillis < drained.lastAccessMillis) {
+            counter.lastAccessMillis = drained.lastAccessMillis;
+        }
+        moveIfRetired(counter);
+    }
+
+    // Clicks that landed on a counter after the flush dropped it go to the code's current counter.
+    // Both sides check after writing, so at least one of them sees the other's write.
+    private void moveIfRetired(Counter counter) {
+        if (counter.retired) {
+            long late = counter.clicks.sumThenReset();
+            if (late != 0) {
+                restore(counter, late);
+            }
+        }
+    }
+
+    Map<String, Long> getStats() {
+        long pending = 0;
+        for (Counter counter : counters.values()) {
+            pending += counter.clicks.sum();
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("pendingClicks", pending);
+        stats.put("flushedClicks", flushedClicks.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    private static final class Counter {
+        private final String code;
+        private final LongAdder clicks = new LongAdder();
+        private volatile long lastAccessMillis;
+        private volatile boolean retired;
+
+        Counter(String code) {
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.amtinyurl.redirect;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code to URL resolution for the redirect node: in-process cache, then the shared Redis
+ * {@code code:} keys, then the {@code urls} table. Database hits are written back to Redis
+ * with the API's TTL, so both fleets warm the same cache. Redis is skipped while its
+ * {@link RedisCircuit} is open.
+ */
+final class CodeLookup {
+
+    private static final Logger log = LoggerFactory.getLogger(CodeLookup.class);
+
+    // Same key layout and TTL as CacheService in tinyurl-api
+    static final String CODE_TO_URL_PREFIX = "code:";
+    static final Duration TTL = Duration.ofMinutes(5);
+
+    private static final String SELECT_URL_SQL = "SELECT normalized_url FROM urls WHERE code = ?";
+
+    private final RedisCircuit redis;
+    private final DataSource dataSource;
+    private final Cache<String, String> nearCache;
+    private final Cache<String, Boolean> negativeCache;
+    private final SetArgs setArgs = SetArgs.Builder.ex(TTL);
+
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder databaseHits = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    CodeLookup(RedisCircuit redis, DataSource dataSource, RedirectConfig config) {
+        this.redis = redis;
+        this.dataSource = dataSource;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(config.nearCacheMaxEntries)
+                .expireAfterWrite(config.nearCacheTtl)
+                .build();
+        this.negativeCache = Caffeine.newBuilder()
+                .maximumSize(config.nearCacheMaxEntries)
+                .expireAfterWrite(config.negativeTtl)
+                .build();
+    }
+
+    /**
+     * Returns the normalized URL for {@code code}, or {@code null} if it does not exist.
+     */
+    String find(String code) throws SQLException {
+        String url = nearCache.getIfPresent(code);
+        if (url != null) {
+            nearHits.increment();
+            return url;
+        }
+        if (negativeCache.getIfPresent(code) != null) {
+            notFound.increment();
+            return null;
+        }
+
+        RedisCommands<String, String> commands = redis.commands();
+        if (commands != null) {
+            try {
+                url = commands.get(CODE_TO_URL_PREFIX + code);
+                redis.recordSuccess();
+            } catch (RuntimeException e) {
+                redisErrors.increment();
+                redis.recordFailure(e);
+                log.debug("Redis lookup failed for code {}: {}", code, e.getMessage());
+            }
+        }
+        if (url != null) {
+            redisHits.increment();
+            nearCache.put(code, url);
+            return url;
+        }
+
+        url = findInDatabase(code);
+        if (url == null) {
+            notFound.increment();
+            negativeCache.put(code, Boolean.TRUE);
+            return null;
+        }
+        databaseHits.increment();
+        nearCache.put(code, url);
+        commands = redis.commands();
+        if (commands != null) {
+            try {
+                commands.set(CODE_TO_URL_PREFIX + code, url, setArgs);
+                redis.recordSuccess();
+            } catch (RuntimeException e) {
+                redisErrors.increment();
+                redis.recordFailure(e);
+                log.debug("Failed to cache code->url mapping for {}: {}", code, e.getMessage());
+            }
+        }
+        return url;
+    }
+
+    private String findInDatabase(String code) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_URL_SQL)) {
+            statement.setString(1, code);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? rows.getString(1) : null;
+            }
+        }
+    }
+
+    // A code that was just issued must not keep answering 404 from the negative cache
+    void forgetMissing(String code) {
+        negativeCache.invalidate(code);
+    }
+
+    Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("nearHits", nearHits.sum());
+        stats.put("redisHits", redisHits.sum());
+        stats.put("databaseHits", databaseHits.sum());
+        stats.put("notFound", notFound.sum());
+        stats.put("redisErrors", redisErrors.sum());
+        stats.put("nearSize", nearCache.estimatedSize());
+        return stats;
+    }
+}
@@ -0,0 +1,76 @@
+package com.amtinyurl.redirect;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.Map;
+
+/**
+ * Liveness/readiness for load balancers: 200 when MySQL answers, 503 otherwise. Redis is reported
+ * as its circuit state but does not gate readiness, since lookups fall back to MySQL without it.
+ * Mounted on a path that cannot collide with a short code.
+ */
+final class HealthHandler implements HttpHandler {
+
+    static final String PATH = "/_health";
+
+    private final RedisCircuit redis;
+    private final ClickRecorder clickRecorder;
+    private final DataSource dataSource;
+    private final CodeLookup codeLookup;
+
+    HealthHandler(RedisCircuit redis, DataSource dataSource, CodeLookup codeLookup, ClickRecorder clickRecorder) {
+        this.redis = redis;
+        this.dataSource = dataSource;
+        this.codeLookup = codeLookup;
+        this.clickRecorder = clickRecorder;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            boolean redisUp = redis.getState() == RedisCircuit.State.CLOSED;
+            boolean databaseUp = databaseUp();
+            boolean up = databaseUp;
+
+            StringBuilder body = new StringBuilder(320);
+            body.append("{\"status\":\"").append(up ? "UP" : "DOWN").append('"')
+                .append(",\"redis\":\"").append(redisUp ? "UP" : "DOWN").append('"')
+                .append(",\"database\":\"").append(databaseUp ? "UP" : "DOWN").append('"')
+                .append(",\"lookups\":");
+            appendStats(body, codeLookup.getStats());
+            body.append(",\"redisCircuit\":");
+            appendStats(body, redis.getStats());
+            body.append(",\"clicks\":");
+            appendStats(body, clickRecorder.getStats());
+            body.append('}');
+
+            RedirectHandler.sendJson(exchange, up ? 200 : 503, body.toString().getBytes(StandardCharsets.UTF_8),
+                "HEAD".equals(exchange.getRequestMethod()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void appendStats(StringBuilder body, Map<String, Long> stats) {
+        body.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : stats.entrySet()) {
+            body.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+            first = false;
+        }
+        body.append('}');
+    }
+
+    private boolean databaseUp() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(1);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.amtinyurl.redirect;
+
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+
+/**
+ * Follows the API's {@code codes:issued} broadcast so a code created after this node cached it
+ * as missing stops answering 404.
+ */
+final class IssuedCodesSubscriber extends RedisPubSubAdapter<String, String> {
+
+    // Channel name and payload format of CodeExistenceFilter
+    static final String CODES_ISSUED_CHANNEL = "codes:issued";
+
+    private final CodeLookup codeLookup;
+
+    IssuedCodesSubscriber(CodeLookup codeLookup) {
+        this.codeLookup = codeLookup;
+    }
+
+    @Override
+    public void message(String channel, String message) {
+        if (CODES_ISSUED_CHANNEL.equals(channel)) {
+            onIssued(message);
+        }
+    }
+
+    private void onIssued(String payload) {
+        int from = 0;
+        while (from < payload.length()) {
+            int comma = payload.indexOf(',', from);
+            int to = comma < 0 ? payload.length() : comma;
+            codeLookup.forgetMissing(payload.substring(from, to));
+            from = to + 1;
+        }
+    }
+}
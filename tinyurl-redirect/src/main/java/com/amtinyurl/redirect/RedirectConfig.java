@@ -0,0 +1,68 @@
+package com.amtinyurl.redirect;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Settings for a redirect node, read from the same environment variables tinyurl-api uses
+ * ({@code MYSQL_URL}, {@code MYSQL_USER}, {@code MYSQL_PASSWORD}, {@code REDIS_URL}) plus
+ * a few {@code REDIRECT_*} knobs that size this process. Lookups read the single database at
+ * {@code MYSQL_URL}, so a sharded deployment ({@code MYSQL_SHARD_URLS} set) is refused: codes on
+ * the other shards would answer 404. Those deployments serve redirects from tinyurl-api.
+ */
+final class RedirectConfig {
+
+    final int port;
+    final int threads;
+    final String jdbcUrl;
+    final String dbUser;
+    final String dbPassword;
+    final int dbPoolSize;
+    final String redisUrl;
+    final Duration redisTimeout;
+    final int redisFailureThreshold;
+    final long redisProbeMillis;
+    final long clickFlushMillis;
+    final long nearCacheMaxEntries;
+    final Duration nearCacheTtl;
+    final Duration negativeTtl;
+
+    private RedirectConfig(Map<String, String> env) {
+        String shardUrls = env.get("MYSQL_SHARD_URLS");
+        if (shardUrls != null && !shardUrls.isBlank()) {
+            throw new IllegalStateException("MYSQL_SHARD_URLS is set but the redirect node reads only MYSQL_URL; "
+                + "serve redirects from tinyurl-api in a sharded deployment");
+        }
+        this.port = intValue(env, "REDIRECT_PORT", 8081);
+        this.threads = intValue(env, "REDIRECT_THREADS", 16);
+        this.jdbcUrl = "jdbc:mysql://" + env.getOrDefault("MYSQL_URL", "localhost:3306")
+            + "/tinyurl?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
+        this.dbUser = env.getOrDefault("MYSQL_USER", "root");
+        this.dbPassword = env.getOrDefault("MYSQL_PASSWORD", "admin");
+        this.dbPoolSize = intValue(env, "REDIRECT_DB_POOL_SIZE", 4);
+        this.redisUrl = env.getOrDefault("REDIS_URL", "redis://localhost:6379");
+        this.redisTimeout = Duration.ofMillis(intValue(env, "REDIRECT_REDIS_TIMEOUT_MS", 500));
+        this.redisFailureThreshold = intValue(env, "REDIRECT_REDIS_FAILURE_THRESHOLD", 5);
+        this.redisProbeMillis = intValue(env, "REDIRECT_REDIS_PROBE_MS", 1000);
+        this.clickFlushMillis = intValue(env, "REDIRECT_CLICK_FLUSH_MS", 10_000);
+        this.nearCacheMaxEntries = intValue(env, "REDIRECT_NEAR_CACHE_MAX_ENTRIES", 100_000);
+        this.nearCacheTtl = Duration.ofSeconds(intValue(env, "REDIRECT_NEAR_CACHE_TTL_SECONDS", 60));
+        this.negativeTtl = Duration.ofSeconds(intValue(env, "REDIRECT_NEGATIVE_TTL_SECONDS", 30));
+    }
+
+    static RedirectConfig fromEnvironment(Map<String, String> env) {
+        return new RedirectConfig(env);
+    }
+
+    private static int intValue(Map<String, String> env, String name, int defaultValue) {
+        String value = env.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value);
+        }
+    }
+}
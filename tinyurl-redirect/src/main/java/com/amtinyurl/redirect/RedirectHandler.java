@@ -0,0 +1,84 @@
+package com.amtinyurl.redirect;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@code GET /{code}} with the same status codes, headers and error body as
+ * tinyurl-api's {@code RedirectController}, counting each redirect like it does.
+ */
+final class RedirectHandler implements HttpHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectHandler.class);
+
+    private static final String CACHE_CONTROL = "max-age=100, public";
+    private static final byte[] NOT_FOUND_BODY =
+        "{\"error\":\"Short code not found\",\"code\":\"NOT_FOUND\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INTERNAL_ERROR_BODY =
+        "{\"error\":\"Internal server error\",\"code\":\"INTERNAL_ERROR\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final CodeLookup codeLookup;
+    private final ClickRecorder clickRecorder;
+
+    RedirectHandler(CodeLookup codeLookup, ClickRecorder clickRecorder) {
+        this.codeLookup = codeLookup;
+        this.clickRecorder = clickRecorder;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String code = ShortCodes.fromPath(exchange.getRequestURI().getRawPath());
+            String url;
+            try {
+                url = code == null ? null : codeLookup.find(code);
+            } catch (Exception e) {
+                log.error("Lookup failed for code {}", code, e);
+                sendJson(exchange, 500, INTERNAL_ERROR_BODY, head);
+                return;
+            }
+
+            if (url == null) {
+                log.debug("Short code not found: {}", code);
+                sendJson(exchange, 404, NOT_FOUND_BODY, head);
+                return;
+            }
+
+            clickRecorder.record(code);
+            log.debug("Redirecting {} -> {}", code, url);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Location", url);
+            headers.set("Cache-Control", CACHE_CONTROL);
+            exchange.sendResponseHeaders(301, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static void sendJson(HttpExchange exchange, int status, byte[] body, boolean head) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (head) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.amtinyurl.redirect;
+
+import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry point of the redirect node: the JDK HTTP server with a small fixed worker pool, one
+ * multiplexed Lettuce connection and a few pooled MySQL connections. No Spring context, filter
+ * chain or JSON mapper is involved in serving a redirect. Redis is connected by the first probe
+ * of its circuit rather than here, so the node starts and serves while Redis is down; one
+ * scheduler thread runs those probes and the click flushes.
+ */
+public final class RedirectServer {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectServer.class);
+
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private RedirectServer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long started = System.nanoTime();
+        RedirectConfig config = RedirectConfig.fromEnvironment(System.getenv());
+
+        HikariDataSource dataSource = dataSource(config);
+        ClientResources resources = DefaultClientResources.builder()
+            .ioThreadPoolSize(2)
+            .computationThreadPoolSize(2)
+            .build();
+        RedisURI redisUri = RedisURI.create(config.redisUrl);
+        redisUri.setTimeout(config.redisTimeout);
+        RedisClient redisClient = RedisClient.create(resources, redisUri);
+
+        RedisCircuit redis = new RedisCircuit(redisClient, config.redisFailureThreshold);
+        CodeLookup codeLookup = new CodeLookup(redis, dataSource, config);
+        redis.subscribe(new IssuedCodesSubscriber(codeLookup), IssuedCodesSubscriber.CODES_ISSUED_CHANNEL);
+        ClickRecorder clickRecorder = new ClickRecorder(dataSource, ClickRecorder.IDLE_RETIRE_MILLIS);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("redirect-scheduler"));
+        scheduler.scheduleWithFixedDelay(redis::probe, 0, config.redisProbeMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(clickRecorder::flush, config.clickFlushMillis, config.clickFlushMillis,
+            TimeUnit.MILLISECONDS);
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads, namedThreads("redirect-worker"));
+        HttpServer server = HttpServer.create(new InetSocketAddress(config.port), ACCEPT_BACKLOG);
+        server.createContext("/", new RedirectHandler(codeLookup, clickRecorder));
+        server.createContext(HealthHandler.PATH, new HealthHandler(redis, dataSource, codeLookup, clickRecorder));
+        server.setExecutor(workers);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("Stopping redirect node");
+            server.stop(1);
+            workers.shutdown();
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Clicks counted since the last scheduled flush
+            clickRecorder.flush();
+            redis.close();
+            redisClient.shutdown();
+            resources.shutdown();
+            dataSource.close();
+        }, "redirect-shutdown"));
+
+        log.info("Redirect node listening on port {} with {} workers, started in {} ms",
+            config.port, config.threads, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static HikariDataSource dataSource(RedirectConfig config) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("redirect-db");
+        hikari.setJdbcUrl(config.jdbcUrl);
+        hikari.setUsername(config.dbUser);
+        hikari.setPassword(config.dbPassword);
+        hikari.setMaximumPoolSize(config.dbPoolSize);
+        hikari.setMinimumIdle(1);
+        hikari.setReadOnly(true);
+        // Start even if MySQL is still coming up; lookups fail until it is reachable
+        hikari.setInitializationFailTimeout(-1);
+        return new HikariDataSource(hikari);
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> new Thread(r, name + "-" + index.getAndIncrement());
+    }
+}
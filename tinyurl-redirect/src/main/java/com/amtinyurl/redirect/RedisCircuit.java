@@ -0,0 +1,135 @@
+package com.amtinyurl.redirect;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.pubsub.RedisPubSubListener;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The node's Redis connections behind a circuit breaker, after tinyurl-api's
+ * {@code RedisCircuitBreaker}. The circuit starts open and the first {@link #probe} connects, so
+ * the node starts and serves from MySQL while Redis is down or still coming up. After
+ * {@code REDIRECT_REDIS_FAILURE_THRESHOLD} consecutive failures the circuit opens again and
+ * {@link #commands} turns every Redis call into a skip until a probe PING succeeds. Request
+ * threads never connect or probe, and only state changes are logged. The pub/sub connection is
+ * opened by the same probe; Lettuce resubscribes it after reconnects.
+ */
+final class RedisCircuit {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCircuit.class);
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final RedisClient client;
+    private final int failureThreshold;
+    // Set before the first probe
+    private RedisPubSubListener<String, String> listener;
+    private String[] channels;
+    private final AtomicReference<State> state = new AtomicReference<>(State.OPEN);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile StatefulRedisConnection<String, String> connection;
+    // Only the probe thread and close touch this
+    private StatefulRedisPubSubConnection<String, String> pubSub;
+    private volatile String lastError;
+    private volatile long openedAtMillis = System.currentTimeMillis();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    RedisCircuit(RedisClient client, int failureThreshold) {
+        this.client = client;
+        this.failureThreshold = failureThreshold;
+    }
+
+    /** Registers the listener the probe subscribes once it has connected; call before probing. */
+    void subscribe(RedisPubSubListener<String, String> listener, String... channels) {
+        this.listener = listener;
+        this.channels = channels;
+    }
+
+    /** Commands for one call, or {@code null} when the circuit is open and Redis should be skipped. */
+    RedisCommands<String, String> commands() {
+        if (state.get() == State.CLOSED) {
+            return connection.sync();
+        }
+        shortCircuited.increment();
+        return null;
+    }
+
+    void recordSuccess() {
+        // Plain read first so the healthy path never writes shared state
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    void recordFailure(RuntimeException e) {
+        failures.increment();
+        lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openedAtMillis = System.currentTimeMillis();
+            opened.increment();
+            log.warn("Redis circuit opened after {} consecutive failures, serving from MySQL: {}",
+                failureThreshold, lastError);
+        }
+    }
+
+    // Run on the scheduler thread only
+    void probe() {
+        if (!state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return;
+        }
+        try {
+            if (connection == null) {
+                connection = client.connect();
+            }
+            if (pubSub == null && listener != null) {
+                StatefulRedisPubSubConnection<String, String> subscribed = client.connectPubSub();
+                subscribed.addListener(listener);
+                subscribed.sync().subscribe(channels);
+                pubSub = subscribed;
+            }
+            connection.sync().ping();
+            consecutiveFailures.set(0);
+            state.set(State.CLOSED);
+            log.warn("Redis circuit closed after {} ms open", System.currentTimeMillis() - openedAtMillis);
+        } catch (RuntimeException e) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            state.set(State.OPEN);
+            log.debug("Redis probe failed, circuit stays open: {}", lastError);
+        }
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    void close() {
+        if (pubSub != null) {
+            pubSub.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("consecutiveFailures", (long) consecutiveFailures.get());
+        stats.put("failures", failures.sum());
+        stats.put("opened", opened.sum());
+        stats.put("shortCircuited", shortCircuited.sum());
+        return stats;
+    }
+}
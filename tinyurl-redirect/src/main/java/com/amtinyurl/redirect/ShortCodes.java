@@ -0,0 +1,29 @@
+package com.amtinyurl.redirect;
+
+/**
+ * Route matching for redirects. Mirrors {@code RedirectController}'s {@code /{code:[a-z0-9]{7}}}
+ * mapping and {@code UrlService.isValidShortCode} in tinyurl-api.
+ */
+final class ShortCodes {
+
+    static final int CODE_LENGTH = 7;
+
+    private ShortCodes() {
+    }
+
+    /**
+     * Returns the code if {@code path} is exactly {@code "/" + [a-z0-9]{7}}, otherwise {@code null}.
+     */
+    static String fromPath(String path) {
+        if (path == null || path.length() != CODE_LENGTH + 1 || path.charAt(0) != '/') {
+            return null;
+        }
+        for (int i = 1; i <= CODE_LENGTH; i++) {
+            char c = path.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9')) {
+                return null;
+            }
+        }
+        return path.substring(1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.amtinyurl.redirect;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClickRecorderTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    // What the upserts added to url_clicks, by code
+    private final Map<String, Long> written = new ConcurrentHashMap<>();
+    private final Map<Integer, Object> row = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(ClickRecorder.UPSERT_SQL)).thenReturn(statement);
+        doAnswer(invocation -> row.put(1, invocation.getArgument(1))).when(statement).setString(eq(1), anyString());
+        doAnswer(invocation -> row.put(2, invocation.getArgument(1))).when(statement).setLong(eq(2), anyLong());
+        doAnswer(invocation -> {
+            written.merge((String) row.get(1), (Long) row.get(2), Long::sum);
+            return null;
+        }).when(statement).addBatch();
+    }
+
+    @Test
+    void testFlushUpsertsTheDeltasSinceTheLastFlush() throws SQLException {
+        ClickRecorder recorder = new ClickRecorder(dataSource, ClickRecorder.IDLE_RETIRE_MILLIS);
+        recorder.record("abc1234");
+        recorder.record("abc1234");
+        recorder.record("xyz9876");
+
+        recorder.flush();
+        assertEquals(Map.of("abc1234", 2L, "xyz9876", 1L), written);
+        verify(connection).setReadOnly(false);
+        verify(statement, times(1)).executeBatch();
+
+        written.clear();
+        recorder.record("abc1234");
+        recorder.flush();
+        assertEquals(Map.of("abc1234", 1L), written);
+        assertEquals(4L, recorder.getStats().get("flushedClicks"));
+        assertEquals(0L, recorder.getStats().get("pendingClicks"));
+    }
+
+    @Test
+    void testFailedFlushKeepsTheDeltasForTheNextWindow() throws SQLException {
+        ClickRecorder recorder = new ClickRecorder(dataSource, ClickRecorder.IDLE_RETIRE_MILLIS);
+        recorder.record("abc1234");
+        recorder.record("abc1234");
+        when(dataSource.getConnection()).thenThrow(new SQLTransientConnectionException("pool exhausted"))
+            .thenReturn(connection);
+
+        recorder.flush();
+        assertEquals(2L, recorder.getStats().get("pendingClicks"));
+        assertEquals(1L, recorder.getStats().get("flushFailures"));
+
+        recorder.record("abc1234");
+        recorder.flush();
+        assertEquals(Map.of("abc1234", 3L), written);
+        assertEquals(0L, recorder.getStats().get("pendingClicks"));
+    }
+
+    @Test
+    void testNoClickIsLostWhileIdleCountersAreRetired() throws Exception {
+        // Every counter is idle by the next millisecond, so flushes keep retiring codes under the writers
+        ClickRecorder recorder = new ClickRecorder(dataSource, 0);
+        int threads = 4;
+        int clicksPerThread = 20_000;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> flusher = pool.submit(() -> {
+                while (writing.get()) {
+                    recorder.flush();
+                }
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < clicksPerThread; i++) {
+                        recorder.record("abc123" + (i % 4));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            flusher.get();
+        } finally {
+            pool.shutdown();
+        }
+        recorder.flush();
+
+        assertEquals((long) threads * clicksPerThread, written.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(0L, recorder.getStats().get("pendingClicks"));
+    }
+}
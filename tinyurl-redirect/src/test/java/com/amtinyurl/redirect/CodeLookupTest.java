@@ -0,0 +1,91 @@
+package com.amtinyurl.redirect;
+
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CodeLookupTest {
+
+    private final RedisCircuit redis = mock(RedisCircuit.class);
+    @SuppressWarnings("unchecked")
+    private final RedisCommands<String, String> commands = mock(RedisCommands.class);
+    private final DataSource dataSource = mock(DataSource.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet rows = mock(ResultSet.class);
+    private final CodeLookup codeLookup = new CodeLookup(redis, dataSource, RedirectConfig.fromEnvironment(Map.of()));
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rows);
+        when(redis.commands()).thenReturn(commands);
+    }
+
+    @Test
+    void testRedisHitIsServedFromTheNearCacheAfterwards() throws SQLException {
+        when(commands.get("code:abc1234")).thenReturn("https://example.com/a");
+
+        assertEquals("https://example.com/a", codeLookup.find("abc1234"));
+        assertEquals("https://example.com/a", codeLookup.find("abc1234"));
+
+        verify(commands, times(1)).get("code:abc1234");
+        verify(redis).recordSuccess();
+        verifyNoInteractions(dataSource);
+        assertEquals(1L, codeLookup.getStats().get("nearHits"));
+    }
+
+    @Test
+    void testDatabaseHitIsWrittenBackToRedis() throws SQLException {
+        when(rows.next()).thenReturn(true);
+        when(rows.getString(1)).thenReturn("https://example.com/b");
+
+        assertEquals("https://example.com/b", codeLookup.find("abc1234"));
+
+        verify(statement).setString(1, "abc1234");
+        verify(commands).set(eq("code:abc1234"), eq("https://example.com/b"), any(SetArgs.class));
+        assertEquals(1L, codeLookup.getStats().get("databaseHits"));
+    }
+
+    @Test
+    void testMissIsNegativeCachedUntilTheCodeIsIssued() throws SQLException {
+        assertNull(codeLookup.find("abc1234"));
+        assertNull(codeLookup.find("abc1234"));
+        verify(statement, times(1)).executeQuery();
+
+        codeLookup.forgetMissing("abc1234");
+        assertNull(codeLookup.find("abc1234"));
+        verify(statement, times(2)).executeQuery();
+    }
+
+    @Test
+    void testFallsBackToTheDatabaseWhenRedisFailsOrIsOpen() throws SQLException {
+        when(rows.next()).thenReturn(true);
+        when(rows.getString(1)).thenReturn("https://example.com/c");
+        RedisCommandTimeoutException timeout = new RedisCommandTimeoutException("Command timed out");
+        when(commands.get(anyString())).thenThrow(timeout);
+        when(commands.set(anyString(), anyString(), any(SetArgs.class))).thenThrow(timeout);
+
+        assertEquals("https://example.com/c", codeLookup.find("abc1234"));
+        verify(redis, times(2)).recordFailure(timeout);
+        assertEquals(2L, codeLookup.getStats().get("redisErrors"));
+
+        when(redis.commands()).thenReturn(null);
+        assertEquals("https://example.com/c", codeLookup.find("xyz9876"));
+        verify(commands, never()).get("code:xyz9876");
+    }
+}
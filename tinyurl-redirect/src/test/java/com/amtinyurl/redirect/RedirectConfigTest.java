@@ -0,0 +1,24 @@
+package com.amtinyurl.redirect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectConfigTest {
+
+    @Test
+    void shouldRefuseShardedDeployments() {
+        assertThrows(IllegalStateException.class, () -> RedirectConfig.fromEnvironment(
+            Map.of("MYSQL_SHARD_URLS", "jdbc:mysql://shard-1:3306/tinyurl")));
+    }
+
+    @Test
+    void shouldStartOnASingleDatabase() {
+        RedirectConfig config = RedirectConfig.fromEnvironment(Map.of("MYSQL_SHARD_URLS", " "));
+
+        assertEquals(5, config.redisFailureThreshold);
+        assertEquals(10_000, config.clickFlushMillis);
+    }
+}
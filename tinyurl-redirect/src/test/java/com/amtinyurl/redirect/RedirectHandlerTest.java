@@ -0,0 +1,92 @@
+package com.amtinyurl.redirect;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RedirectHandlerTest {
+
+    private final CodeLookup codeLookup = mock(CodeLookup.class);
+    private final ClickRecorder clickRecorder = mock(ClickRecorder.class);
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new RedirectHandler(codeLookup, clickRecorder));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testRedirectsKnownCodesAndCountsTheClick() throws Exception {
+        when(codeLookup.find("abc1234")).thenReturn("https://example.com/a");
+
+        HttpResponse<String> response = send("GET", "/abc1234");
+
+        assertEquals(301, response.statusCode());
+        assertEquals("https://example.com/a", response.headers().firstValue("Location").orElse(null));
+        assertEquals("max-age=100, public", response.headers().firstValue("Cache-Control").orElse(null));
+        verify(clickRecorder).record("abc1234");
+    }
+
+    @Test
+    void testUnknownCodesAnswer404WithTheApiErrorBody() throws Exception {
+        HttpResponse<String> response = send("GET", "/abc1234");
+        assertEquals(404, response.statusCode());
+        assertEquals("{\"error\":\"Short code not found\",\"code\":\"NOT_FOUND\"}", response.body());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+
+        HttpResponse<String> head = send("HEAD", "/abc1234");
+        assertEquals(404, head.statusCode());
+        assertEquals("", head.body());
+
+        // Paths that are not short codes never reach the lookup
+        assertEquals(404, send("GET", "/not-a-code").statusCode());
+        verify(codeLookup, never()).find("not-a-code");
+        verifyNoInteractions(clickRecorder);
+    }
+
+    @Test
+    void testOtherMethodsAreRejected() throws Exception {
+        HttpResponse<String> response = send("POST", "/abc1234");
+
+        assertEquals(405, response.statusCode());
+        assertEquals("GET, HEAD", response.headers().firstValue("Allow").orElse(null));
+        verifyNoInteractions(codeLookup);
+    }
+
+    @Test
+    void testLookupFailureAnswers500() throws Exception {
+        when(codeLookup.find("abc1234")).thenThrow(new SQLException("Communications link failure"));
+
+        HttpResponse<String> response = send("GET", "/abc1234");
+
+        assertEquals(500, response.statusCode());
+        assertEquals("{\"error\":\"Internal server error\",\"code\":\"INTERNAL_ERROR\"}", response.body());
+        verifyNoInteractions(clickRecorder);
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,89 @@
+package com.amtinyurl.redirect;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionException;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.pubsub.api.sync.RedisPubSubCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RedisCircuitTest {
+
+    private final RedisClient client = mock(RedisClient.class);
+    @SuppressWarnings("unchecked")
+    private final StatefulRedisConnection<String, String> connection = mock(StatefulRedisConnection.class);
+    @SuppressWarnings("unchecked")
+    private final RedisCommands<String, String> commands = mock(RedisCommands.class);
+    @SuppressWarnings("unchecked")
+    private final StatefulRedisPubSubConnection<String, String> pubSub = mock(StatefulRedisPubSubConnection.class);
+    @SuppressWarnings("unchecked")
+    private final RedisPubSubCommands<String, String> pubSubCommands = mock(RedisPubSubCommands.class);
+    private final IssuedCodesSubscriber subscriber = new IssuedCodesSubscriber(null);
+    private final RedisCircuit circuit = new RedisCircuit(client, 3);
+
+    @BeforeEach
+    void setUp() {
+        when(connection.sync()).thenReturn(commands);
+        when(commands.ping()).thenReturn("PONG");
+        when(pubSub.sync()).thenReturn(pubSubCommands);
+        circuit.subscribe(subscriber, IssuedCodesSubscriber.CODES_ISSUED_CHANNEL);
+    }
+
+    @Test
+    void testStartsOpenWithoutConnecting() {
+        assertEquals(RedisCircuit.State.OPEN, circuit.getState());
+        assertNull(circuit.commands());
+        assertEquals(1L, circuit.getStats().get("shortCircuited"));
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    void testProbeConnectsSubscribesAndClosesOnceRedisAnswers() {
+        when(client.connect()).thenThrow(new RedisConnectionException("Connection refused")).thenReturn(connection);
+        when(client.connectPubSub()).thenReturn(pubSub);
+
+        circuit.probe();
+        assertEquals(RedisCircuit.State.OPEN, circuit.getState());
+        assertNull(circuit.commands());
+
+        circuit.probe();
+        assertEquals(RedisCircuit.State.CLOSED, circuit.getState());
+        assertSame(commands, circuit.commands());
+        verify(pubSub).addListener(subscriber);
+        verify(pubSubCommands).subscribe(IssuedCodesSubscriber.CODES_ISSUED_CHANNEL);
+
+        // A closed circuit is left alone by later probes
+        circuit.probe();
+        verify(client, times(2)).connect();
+        verify(client, times(1)).connectPubSub();
+    }
+
+    @Test
+    void testOpensAfterConsecutiveFailuresOnly() {
+        when(client.connect()).thenReturn(connection);
+        when(client.connectPubSub()).thenReturn(pubSub);
+        circuit.probe();
+
+        circuit.recordFailure(new RuntimeException("timeout"));
+        circuit.recordFailure(new RuntimeException("timeout"));
+        circuit.recordSuccess();
+        circuit.recordFailure(new RuntimeException("timeout"));
+        circuit.recordFailure(new RuntimeException("timeout"));
+        assertNotNull(circuit.commands());
+
+        circuit.recordFailure(new RuntimeException("timeout"));
+        assertEquals(RedisCircuit.State.OPEN, circuit.getState());
+        assertNull(circuit.commands());
+        assertEquals(1L, circuit.getStats().get("opened"));
+
+        // The existing connection is reused once a PING gets through again
+        circuit.probe();
+        assertEquals(RedisCircuit.State.CLOSED, circuit.getState());
+        verify(client, times(1)).connect();
+    }
+}
@@ -0,0 +1,27 @@
+package com.amtinyurl.redirect;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodesTest {
+
+    @Test
+    void shouldExtractValidCodes() {
+        assertEquals("abc1234", ShortCodes.fromPath("/abc1234"));
+        assertEquals("0000000", ShortCodes.fromPath("/0000000"));
+    }
+
+    @Test
+    void shouldRejectPathsOutsideTheRoute() {
+        assertNull(ShortCodes.fromPath(null));
+        assertNull(ShortCodes.fromPath("/"));
+        assertNull(ShortCodes.fromPath("/abc123"));      // too short
+        assertNull(ShortCodes.fromPath("/abc12345"));    // too long
+        assertNull(ShortCodes.fromPath("/ABC1234"));     // route is lowercase only
+        assertNull(ShortCodes.fromPath("/abc-123"));
+        assertNull(ShortCodes.fromPath("/abc1234/"));
+        assertNull(ShortCodes.fromPath("abc12345"));
+        assertNull(ShortCodes.fromPath("/_health"));
+    }
+}